@@ -0,0 +1,61 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code analytics} command over a year of the seeded history:
+ * {@code java -jar target/benchmarks.jar AnalyticsBenchmark -p rows=1000000}.
+ * {@code aggregate} times the parallel aggregation alone, {@code report} adds taking the
+ * snapshot and reading the rows into columns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyticsBenchmark {
+
+    private static final Date FROM = Date.valueOf(BenchmarkDatabase.FIRST_DAY);
+    private static final Date TO = Date.valueOf(BenchmarkDatabase.FIRST_DAY.plusDays(364));
+
+    private ReservationColumns columns;
+    private Map<String, Integer> cars;
+
+    @Setup(Level.Trial)
+    public void project(BenchmarkDatabase state) {
+        // the seeded date change archives most of the history; measure after it has moved
+        state.db.awaitArchival();
+        try (Snapshot view = state.db.snapshot()) {
+            columns = view.columns(FROM, TO);
+            cars = view.getCarAmounts();
+        }
+    }
+
+    @Benchmark
+    public Utilisation aggregate() {
+        return Utilisation.compute(columns, cars, OccupancyIndex.epochDay(FROM), OccupancyIndex.epochDay(TO));
+    }
+
+    @Benchmark
+    public Utilisation report(BenchmarkDatabase state) {
+        try (Snapshot view = state.db.snapshot()) {
+            return Utilisation.compute(view.columns(FROM, TO), view.getCarAmounts(),
+                    OccupancyIndex.epochDay(FROM), OccupancyIndex.epochDay(TO));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A {@link DB} seeded with {@code rows} reservations spread over two years, shared by all
+ * benchmark threads. {@code store=file} uses a file-backed H2 under target/ so the real
+ * ./testdb is never touched.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    static final String[] CAR_TYPES = {"SEDAN", "SUV", "VAN"};
+    static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+    static final int DAYS = 730;
+    /** Large enough that benchmarks measure the booking path, never the rejection path. */
+    private static final int FLEET_SIZE = 1_000_000_000;
+    private static final int SEED_BATCH = 10_000;
+
+    @Param({"mem", "file"})
+    public String store;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    DB db;
+    String url;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // DB and CarRental report on stdout; keep that out of the measurements
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        url = store.equals("mem")
+                ? "jdbc:h2:mem:bench-" + rows + ";DB_CLOSE_DELAY=-1"
+                : "jdbc:h2:./target/bench/testdb-" + rows;
+        db = new DB(url, Runtime.getRuntime().availableProcessors() + 1);
+        db.resetDatabase();
+        for (String type : CAR_TYPES) {
+            db.setCarAmounts(type, FLEET_SIZE);
+        }
+
+        SplittableRandom random = new SplittableRandom(42);
+        List<Reservation> batch = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < rows; i++) {
+            LocalDate from = FIRST_DAY.plusDays(random.nextInt(DAYS));
+            batch.add(new Reservation(CAR_TYPES[random.nextInt(CAR_TYPES.length)],
+                    Date.valueOf(from), Date.valueOf(from.plusDays(random.nextInt(14)))));
+            if (batch.size() == SEED_BATCH) {
+                db.addReservations(batch);
+                batch.clear();
+            }
+        }
+        db.addReservations(batch);
+
+        // only the last month of the seeded range is still "future" for listReservations
+        db.setCurrentDate(FIRST_DAY.plusDays(DAYS - 30).toString());
+        // the date change starts archiving the ended rows; let it finish before measuring
+        db.awaitArchival();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+        System.setOut(originalOut);
+    }
+}
@@ -0,0 +1,85 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Booking hot path against {@link BenchmarkDatabase}. Thread count is chosen on the command
+ * line, e.g. {@code java -jar target/benchmarks.jar BookingBenchmark -t 4 -p store=mem}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingBenchmark {
+
+    /** Per-thread request generator so threads do not contend on a shared random. */
+    @State(Scope.Thread)
+    public static class Requests {
+        private final SplittableRandom random = new SplittableRandom();
+        private CarRental rental;
+
+        @Setup
+        public void setup(BenchmarkDatabase state) {
+            rental = new CarRental(new CachingDatabase(state.db));
+        }
+
+        String carType() {
+            return BenchmarkDatabase.CAR_TYPES[random.nextInt(BenchmarkDatabase.CAR_TYPES.length)];
+        }
+
+        Date day(int offset) {
+            return Date.valueOf(BenchmarkDatabase.FIRST_DAY.plusDays(offset));
+        }
+
+        int randomDay() {
+            return random.nextInt(BenchmarkDatabase.DAYS);
+        }
+    }
+
+    @Benchmark
+    public int getAvailableCars(BenchmarkDatabase state, Requests requests) {
+        int from = requests.randomDay();
+        return state.db.getAvailableCars(requests.carType(), requests.day(from), requests.day(from + 7));
+    }
+
+    @Benchmark
+    public void addReservation(BenchmarkDatabase state, Requests requests) {
+        int from = requests.randomDay();
+        state.db.addReservation(requests.carType(), requests.day(from), requests.day(from + 3));
+    }
+
+    @Benchmark
+    public List<String> listReservations(BenchmarkDatabase state) {
+        return state.db.listReservations();
+    }
+
+    @Benchmark
+    public int forEachReservation(BenchmarkDatabase state) {
+        int[] count = {0};
+        state.db.forEachReservation(ReservationQuery.UPCOMING, r -> count[0]++);
+        return count[0];
+    }
+
+    @Benchmark
+    public boolean reserve(Requests requests) {
+        // after the seeded range, so every request passes the current-date check
+        int from = BenchmarkDatabase.DAYS + requests.randomDay();
+        return requests.rental.reserve(new String[]{"reserve", requests.carType().toLowerCase(),
+                requests.day(from).toString(), requests.day(from + 3).toString()});
+    }
+}
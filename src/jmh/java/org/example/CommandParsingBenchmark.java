@@ -0,0 +1,86 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a {@code reserve} line into a validated {@link Reservation}: the previous
+ * lower-case/split/{@code Date.valueOf} parsing against {@link CommandTokenizer}. Run with
+ * {@code -prof gc} and compare {@code gc.alloc.rate.norm}, the bytes allocated per command.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandParsingBenchmark {
+
+    private static final Set<String> VALID_CAR_TYPES = Set.of("suv", "van", "sedan");
+    private static final String CURRENT_DATE = "2025-01-01";
+
+    private final String[] lines = new String[1024];
+    private final CommandTokenizer tokens = new CommandTokenizer();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] cars = {"Sedan", "SUV", "van"};
+        LocalDate first = LocalDate.parse(CURRENT_DATE);
+        for (int i = 0; i < lines.length; i++) {
+            LocalDate from = first.plusDays(i % 365);
+            lines[i] = "reserve " + cars[i % cars.length] + " " + from + " " + from.plusDays(i % 7);
+        }
+    }
+
+    private String nextLine() {
+        return lines[next++ & (lines.length - 1)];
+    }
+
+    @Benchmark
+    public Reservation splitAndValueOf() {
+        String[] args = nextLine().toLowerCase(Locale.ROOT).split(" ");
+        String car = args[1].toLowerCase();
+        if (!VALID_CAR_TYPES.contains(car)) {
+            return null;
+        }
+        Date from = Date.valueOf(args[2]);
+        Date to = Date.valueOf(args[3]);
+        if (from.after(to) || from.before(Date.valueOf(CURRENT_DATE))) {
+            return null;
+        }
+        return new Reservation(car.toUpperCase(), from, to);
+    }
+
+    @Benchmark
+    public Reservation tokenizer() {
+        tokens.reset(nextLine());
+        return CarRental.parseReservation(tokens, 1, CURRENT_DATE);
+    }
+
+    /** Validation only, without building the reservation's dates. */
+    @Benchmark
+    public int tokenizerEpochDays() {
+        tokens.reset(nextLine());
+        String line = tokens.line();
+        int type = CarTypes.global().id(line, tokens.start(1), tokens.end(1));
+        int from = EpochDays.parse(line, tokens.start(2), tokens.end(2));
+        int to = EpochDays.parse(line, tokens.start(3), tokens.end(3));
+        return type + from + to;
+    }
+}
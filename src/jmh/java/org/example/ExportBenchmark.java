@@ -0,0 +1,90 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code export} and {@code import} against H2's own SQL script dump of the same seeded
+ * store: {@code java -jar target/benchmarks.jar ExportBenchmark -p rows=1000000 -p store=mem}.
+ * The binary file and the script are written under target/bench; imports go into a second
+ * in-memory database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+
+    private static final Path BINARY = Path.of("target/bench/export.bin");
+    private static final Path SCRIPT = Path.of("target/bench/export.sql");
+    private static final String TARGET_URL = "jdbc:h2:mem:import-target;DB_CLOSE_DELAY=-1";
+
+    private DB target;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkDatabase state) throws IOException, SQLException {
+        state.db.awaitArchival();
+        Files.createDirectories(BINARY.getParent());
+        exportBinary(state);
+        exportScript(state);
+        target = new DB(TARGET_URL, 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        target.close();
+        System.err.printf("export.bin: %d bytes, export.sql: %d bytes%n", Files.size(BINARY), Files.size(SCRIPT));
+    }
+
+    @Benchmark
+    public long exportBinary(BenchmarkDatabase state) throws IOException {
+        try (Snapshot view = state.db.snapshot()) {
+            return StateFile.write(BINARY, view.getCurrentDate(), view.getCarAmounts(),
+                    view.columns(Date.valueOf("1900-01-01"), Date.valueOf("9999-12-31")));
+        }
+    }
+
+    @Benchmark
+    public void exportScript(BenchmarkDatabase state) throws SQLException {
+        try (Connection c = DriverManager.getConnection(state.url, "sa", "");
+             Statement stmt = c.createStatement()) {
+            stmt.execute("SCRIPT DROP TO '" + SCRIPT + "'");
+        }
+    }
+
+    @Benchmark
+    public void importBinary() throws IOException {
+        StateFile.Contents contents = StateFile.read(BINARY);
+        target.replaceState(contents.currentDate(), contents.cars(), contents.reservations());
+    }
+
+    @Benchmark
+    public void importScript() throws SQLException {
+        try (Connection c = DriverManager.getConnection("jdbc:h2:mem:script-target;DB_CLOSE_DELAY=-1", "sa", "");
+             Statement stmt = c.createStatement()) {
+            stmt.execute("RUNSCRIPT FROM '" + SCRIPT + "'");
+        }
+    }
+}
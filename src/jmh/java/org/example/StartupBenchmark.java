@@ -0,0 +1,118 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time from opening a file-backed {@link DB} to its first answer, as a short-lived scripted
+ * invocation sees it. {@code state=new} starts from an empty directory each time, {@code
+ * state=existing} reopens a store holding {@code rows} reservations:
+ * {@code java -jar target/benchmarks.jar StartupBenchmark -p warmUp=eager,background}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final Path DIR = Path.of("target", "bench", "startup");
+
+    @Param({"new", "existing"})
+    public String state;
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"eager", "background"})
+    public String warmUp;
+
+    private String url;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void seed() throws IOException {
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        url = "jdbc:h2:./" + DIR.resolve("testdb-" + rows).toString().replace('\\', '/');
+        if (state.equals("existing")) {
+            deleteFiles();
+            try (DB db = new DB(url, 1)) {
+                SplittableRandom random = new SplittableRandom(42);
+                List<Reservation> batch = new ArrayList<>();
+                for (int i = 0; i < rows; i++) {
+                    LocalDate from = BenchmarkDatabase.FIRST_DAY.plusDays(random.nextInt(BenchmarkDatabase.DAYS));
+                    batch.add(new Reservation("SEDAN", Date.valueOf(from), Date.valueOf(from.plusDays(3))));
+                }
+                db.setCarAmounts("SEDAN", Integer.MAX_VALUE);
+                db.addReservations(batch);
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clean() throws IOException {
+        if (state.equals("new")) {
+            deleteFiles();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    private static void deleteFiles() throws IOException {
+        if (Files.exists(DIR)) {
+            try (Stream<Path> files = Files.walk(DIR)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /** Opens the store and answers one command that needs no index, then closes it. */
+    @Benchmark
+    public String openAndQuery() {
+        try (DB db = new DB(url, 1, Duration.ofMinutes(5), Duration.ofSeconds(5), warmUp.equals("background"))) {
+            return db.getCurrentDate();
+        }
+    }
+
+    /** Opens the store and checks availability, which waits for the occupancy index. */
+    @Benchmark
+    public int openAndCheckAvailability() {
+        try (DB db = new DB(url, 1, Duration.ofMinutes(5), Duration.ofSeconds(5), warmUp.equals("background"))) {
+            Date day = Date.valueOf(BenchmarkDatabase.FIRST_DAY.plusDays(10));
+            return db.getAvailableCars("SEDAN", day, day);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.example;
+
+import java.util.Map;
+
+/**
+ * Progress of moving expired reservations out of the live store, as shown by
+ * {@code archive stats}.
+ *
+ * @param rowsByMonth archived reservations per month of their last day, keyed {@code yyyy-mm}
+ */
+public record ArchiveStats(long runs, long rowsMoved, long lastRunMillis, long totalMillis,
+                           boolean running, Map<String, Long> rowsByMonth) {
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a store's archival of expired reservations on a background thread, so advancing the
+ * date does not wait for it. Requests that arrive while a run is queued are merged into it;
+ * a request during a run queues one more.
+ */
+final class Archiver implements AutoCloseable {
+
+    /** Moves expired reservations and returns how many were moved. */
+    interface Task {
+        int archive() throws Exception;
+    }
+
+    private final Task task;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "reservation-archiver");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean queued = new AtomicBoolean();
+    private volatile boolean running;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong rowsMoved = new AtomicLong();
+    private final AtomicLong lastRunNanos = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    Archiver(Task task) {
+        this.task = task;
+    }
+
+    void schedule() {
+        if (queued.compareAndSet(false, true)) {
+            executor.execute(this::run);
+        }
+    }
+
+    private void run() {
+        queued.set(false);
+        running = true;
+        long start = System.nanoTime();
+        try {
+            rowsMoved.addAndGet(task.archive());
+        } catch (Exception e) {
+            e.printStackTrace();
+            Metrics.global().error();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            lastRunNanos.set(elapsed);
+            totalNanos.addAndGet(elapsed);
+            runs.incrementAndGet();
+            running = false;
+        }
+    }
+
+    /** Waits until the runs scheduled so far have finished. */
+    void awaitIdle() {
+        try {
+            executor.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    ArchiveStats stats(Map<String, Long> rowsByMonth) {
+        return new ArchiveStats(runs.get(), rowsMoved.get(),
+                TimeUnit.NANOSECONDS.toMillis(lastRunNanos.get()), TimeUnit.NANOSECONDS.toMillis(totalNanos.get()),
+                running || queued.get(), rowsByMonth);
+    }
+
+    /** Lets a running archival finish and stops the thread. */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
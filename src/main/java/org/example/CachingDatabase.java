@@ -0,0 +1,93 @@
+package org.example;
+
+import java.sql.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the current date and the fleet sizes in memory so reads never reach the wrapped
+ * database. Both only change through {@link #setCurrentDate}, {@link #setCarAmounts},
+ * {@link #resetDatabase} and {@link #replaceState}, which write through to the delegate and
+ * then drop the cached copy.
+ * <p>
+ * Writes and reloads share one lock, so a reload can never put back a value that a
+ * concurrent write has just replaced. Cached reads only touch volatile fields.
+ */
+public class CachingDatabase extends ForwardingDatabase {
+
+    /** {@code null} when not loaded; empty when the database has no current date. */
+    private volatile Optional<String> currentDate;
+    private volatile Map<String, Integer> carAmounts;
+
+    public CachingDatabase(Database delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public String getCurrentDate() {
+        Optional<String> date = currentDate;
+        if (date == null) {
+            synchronized (this) {
+                date = currentDate;
+                if (date == null) {
+                    date = Optional.ofNullable(delegate.getCurrentDate());
+                    currentDate = date;
+                }
+            }
+        }
+        return date.orElse(null);
+    }
+
+    @Override
+    public synchronized void setCurrentDate(String date) {
+        delegate.setCurrentDate(date);
+        currentDate = null;
+    }
+
+    @Override
+    public Map<String, Integer> getCarAmounts() {
+        Map<String, Integer> amounts = carAmounts;
+        if (amounts == null) {
+            synchronized (this) {
+                amounts = carAmounts;
+                if (amounts == null) {
+                    amounts = Map.copyOf(delegate.getCarAmounts());
+                    carAmounts = amounts;
+                }
+            }
+        }
+        return amounts;
+    }
+
+    @Override
+    public synchronized void setCarAmounts(String type, int amount) {
+        delegate.setCarAmounts(type, amount);
+        carAmounts = null;
+    }
+
+    @Override
+    public int getAvailableCars(String carType, Date from, Date to) {
+        Integer total = getCarAmounts().get(carType.toUpperCase(Locale.ROOT));
+        return (total == null ? 0 : total) - delegate.getBookedCars(carType, from, to);
+    }
+
+    @Override
+    public synchronized void resetDatabase() {
+        delegate.resetDatabase();
+        invalidate();
+    }
+
+    @Override
+    public synchronized void replaceState(String currentDate, Map<String, Integer> cars,
+                                          ReservationColumns reservations) {
+        delegate.replaceState(currentDate, cars, reservations);
+        invalidate();
+    }
+
+    /** Drops everything cached, e.g. after the database was changed behind this wrapper. */
+    public synchronized void invalidate() {
+        currentDate = null;
+        carAmounts = null;
+    }
+}
@@ -1,186 +1,946 @@
 package org.example;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 public class CarRental {
 
-    private static final Set<String> VALID_CAR_TYPES = Set.of("suv", "van", "sedan");
-    private final DB db;
+    private static final String[] COMMANDS = {
+            "reserve", "reserve-batch", "jump", "info", "help", "reset", "setdate", "setcar", "stats", "availability", "replay", "cancel", "modify", "archive", "location", "nearest", "waitlist", "analytics", "export", "import"};
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_CALENDAR_DAYS = 366;
+    private final Fleet fleet;
+    private final Database db;
+    private final PrintStream out;
+    private final Metrics metrics;
+    private final CommandTokenizer tokens = new CommandTokenizer();
 
-    public CarRental(DB db) {
-        this.db = db;
+    public CarRental(Database db) {
+        this(db, System.out);
+    }
+
+    /**
+     * @param out where command output is written, e.g. a client connection in server mode
+     */
+    public CarRental(Database db, PrintStream out) {
+        this(db, out, Metrics.global());
+    }
+
+    public CarRental(Database db, PrintStream out, Metrics metrics) {
+        this(new Fleet(db), out, metrics);
+    }
+
+    public CarRental(Fleet fleet, PrintStream out, Metrics metrics) {
+        this.fleet = fleet;
+        this.db = fleet.main();
+        this.out = out;
+        this.metrics = metrics;
     }
 
     public void handleCommand(String commandLine) {
-        String[] args = commandLine.toLowerCase(Locale.ROOT).split(" ");
-        String cmd = args[0];
+        tokens.reset(commandLine);
+        String cmd = commandName(tokens);
 
+        long start = System.nanoTime();
         try {
             switch (cmd) {
-                case "reserve" -> reserve(args);
-                case "jump" -> jump(args);
-                case "info" -> info(args);
+                // the hot path reads the tokens in place, other commands get a copy
+                case "reserve" -> reserve(tokens);
+                case "reserve-batch" -> reserveBatch(tokens.toArray(false));
+                case "jump" -> jump(tokens.toArray(true));
+                case "info" -> info(tokens.toArray(true));
                 case "help" -> help();
                 case "reset" -> resetDb();
-                case "setdate" -> setDate(args);
-                case "setcar" -> setCars(args);
-                default -> System.out.println("Unknown command. Type 'help'.");
+                case "setdate" -> setDate(tokens.toArray(true));
+                case "setcar" -> setCars(tokens.toArray(true));
+                case "stats" -> stats();
+                case "availability" -> availability(tokens.toArray(true));
+                case "replay" -> replay(tokens.toArray(false));
+                case "cancel" -> cancel(tokens.toArray(true));
+                case "modify" -> modify(tokens.toArray(true));
+                case "archive" -> archive(tokens.toArray(true));
+                case "location" -> location(tokens.toArray(true));
+                case "nearest" -> nearest(tokens.toArray(true));
+                case "waitlist" -> waitlist(tokens.toArray(true));
+                case "analytics" -> analytics(tokens.toArray(true));
+                case "export" -> export(tokens.toArray(false));
+                case "import" -> importState(tokens.toArray(false));
+                default -> out.println("Unknown command. Type 'help'.");
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            metrics.recordCommand(cmd, System.nanoTime() - start);
         }
     }
 
-    public boolean reserve(String[] args) {
-        if (args.length < 4) {
-            System.out.println("Usage: reserve <car> <from-date> <to-date>");
-            return false;
+    /** @return the constant from {@link #COMMANDS} matching the first token, or "unknown" */
+    private static String commandName(CommandTokenizer tokens) {
+        if (tokens.count() > 0) {
+            for (String command : COMMANDS) {
+                if (tokens.is(0, command)) {
+                    return command;
+                }
+            }
         }
+        return "unknown";
+    }
 
-        String car = args[1].toLowerCase();
-        String from = args[2];
-        String to = args[3];
+    /**
+     * A request that fails validation; {@code reason} is the key it is counted under in
+     * {@link Metrics}.
+     */
+    private static final class InvalidRequestException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
 
-        if (!VALID_CAR_TYPES.contains(car)) {
-            System.out.println("Invalid car type. Must be one of: sedan, suv, van");
+        private final String reason;
+
+        InvalidRequestException(String reason, String message) {
+            super(message);
+            this.reason = reason;
+        }
+    }
+
+    public boolean reserve(String[] args) {
+        return reserve(tokens.reset(String.join(" ", args)));
+    }
+
+    private boolean reserve(CommandTokenizer args) {
+        if (args.count() < 4) {
+            out.println("Usage: reserve [location] <car> <from-date> <to-date>");
+            metrics.reject("usage");
             return false;
         }
 
-        Date fromDate;
-        Date toDate;
+        Database store = db;
+        String location = Fleet.DEFAULT_LOCATION;
+        int first = 1;
+        if (args.count() >= 5) {
+            location = args.line().substring(args.start(1), args.end(1));
+            store = storeFor(location);
+            if (store == null) {
+                return false;
+            }
+            first = 2;
+        }
+
+        Reservation request;
         try {
-            fromDate = Date.valueOf(from);
-            toDate = Date.valueOf(to);
-        } catch (IllegalArgumentException e) {
-            System.out.println("Invalid date format. Use yyyy-mm-dd");
+            request = parseReservation(args, first, db.getCurrentDate());
+        } catch (InvalidRequestException e) {
+            out.println(e.getMessage());
+            metrics.reject(e.reason);
             return false;
         }
+        String car = request.car().toLowerCase(Locale.ROOT);
+
+        // Check availability and book in one step
+        ReservationResult result = store.tryReserve(request.car(), request.from(), request.to());
+        switch (result.status()) {
+            case UNAVAILABLE -> {
+                metrics.reject("unavailable");
+                // the ticket lets the user follow or withdraw the request with 'waitlist'
+                Waitlist.Entry waiting = fleet.waitlist(location).add(request.car(), request.from(), request.to());
+                out.println("No " + car + " available for the selected dates"
+                        + (waiting != null ? "; waitlisted as W" + waiting.ticket() : ""));
+                return false;
+            }
+            case FAILED, NOT_FOUND -> {
+                out.println("Reservation could not be saved");
+                metrics.reject("failed");
+                return false;
+            }
+        }
+
+        out.println("Reservation saved! (" + result.available() + " " + car + "(s) still available)");
+        return true;
+    }
+
+    /**
+     * Parses and validates the request in tokens {@code first} to {@code first + 2}
+     * ({@code <car> <from> <to>}). Works on the characters of the line in place; only the
+     * returned reservation is allocated.
+     *
+     * @throws InvalidRequestException with a message for the user if the request is invalid
+     */
+    static Reservation parseReservation(CommandTokenizer args, int first, String currentDate) {
+        String line = args.line();
+        CarTypes carTypes = CarTypes.global();
+        int type = carTypes.id(line, args.start(first), args.end(first));
+        if (type < 0) {
+            throw new InvalidRequestException("invalid_car_type", "Invalid car type. Must be one of: " + carTypes.describe());
+        }
+
+        int fromDay = EpochDays.parse(line, args.start(first + 1), args.end(first + 1));
+        int toDay = EpochDays.parse(line, args.start(first + 2), args.end(first + 2));
+        validateRange(fromDay, toDay, currentDate);
+
+        return new Reservation(carTypes.name(type), EpochDays.toDate(fromDay), EpochDays.toDate(toDay));
+    }
+
+    /**
+     * @throws InvalidRequestException unless both days are valid, in order and not before
+     *                                 the current date
+     */
+    private static void validateRange(int fromDay, int toDay, String currentDate) {
+        if (fromDay == EpochDays.INVALID || toDay == EpochDays.INVALID) {
+            throw new InvalidRequestException("invalid_date", "Invalid date format. Use yyyy-mm-dd");
+        }
 
         // Validate date logic
-        if (fromDate.after(toDate)) {
-            System.out.println("Start date must not be after end date");
+        if (fromDay > toDay) {
+            throw new InvalidRequestException("start_after_end", "Start date must not be after end date");
+        }
+
+        if (currentDate == null) {
+            throw new InvalidRequestException("no_current_date", "Start date must be set to reserve a car");
+        }
+
+        if (fromDay < EpochDays.parse(currentDate)) {
+            throw new InvalidRequestException("start_in_past", "Start date must not be before current date");
+        }
+    }
+
+    /** @return the reservation id in {@code arg}, or -1 if it is not a positive number */
+    private static int parseId(String arg) {
+        try {
+            int id = Integer.parseInt(arg.startsWith("#") ? arg.substring(1) : arg);
+            return id > 0 ? id : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the store of the location, or null after telling the user there is no such
+     *         location
+     */
+    private Database storeFor(String location) {
+        Database store = fleet.at(location);
+        if (store == null) {
+            out.println("Unknown location " + location);
+            metrics.reject("unknown_location");
+        }
+        return store;
+    }
+
+    /** The arguments of a command without the location in {@code args[1]}. */
+    private static String[] withoutLocation(String[] args) {
+        String[] rest = new String[args.length - 1];
+        rest[0] = args[0];
+        System.arraycopy(args, 2, rest, 1, args.length - 2);
+        return rest;
+    }
+
+    public boolean cancel(String[] args) {
+        Database store = db;
+        String location = Fleet.DEFAULT_LOCATION;
+        if (args.length == 3) {
+            location = args[1];
+            store = storeFor(location);
+            if (store == null) {
+                return false;
+            }
+            args = withoutLocation(args);
+        }
+        int id = args.length == 2 ? parseId(args[1]) : -1;
+        if (id < 0) {
+            out.println("Usage: cancel [location] <id>");
+            metrics.reject("usage");
             return false;
         }
 
-        String currDate = db.getCurrentDate();
-        if(currDate == null){
-            System.out.println("Start date must be set to reserve a car");
+        // the freed days are only needed when someone is waiting for them
+        Waitlist waitlist = fleet.waitlist(location);
+        Reservation cancelled = waitlist.size() > 0 ? store.getReservation(id) : null;
+        if (!store.cancelReservation(id)) {
+            out.println("No reservation #" + id);
+            metrics.reject("not_found");
             return false;
         }
+        out.println("Reservation #" + id + " cancelled");
+        if (cancelled != null) {
+            printPromotions(waitlist.promote(store, cancelled.car(), cancelled.from(), cancelled.to()));
+        }
+        return true;
+    }
 
-        Date currentDate = Date.valueOf(db.getCurrentDate());
-        if (fromDate.before(currentDate)){
-            System.out.println("Start date must not be before current date");
+    public boolean modify(String[] args) {
+        Database store = db;
+        String location = Fleet.DEFAULT_LOCATION;
+        if (args.length == 5) {
+            location = args[1];
+            store = storeFor(location);
+            if (store == null) {
+                return false;
+            }
+            args = withoutLocation(args);
+        }
+        int id = args.length == 4 ? parseId(args[1]) : -1;
+        if (id < 0) {
+            out.println("Usage: modify [location] <id> <from-date> <to-date>");
+            metrics.reject("usage");
             return false;
         }
 
-        // Check availability
-        int available = db.getAvailableCars(car.toUpperCase(), fromDate, toDate);
-        if (available <= 0) {
-            System.out.println("No " + car + " available for the selected dates");
+        int fromDay = EpochDays.parse(args[2]);
+        int toDay = EpochDays.parse(args[3]);
+        try {
+            validateRange(fromDay, toDay, db.getCurrentDate());
+        } catch (InvalidRequestException e) {
+            out.println(e.getMessage());
+            metrics.reject(e.reason);
             return false;
         }
 
-        db.addReservation(car.toUpperCase(), fromDate, toDate);
-        System.out.println("Reservation saved! (" + (available - 1) + " " + car + "(s) still available)");
+        Waitlist waitlist = fleet.waitlist(location);
+        Reservation before = waitlist.size() > 0 ? store.getReservation(id) : null;
+        ReservationResult result = store.modifyReservation(id, EpochDays.toDate(fromDay), EpochDays.toDate(toDay));
+        switch (result.status()) {
+            case NOT_FOUND -> {
+                out.println("No reservation #" + id);
+                metrics.reject("not_found");
+                return false;
+            }
+            case UNAVAILABLE -> {
+                out.println("No car of this type available for the selected dates");
+                metrics.reject("unavailable");
+                return false;
+            }
+            case FAILED -> {
+                out.println("Reservation could not be saved");
+                metrics.reject("failed");
+                return false;
+            }
+        }
+
+        out.println("Reservation #" + id + " moved to " + args[2] + " → " + args[3]
+                + " (" + result.available() + " still available)");
+        if (before != null) {
+            printPromotions(waitlist.promote(store, before.car(), before.from(), before.to()));
+        }
         return true;
     }
 
+    /**
+     * Imports reservations from a file with one "[reserve] <car> <from> <to>" per line.
+     * Blank lines and lines starting with '#' are skipped.
+     */
+    public void reserveBatch(String[] args) {
+        if (args.length != 2) {
+            out.println("Usage: reserve-batch <file>");
+            return;
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Path.of(args[1]));
+        } catch (IOException e) {
+            out.println("Cannot read " + args[1] + ": " + e.getMessage());
+            return;
+        }
+
+        long start = System.nanoTime();
+        String currentDate = db.getCurrentDate();
+        String[] outcomes = new String[lines.size()];
+        List<Reservation> requests = new ArrayList<>();
+        List<Integer> requestLines = new ArrayList<>();
+        CommandTokenizer parts = new CommandTokenizer();
+
+        for (int i = 0; i < lines.size(); i++) {
+            parts.reset(lines.get(i));
+            if (parts.count() == 0 || parts.line().charAt(parts.start(0)) == '#') {
+                continue;
+            }
+            int offset = parts.is(0, "reserve") ? 1 : 0;
+            if (parts.count() - offset != 3) {
+                outcomes[i] = "rejected - expected <car> <from-date> <to-date>";
+                metrics.reject("usage");
+                continue;
+            }
+            try {
+                requests.add(parseReservation(parts, offset, currentDate));
+                requestLines.add(i);
+            } catch (InvalidRequestException e) {
+                outcomes[i] = "rejected - " + e.getMessage();
+                metrics.reject(e.reason);
+            }
+        }
+
+        List<ReservationResult> results = db.addReservations(requests);
+        int accepted = 0;
+        for (int i = 0; i < results.size(); i++) {
+            ReservationResult result = results.get(i);
+            Reservation request = requests.get(i);
+            outcomes[requestLines.get(i)] = switch (result.status()) {
+                case ACCEPTED -> "accepted #" + result.id();
+                case UNAVAILABLE -> "rejected - no " + request.car().toLowerCase() + " available for the selected dates";
+                case FAILED, NOT_FOUND -> "rejected - could not be saved";
+            };
+            if (result.isAccepted()) {
+                accepted++;
+            } else {
+                metrics.reject(result.status() == ReservationResult.Status.UNAVAILABLE ? "unavailable" : "failed");
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        int total = 0;
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] != null) {
+                out.println("line " + (i + 1) + ": " + outcomes[i]);
+                total++;
+            }
+        }
+        double seconds = elapsedNanos / 1e9;
+        out.printf(Locale.ROOT, "Imported %d of %d reservations (%d rejected) in %d ms, %.0f reservations/s%n",
+                accepted, total, total - accepted, elapsedNanos / 1_000_000, seconds > 0 ? total / seconds : 0);
+    }
+
+    /**
+     * Runs a command script through {@link ReplayEngine}, with reservations for different car
+     * types in parallel, and reports the throughput.
+     */
+    public void replay(String[] args) throws InterruptedException {
+        if (args.length != 2) {
+            out.println("Usage: replay <file>");
+            return;
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Path.of(args[1]));
+        } catch (IOException e) {
+            out.println("Cannot read " + args[1] + ": " + e.getMessage());
+            return;
+        }
+
+        ReplayEngine.Result result = new ReplayEngine(fleet, out, metrics).replay(lines);
+        out.printf(Locale.ROOT, "Replayed %d commands in %d parallel segments in %d ms, %.0f commands/s%n",
+                result.commands(), result.segments(), result.nanos() / 1_000_000, result.commandsPerSecond());
+    }
+
     public void jump(String[] args) {
-        System.out.println("Jump executed.");
+        out.println("Jump executed.");
     }
 
     public void resetDb() {
-        db.resetDatabase();
-        System.out.println("Database reset.");
+        fleet.resetAll();
+        out.println("Database reset.");
     }
 
     public void setDate(String[] args) {
         if (args.length < 2) {
-            System.out.println("Usage: setdate <yyyy-mm-dd>");
+            out.println("Usage: setdate <yyyy-mm-dd>");
             return;
         }
 
         try {
             Date.valueOf(args[1]); // Validate format
-            db.setCurrentDate(args[1]);
+            fleet.setCurrentDate(args[1]);
+            out.println("Date set to " + args[1]);
         } catch (IllegalArgumentException e) {
-            System.out.println("Invalid date format. Use yyyy-mm-dd");
+            out.println("Invalid date format. Use yyyy-mm-dd");
         }
     }
 
     public void setCars(String[] args) {
+        Database store = db;
+        String location = Fleet.DEFAULT_LOCATION;
+        if (args.length == 4) {
+            location = args[1];
+            store = storeFor(location);
+            if (store == null) {
+                return;
+            }
+            args = withoutLocation(args);
+        }
         if (args.length != 3) {
-            System.out.println("Usage: setcar <car_type> <amount>");
+            out.println("Usage: setcar [location] <car_type> <amount>");
             return;
         }
 
-        String car = args[1].toLowerCase();
-        if (!VALID_CAR_TYPES.contains(car)) {
-            System.out.println("Wrong car_type. Needs to be one of: \"suv\", \"van\", \"sedan\".");
+        int type = CarTypes.global().id(args[1]);
+        if (type < 0) {
+            out.println("Wrong car_type. Needs to be one of: " + CarTypes.global().describe() + ".");
             return;
         }
+        String car = CarTypes.global().name(type);
 
         try {
             int amount = Integer.parseInt(args[2]);
             if (amount < 0) {
-                System.out.println("Amount must be non-negative.");
+                out.println("Amount must be non-negative.");
                 return;
             }
-            db.setCarAmounts(car.toUpperCase(), amount);
+            Waitlist waitlist = fleet.waitlist(location);
+            int previous = waitlist.size() > 0 ? store.getCarAmounts().getOrDefault(car, 0) : amount;
+            store.setCarAmounts(car, amount);
+            out.println("Set " + car + " amount to " + amount);
+            if (amount > previous) {
+                printPromotions(waitlist.promoteAll(store, car));
+            }
         } catch (NumberFormatException e) {
-            System.out.println("Amount must be a number.");
+            out.println("Amount must be a number.");
         }
     }
 
     public void info(String[] args) {
-        System.out.println("=== System Information ===");
+        Database store = db;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--location")) {
+                store = storeFor(args[i + 1]);
+                if (store == null) {
+                    return;
+                }
+            }
+        }
+
+        ReservationQuery query;
+        try {
+            query = parseInfoQuery(args);
+        } catch (IllegalArgumentException e) {
+            // Date.valueOf throws IllegalArgumentException without a message
+            out.println(e.getMessage() != null ? e.getMessage() : "Invalid date format. Use yyyy-mm-dd");
+            out.println("Usage: info [--location L] [--page N] [--size M] [--car <car_type>] [--from <date>] [--to <date>]");
+            return;
+        }
+
+        // every section below describes the same moment, however many bookings run meanwhile
+        try (Snapshot view = store.snapshot()) {
+            out.println("=== System Information ===");
 
-        String date = db.getCurrentDate();
-        System.out.println("Current date: " + (date != null ? date : "not set"));
+            String date = view.getCurrentDate();
+            out.println("Current date: " + (date != null ? date : "not set"));
 
-        System.out.println("\nCar amounts:");
-        Map<String, Integer> cars = db.getCarAmounts();
-        for (Map.Entry<String, Integer> entry : cars.entrySet()) {
-            System.out.println(entry.getKey() + ": " + entry.getValue());
+            out.println("\nCar amounts:");
+            Map<String, Integer> cars = view.getCarAmounts();
+            for (Map.Entry<String, Integer> entry : cars.entrySet()) {
+                out.println(entry.getKey() + ": " + entry.getValue());
+            }
+
+            if(date != null){
+                Date today = Date.valueOf(date);
+                int[][] free = view.getAvailabilityCalendar(today, today);
+                out.println("\nAvailable today:");
+                for (int type = 0; type < free.length; type++) {
+                    out.println(CarTypes.global().name(type) + ": " + free[type][0]);
+                }
+            } else {
+                out.println("no cars booked");
+            }
+
+            if (cars.isEmpty())
+                out.println(" No cars defined.");
+
+            out.println("\nReservations:");
+            int[] shown = {0};
+            view.forEachReservation(query, r -> {
+                out.println(" " + r.describe());
+                shown[0]++;
+            });
+            if (shown[0] == 0) {
+                out.println(" No reservations.");
+            } else if (query.isPaged()) {
+                out.println(" (page " + query.page() + ", " + shown[0] + " shown)");
+            }
         }
+    }
 
-        if(date != null){
-            Date date1 = Date.valueOf(date);
-            for (String s: VALID_CAR_TYPES){
-                db.getAvailableCars(s, date1, date1);
+    /**
+     * Parses "--page N --size M --car TYPE --from DATE --to DATE" after {@code info}.
+     *
+     * @throws IllegalArgumentException with a message for the user if an option is invalid
+     */
+    private ReservationQuery parseInfoQuery(String[] args) {
+        String car = null;
+        Date from = null;
+        Date to = null;
+        int page = 0;
+        int size = 0;
+
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            try {
+                switch (args[i]) {
+                    case "--page" -> page = Integer.parseInt(value);
+                    case "--size" -> size = Integer.parseInt(value);
+                    case "--from" -> from = Date.valueOf(value);
+                    case "--to" -> to = Date.valueOf(value);
+                    case "--location" -> {
+                        // picked up by info
+                    }
+                    case "--car" -> {
+                        int type = CarTypes.global().id(value);
+                        if (type < 0) {
+                            throw new IllegalArgumentException("Invalid car type. Must be one of: " + CarTypes.global().describe());
+                        }
+                        car = CarTypes.global().name(type);
+                    }
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(args[i] + " must be a number");
             }
-        } else {
-            System.out.println("no cars booked");
         }
 
-        if (cars.isEmpty())
-            System.out.println(" No cars defined.");
+        if (page > 0 && size == 0) {
+            size = DEFAULT_PAGE_SIZE;
+        } else if (size > 0 && page == 0) {
+            page = 1;
+        }
+        return new ReservationQuery(car, from, to, page, size);
+    }
 
-        System.out.println("\nReservations:");
-        List<String> reservations = db.listReservations();
-        if (reservations.isEmpty()) {
-            System.out.println(" No reservations.");
-        } else {
-            for (String res : reservations) {
-                System.out.println(" " + res);
+    /**
+     * Prints free cars of every type for each day of a range, from one calendar query.
+     */
+    public void availability(String[] args) {
+        Database store = db;
+        if (args.length == 4) {
+            store = storeFor(args[1]);
+            if (store == null) {
+                return;
             }
+            args = withoutLocation(args);
+        }
+        if (args.length != 3) {
+            out.println("Usage: availability [location] <from-date> <to-date>");
+            return;
+        }
+
+        int fromDay = EpochDays.parse(args[1]);
+        int toDay = EpochDays.parse(args[2]);
+        if (fromDay == EpochDays.INVALID || toDay == EpochDays.INVALID) {
+            out.println("Invalid date format. Use yyyy-mm-dd");
+            return;
+        }
+        if (fromDay > toDay) {
+            out.println("Start date must not be after end date");
+            return;
+        }
+        if (toDay - fromDay >= MAX_CALENDAR_DAYS) {
+            out.println("Range must not exceed " + MAX_CALENDAR_DAYS + " days");
+            return;
+        }
+
+        int[][] free = store.getAvailabilityCalendar(EpochDays.toDate(fromDay), EpochDays.toDate(toDay));
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-10s", "Date"));
+        for (int type = 0; type < free.length; type++) {
+            sb.append(String.format(Locale.ROOT, " %6s", CarTypes.global().name(type)));
+        }
+        sb.append('\n');
+        for (int day = 0; day <= toDay - fromDay; day++) {
+            sb.append(LocalDate.ofEpochDay(fromDay + day));
+            for (int[] row : free) {
+                sb.append(String.format(Locale.ROOT, " %6d", row[day]));
+            }
+            sb.append('\n');
+        }
+        out.print(sb);
+    }
+
+    /**
+     * Prints fleet utilisation for a range of days, aggregated over the live and archived
+     * reservations of one snapshot.
+     */
+    public void analytics(String[] args) {
+        Database store = db;
+        if (args.length == 4) {
+            store = storeFor(args[1]);
+            if (store == null) {
+                return;
+            }
+            args = withoutLocation(args);
+        }
+        if (args.length != 3) {
+            out.println("Usage: analytics [location] <from-date> <to-date>");
+            return;
+        }
+
+        int fromDay = EpochDays.parse(args[1]);
+        int toDay = EpochDays.parse(args[2]);
+        if (fromDay == EpochDays.INVALID || toDay == EpochDays.INVALID) {
+            out.println("Invalid date format. Use yyyy-mm-dd");
+            return;
+        }
+        if (fromDay > toDay) {
+            out.println("Start date must not be after end date");
+            return;
+        }
+        if (toDay - fromDay >= Utilisation.MAX_DAYS) {
+            out.println("Range must not exceed " + Utilisation.MAX_DAYS + " days");
+            return;
+        }
+
+        ReservationColumns rows;
+        Map<String, Integer> cars;
+        try (Snapshot view = store.snapshot()) {
+            rows = view.columns(EpochDays.toDate(fromDay), EpochDays.toDate(toDay));
+            cars = view.getCarAmounts();
+        }
+        Utilisation.compute(rows, cars, fromDay, toDay).print(out);
+    }
+
+    /**
+     * Writes the date, the fleet and every reservation of a location, archived ones included,
+     * from one snapshot to a {@link StateFile}.
+     */
+    public void export(String[] args) {
+        Database store = db;
+        if (args.length == 3) {
+            store = storeFor(args[1]);
+            if (store == null) {
+                return;
+            }
+            args = withoutLocation(args);
+        }
+        if (args.length != 2) {
+            out.println("Usage: export [location] <file>");
+            return;
+        }
+
+        long start = System.nanoTime();
+        ReservationColumns rows;
+        long bytes;
+        try (Snapshot view = store.snapshot()) {
+            rows = view.columns(Date.valueOf("1900-01-01"), Date.valueOf("9999-12-31"));
+            bytes = StateFile.write(Path.of(args[1]), view.getCurrentDate(), view.getCarAmounts(), rows);
+        } catch (IOException | RuntimeException e) {
+            out.println("Cannot write " + args[1] + ": " + e.getMessage());
+            return;
+        }
+        out.printf(Locale.ROOT, "Exported %d reservations to %s (%d bytes) in %d ms%n",
+                rows.size(), args[1], bytes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Replaces the state of a location with the contents of an export. Waiting requests of the
+     * location are dropped, as on {@code reset}.
+     */
+    public void importState(String[] args) {
+        Database store = db;
+        String location = Fleet.DEFAULT_LOCATION;
+        if (args.length == 3) {
+            location = args[1];
+            store = storeFor(location);
+            if (store == null) {
+                return;
+            }
+            args = withoutLocation(args);
+        }
+        if (args.length != 2) {
+            out.println("Usage: import [location] <file>");
+            return;
+        }
+
+        long start = System.nanoTime();
+        StateFile.Contents contents;
+        try {
+            contents = StateFile.read(Path.of(args[1]));
+        } catch (IOException | RuntimeException e) {
+            out.println("Cannot read " + args[1] + ": " + e.getMessage());
+            return;
+        }
+        store.replaceState(contents.currentDate(), contents.cars(), contents.reservations());
+        fleet.waitlist(location).clear();
+        out.printf(Locale.ROOT, "Imported %d reservations from %s in %d ms%n",
+                contents.reservations().size(), args[1], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Lists the locations, or adds or moves one with {@code location <name> <lat> <lon>}.
+     */
+    public void location(String[] args) {
+        if (args.length == 1) {
+            Map<String, Fleet.Location> placed = new HashMap<>();
+            for (Fleet.Location location : fleet.getLocations()) {
+                placed.put(location.name(), location);
+            }
+            // one line per location; the default one has no coordinates unless they were set
+            for (String name : fleet.getLocationNames()) {
+                Fleet.Location location = placed.get(name);
+                if (location == null) {
+                    out.println(name);
+                } else {
+                    out.printf(Locale.ROOT, "%s at %.4f, %.4f%n", name, location.latitude(), location.longitude());
+                }
+            }
+            return;
+        }
+        if (args.length != 4) {
+            out.println("Usage: location [<name> <latitude> <longitude>]");
+            return;
+        }
+
+        try {
+            Fleet.Location location = fleet.setLocation(args[1], Double.parseDouble(args[2]), Double.parseDouble(args[3]));
+            out.printf(Locale.ROOT, "Location %s at %.4f, %.4f%n", location.name(), location.latitude(), location.longitude());
+        } catch (NumberFormatException e) {
+            out.println("Latitude and longitude must be numbers.");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the locations closest to the given one that have a free car of the type for the
+     * whole range.
+     */
+    public void nearest(String[] args) {
+        if (args.length != 5 && args.length != 6) {
+            out.println("Usage: nearest <location> <car> <from-date> <to-date> [limit]");
+            return;
+        }
+
+        int type = CarTypes.global().id(args[2]);
+        if (type < 0) {
+            out.println("Invalid car type. Must be one of: " + CarTypes.global().describe());
+            return;
+        }
+        String car = CarTypes.global().name(type);
+        int fromDay = EpochDays.parse(args[3]);
+        int toDay = EpochDays.parse(args[4]);
+        int limit;
+        try {
+            validateRange(fromDay, toDay, db.getCurrentDate());
+            limit = args.length == 6 ? Integer.parseInt(args[5]) : 3;
+        } catch (InvalidRequestException e) {
+            out.println(e.getMessage());
+            return;
+        } catch (NumberFormatException e) {
+            out.println("Limit must be a number.");
+            return;
+        }
+
+        List<Fleet.Nearby> found;
+        try {
+            found = fleet.findNearest(args[1], car, EpochDays.toDate(fromDay), EpochDays.toDate(toDay), limit);
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return;
+        }
+        if (found.isEmpty()) {
+            out.println("No location has a " + CarTypes.global().label(type) + " available for the selected dates");
+        }
+        for (Fleet.Nearby nearby : found) {
+            out.printf(Locale.ROOT, "%s: %d available, %.1f km%n", nearby.location(), nearby.available(), nearby.distanceKm());
+        }
+    }
+
+    private void printPromotions(List<Waitlist.Promotion> promotions) {
+        for (Waitlist.Promotion promotion : promotions) {
+            out.println("Waitlist W" + promotion.entry().ticket() + " booked as reservation #" + promotion.reservationId()
+                    + ": " + promotion.entry().car() + " " + promotion.entry().from() + " → " + promotion.entry().to());
+        }
+    }
+
+    /**
+     * Shows the requests waiting for a car at a location, or withdraws one with
+     * {@code waitlist [location] remove <ticket>}.
+     */
+    public void waitlist(String[] args) {
+        String location = Fleet.DEFAULT_LOCATION;
+        int next = 1;
+        if (args.length == 2 || args.length == 4) {
+            location = args[1];
+            if (storeFor(location) == null) {
+                return;
+            }
+            next = 2;
+        }
+        Waitlist waitlist = fleet.waitlist(location);
+
+        if (args.length == next + 2 && args[next].equalsIgnoreCase("remove")) {
+            String ticket = args[next + 1];
+            int number = parseId(ticket.regionMatches(true, 0, "W", 0, 1) ? ticket.substring(1) : ticket);
+            if (number > 0 && waitlist.remove(number)) {
+                out.println("W" + number + " removed from the waitlist");
+            } else {
+                out.println("No waitlist entry " + ticket.toUpperCase(Locale.ROOT));
+            }
+            return;
+        }
+        if (args.length != next) {
+            out.println("Usage: waitlist [location] [remove <ticket>]");
+            return;
+        }
+
+        out.println("=== Waitlist " + location.toUpperCase(Locale.ROOT) + " ===");
+        StringBuilder depth = new StringBuilder("Waiting: " + waitlist.size());
+        waitlist.depthByType().forEach((car, n) -> depth.append(", ").append(car).append(' ').append(n));
+        out.println(depth);
+        out.println("Promoted: " + waitlist.getPromoted() + ", expired: " + waitlist.getExpired());
+        for (Waitlist.Entry entry : waitlist.entries()) {
+            out.println(" " + entry.describe());
+        }
+    }
+
+    public void stats() {
+        out.print(metrics.getReport());
+    }
+
+    public void archive(String[] args) {
+        if (args.length != 2 || !args[1].equalsIgnoreCase("stats")) {
+            out.println("Usage: archive stats");
+            return;
+        }
+
+        ArchiveStats stats = db.getArchiveStats();
+        out.println("=== Archive ===");
+        out.println("Runs: " + stats.runs() + (stats.running() ? " (running)" : ""));
+        out.println("Rows moved: " + stats.rowsMoved());
+        out.println("Last run: " + stats.lastRunMillis() + " ms, total: " + stats.totalMillis() + " ms");
+        if (stats.rowsByMonth().isEmpty()) {
+            out.println("No archived reservations.");
+        }
+        for (Map.Entry<String, Long> month : stats.rowsByMonth().entrySet()) {
+            out.println(month.getKey() + ": " + month.getValue());
         }
     }
 
     public void help() {
-        System.out.println("Available commands:");
-        System.out.println("  reserve <car> <from> <to>    - Create a reservation");
-        System.out.println("  info                         - Show all reservations");
-        System.out.println("  jump <something>             - Debug/test command");
-        System.out.println("  reset                        - Reset the entire database");
-        System.out.println("  setdate <yyyy-mm-dd>         - Set the simulation date");
-        System.out.println("  setcar <car_type> <amount>   - Set available amount for all car types");
-        System.out.println("  help                         - Show this help message");
-        System.out.println("  stop                         - Quit the program");
+        out.println("Available commands:");
+        out.println("  reserve [location] <car> <from> <to>");
+        out.println("                               - Create a reservation");
+        out.println("  cancel [location] <id>       - Cancel a reservation");
+        out.println("  modify [location] <id> <from> <to>");
+        out.println("                               - Move a reservation to new dates");
+        out.println("  reserve-batch <file>         - Import reservations, one '<car> <from> <to>' per line");
+        out.println("  info [--location L] [--page N] [--size M] [--car <car_type>] [--from <date>] [--to <date>]");
+        out.println("                               - Show reservations, optionally filtered and paged");
+        out.println("  jump <something>             - Debug/test command");
+        out.println("  reset                        - Reset the entire database");
+        out.println("  setdate <yyyy-mm-dd>         - Set the simulation date");
+        out.println("  setcar [location] <car_type> <amount>");
+        out.println("                               - Set available amount for all car types");
+        out.println("  availability [location] <from> <to>");
+        out.println("                               - Show free cars per type for each day");
+        out.println("  analytics [location] <from> <to>");
+        out.println("                               - Show occupancy, peak days, lead times and rental lengths");
+        out.println("  export [location] <file>     - Save the date, fleet and all reservations to a file");
+        out.println("  import [location] <file>     - Replace the date, fleet and reservations with an export");
+        out.println("  location [<name> <lat> <lon>] - List locations, or add or move one");
+        out.println("  nearest <location> <car> <from> <to> [limit]");
+        out.println("                               - Closest locations with a free car");
+        out.println("  replay <file>                - Run a command script, car types in parallel");
+        out.println("  stats                        - Show latency, rejection and error statistics");
+        out.println("  archive stats                - Show archived reservations per month");
+        out.println("  waitlist [location] [remove <ticket>]");
+        out.println("                               - Show requests waiting for a car, or withdraw one");
+        out.println("  help                         - Show this help message");
+        out.println("  stop                         - Quit the program");
     }
 }
\ No newline at end of file
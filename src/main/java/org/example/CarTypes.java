@@ -0,0 +1,136 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The car types the rental offers, each with a dense int id ({@code 0..size()-1}) that
+ * availability indexes, locks and calendars use as an array index.
+ * <p>
+ * The {@link #global()} table starts with the types in the {@code carrental.carTypes}
+ * system property (comma separated, default {@code sedan,suv,van}); every store adds the
+ * types of its {@code cars} table when it opens. Ids are never reused or removed.
+ * <p>
+ * Lookups read an immutable open-addressing table through one volatile field and compare
+ * characters in place, ignoring case, so parsing a type out of a command line neither locks
+ * nor allocates. Registering copies the table.
+ */
+public final class CarTypes {
+
+    private static final Pattern NAME = Pattern.compile("[A-Z0-9_-]{1,50}");
+    private static final CarTypes GLOBAL =
+            new CarTypes(System.getProperty("carrental.carTypes", "sedan,suv,van").split(","));
+
+    /** Names and labels by id, and slots holding {@code id + 1} (0 when empty). */
+    private record Table(String[] names, String[] labels, int[] slots) {
+    }
+
+    private volatile Table table = new Table(new String[0], new String[0], new int[16]);
+
+    public CarTypes(String... names) {
+        for (String name : names) {
+            if (!name.isBlank()) {
+                register(name.trim());
+            }
+        }
+    }
+
+    public static CarTypes global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Adds a type unless it exists.
+     *
+     * @return the id of the type
+     * @throws IllegalArgumentException if the name is not 1-50 letters, digits, '-' or '_'
+     */
+    public synchronized int register(String name) {
+        int existing = id(name);
+        if (existing >= 0) {
+            return existing;
+        }
+        String upper = name.toUpperCase(Locale.ROOT);
+        if (!NAME.matcher(upper).matches()) {
+            throw new IllegalArgumentException("Car types are 1-50 letters, digits, '-' or '_': " + name);
+        }
+
+        Table old = table;
+        int id = old.names().length;
+        String[] names = Arrays.copyOf(old.names(), id + 1);
+        String[] labels = Arrays.copyOf(old.labels(), id + 1);
+        names[id] = upper;
+        labels[id] = upper.toLowerCase(Locale.ROOT);
+        // keep the table at most half full
+        int capacity = old.slots().length;
+        while (capacity < 2 * names.length) {
+            capacity <<= 1;
+        }
+        int[] slots = new int[capacity];
+        for (int i = 0; i < names.length; i++) {
+            int slot = hash(names[i], 0, names[i].length()) & (capacity - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot] = i + 1;
+        }
+        table = new Table(names, labels, slots);
+        return id;
+    }
+
+    /** @return the id of the type named by {@code s}, ignoring case, or -1 */
+    public int id(String s) {
+        return id(s, 0, s.length());
+    }
+
+    /** @return the id of the type named by characters {@code [start, end)} of {@code s}, or -1 */
+    public int id(String s, int start, int end) {
+        Table t = table;
+        int length = end - start;
+        int mask = t.slots().length - 1;
+        for (int slot = hash(s, start, end) & mask; ; slot = (slot + 1) & mask) {
+            int entry = t.slots()[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            String name = t.names()[entry - 1];
+            if (name.length() == length && s.regionMatches(true, start, name, 0, length)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + Character.toLowerCase(s.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** Upper-case name as stored. */
+    public String name(int id) {
+        return table.names()[id];
+    }
+
+    /** Lower-case name as users type it. */
+    public String label(int id) {
+        return table.labels()[id];
+    }
+
+    public int size() {
+        return table.names().length;
+    }
+
+    /** Names by id. */
+    public List<String> names() {
+        return List.of(table.names());
+    }
+
+    /** Labels joined for error messages, e.g. "sedan, suv, van". */
+    public String describe() {
+        return String.join(", ", table.labels());
+    }
+}
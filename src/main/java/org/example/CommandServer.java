@@ -0,0 +1,115 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the {@link CarRental} command language over TCP, one virtual thread per connection.
+ * <p>
+ * Protocol: the client sends one command per line. For every command the server writes the
+ * command output followed by a line containing only {@code "."}. Clients may pipeline: commands
+ * are executed in the order received and output is flushed once no further input is buffered.
+ * {@code stop} closes the connection.
+ */
+public class CommandServer implements AutoCloseable {
+
+    static final String END_OF_RESPONSE = ".";
+
+    private final Fleet fleet;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Metrics metrics;
+
+    /**
+     * @param port the port to listen on, or 0 for any free port
+     */
+    public CommandServer(Database db, int port) throws IOException {
+        this(db, port, null, Metrics.global());
+    }
+
+    public CommandServer(Database db, int port, InetAddress bindAddress, Metrics metrics) throws IOException {
+        this(new Fleet(db), port, bindAddress, metrics);
+    }
+
+    public CommandServer(Fleet fleet, int port, InetAddress bindAddress, Metrics metrics) throws IOException {
+        this.fleet = fleet;
+        this.metrics = metrics;
+        this.serverSocket = new ServerSocket(port, 50, bindAddress);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Accepts connections on a background thread and returns immediately. */
+    public void start() {
+        Thread.ofVirtual().name("command-server-accept").start(this::serve);
+    }
+
+    /** Accepts connections until the server is closed. */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.submit(() -> handle(socket));
+            } catch (SocketException e) {
+                // server socket closed
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(
+                     new BufferedOutputStream(socket.getOutputStream()), false, StandardCharsets.UTF_8)) {
+
+            CarRental rental = new CarRental(fleet, out, metrics);
+            String line;
+            while ((line = in.readLine()) != null) {
+                String commandLine = line.trim();
+                if (commandLine.equalsIgnoreCase("stop")) {
+                    break;
+                }
+                if (!commandLine.isEmpty()) {
+                    execute(rental, commandLine, out);
+                }
+                out.println(END_OF_RESPONSE);
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    private void execute(CarRental rental, String commandLine, PrintStream out) {
+        try {
+            rental.handleCommand(commandLine);
+        } catch (RuntimeException e) {
+            out.println("ERROR " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+}
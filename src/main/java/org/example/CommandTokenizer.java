@@ -0,0 +1,78 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Splits a command line on whitespace by recording token boundaries instead of creating
+ * substrings. One instance is reused for every line a {@link CarRental} handles, so it is not
+ * thread-safe.
+ */
+final class CommandTokenizer {
+
+    private String line = "";
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int count;
+
+    CommandTokenizer reset(String line) {
+        this.line = line;
+        count = 0;
+        int i = 0;
+        int n = line.length();
+        while (true) {
+            while (i < n && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i == n) {
+                return this;
+            }
+            int start = i;
+            while (i < n && !Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = i;
+            count++;
+        }
+    }
+
+    String line() {
+        return line;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int end(int index) {
+        return ends[index];
+    }
+
+    /** Whether token {@code index} equals {@code word}, ignoring case. */
+    boolean is(int index, String word) {
+        int length = ends[index] - starts[index];
+        return length == word.length() && line.regionMatches(true, starts[index], word, 0, length);
+    }
+
+    String token(int index) {
+        return line.substring(starts[index], ends[index]);
+    }
+
+    /** Copies the tokens into an array, for commands that are not on the hot path. */
+    String[] toArray(boolean lowerCase) {
+        String[] tokens = new String[count];
+        for (int i = 0; i < count; i++) {
+            tokens[i] = lowerCase ? token(i).toLowerCase(Locale.ROOT) : token(i);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,226 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small bounded JDBC connection pool used by {@link DB}.
+ * <p>
+ * Connections are kept open between calls and handed out LIFO so the hottest connection
+ * (and its statement cache) is reused first. Idle connections above {@code minIdle} are
+ * closed by a background evictor once they have been unused for {@code maxIdle}.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+    private static final long VALIDATE_AFTER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final String url;
+    private final String user;
+    private final String pass;
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxIdleNanos;
+    private final long waitTimeoutNanos;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private final AtomicLong statementEpoch = new AtomicLong();
+    private volatile boolean closed;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder borrowNanos = new LongAdder();
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String pass, int maxSize, Duration maxIdle, Duration waitTimeout) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.url = url;
+        this.user = user;
+        this.pass = pass;
+        this.maxSize = maxSize;
+        this.minIdle = 1;
+        this.maxIdleNanos = maxIdle.toNanos();
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, maxIdle.toMillis() / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the configured timeout if all of them are in use.
+     * The returned connection goes back to the pool when closed.
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        if (!permits.tryAcquire()) {
+            waits.increment();
+            try {
+                if (!permits.tryAcquire(waitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                    timeouts.increment();
+                    throw new SQLTransientConnectionException("Timed out after "
+                            + TimeUnit.NANOSECONDS.toMillis(waitTimeoutNanos) + " ms waiting for a connection");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection", e);
+            }
+        }
+
+        PooledConnection pc;
+        try {
+            pc = takeHealthy();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        active.incrementAndGet();
+        pc.borrowedAt = System.nanoTime();
+        long elapsed = pc.borrowedAt - start;
+        borrows.increment();
+        borrowNanos.add(elapsed);
+        maxBorrowNanos.accumulateAndGet(elapsed, Math::max);
+        return pc;
+    }
+
+    private PooledConnection takeHealthy() throws SQLException {
+        PooledConnection pc;
+        while ((pc = pollIdle()) != null) {
+            if (System.nanoTime() - pc.lastUsed < VALIDATE_AFTER_IDLE_NANOS || pc.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return pc;
+            }
+            pc.closePhysical();
+        }
+        Connection conn = DriverManager.getConnection(url, user, pass);
+        created.increment();
+        return new PooledConnection(this, conn);
+    }
+
+    private PooledConnection pollIdle() {
+        synchronized (idle) {
+            return idle.pollFirst();
+        }
+    }
+
+    void release(PooledConnection pc) {
+        active.decrementAndGet();
+        Metrics.global().recordJdbc(System.nanoTime() - pc.borrowedAt);
+        try {
+            if (closed || !pc.resetForReuse()) {
+                pc.closePhysical();
+                return;
+            }
+            pc.lastUsed = System.nanoTime();
+            synchronized (idle) {
+                idle.offerFirst(pc);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        synchronized (idle) {
+            // oldest connections sit at the tail
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() > minIdle) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastUsed < maxIdleNanos) {
+                    break;
+                }
+                it.remove();
+                pc.closePhysical();
+                evicted.increment();
+            }
+        }
+    }
+
+    /**
+     * Drops every cached prepared statement. Needed after DDL that recreates tables.
+     */
+    public void invalidateStatements() {
+        statementEpoch.incrementAndGet();
+    }
+
+    long statementEpoch() {
+        return statementEpoch.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public Stats getStats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        long count = borrows.sum();
+        return new Stats(
+                active.get(),
+                idleCount,
+                maxSize,
+                count,
+                waits.sum(),
+                timeouts.sum(),
+                created.sum(),
+                evicted.sum(),
+                count == 0 ? 0 : borrowNanos.sum() / count / 1_000,
+                maxBorrowNanos.get() / 1_000);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        synchronized (idle) {
+            for (PooledConnection pc : idle) {
+                pc.closePhysical();
+            }
+            idle.clear();
+        }
+    }
+
+    public record Stats(int active, int idle, int maxSize, long borrows, long waits, long timeouts,
+                        long created, long evicted, long avgBorrowMicros, long maxBorrowMicros) {
+
+        @Override
+        public String toString() {
+            return "active=" + active + " idle=" + idle + " max=" + maxSize
+                    + " borrows=" + borrows + " waits=" + waits + " timeouts=" + timeouts
+                    + " created=" + created + " evicted=" + evicted
+                    + " avgBorrow=" + avgBorrowMicros + "us maxBorrow=" + maxBorrowMicros + "us";
+        }
+    }
+}
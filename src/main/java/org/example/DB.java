@@ -1,10 +1,20 @@
 package org.example;
 
 import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class DB implements Database {
 
@@ -12,271 +22,1051 @@ public class DB implements Database {
     private static final String USER = "sa";
     private static final String PASS = "";
 
+    private static final int DEFAULT_POOL_SIZE = Integer.getInteger("carrental.db.poolSize", 4);
+    private static final Duration POOL_MAX_IDLE =
+            Duration.ofSeconds(Long.getLong("carrental.db.poolMaxIdleSeconds", 300));
+    private static final Duration POOL_WAIT_TIMEOUT =
+            Duration.ofMillis(Long.getLong("carrental.db.poolWaitMillis", 5_000));
+    private static final boolean BACKGROUND_WARM_UP = Boolean.getBoolean("carrental.db.backgroundWarmUp");
+    private static final int FETCH_SIZE = 500;
+    private static final int ARCHIVE_CHUNK = 10_000;
+    /** Inserts a reservation stamped with the current simulation date as its booking day. */
+    private static final String INSERT_RESERVATION = "INSERT INTO reservations (car, from_date, to_date, booked_on) "
+            + "VALUES (?, ?, ?, (SELECT CAST(setting_value AS DATE) FROM settings WHERE setting_key = 'current_date'))";
+
+    private final ConnectionPool pool;
+    private final String poolGaugeName;
+    private final Supplier<?> poolGauge;
+    private final OccupancyIndex occupancy = new OccupancyIndex();
+    /** Completes once {@link #occupancy} holds every stored reservation. */
+    private final CompletableFuture<Void> warmedUp;
+    private volatile boolean closing;
+    private final CarTypes carTypes = CarTypes.global();
+    /** One lock per car type id, grown as types are registered. */
+    private volatile ReentrantLock[] locks = new ReentrantLock[0];
+    /** Taken for requests naming a type that does not exist. */
+    private final ReentrantLock unknownTypeLock = new ReentrantLock();
+    private final Archiver archiver = new Archiver(this::archiveExpired);
+    /** Epoch day of the latest end date in the archive; listings from before it include the archive. */
+    private volatile int archivedThrough = Integer.MIN_VALUE;
+
     public DB() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS reservations (
-                            id INT PRIMARY KEY AUTO_INCREMENT,
-                            car VARCHAR(255),
-                            from_date DATE,
-                            to_date DATE
-                        );
-                    """);
-
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS cars (
-                            car_type VARCHAR(255) PRIMARY KEY,
-                            amount INT
-                        );
-                    """);
-
-            stmt.execute("""
-                        CREATE TABLE IF NOT EXISTS settings (
-                            "setting_key" VARCHAR(50) PRIMARY KEY,
-                            "setting_value" VARCHAR(255)
-                        );
-                    """);
-
-            initializeDefaultData();
+        this(URL, DEFAULT_POOL_SIZE);
+    }
+
+    public DB(String url) {
+        this(url, DEFAULT_POOL_SIZE);
+    }
+
+    public DB(String url, int poolSize) {
+        this(url, poolSize, POOL_MAX_IDLE, POOL_WAIT_TIMEOUT);
+    }
+
+    public DB(String url, int poolSize, Duration maxIdle, Duration waitTimeout) {
+        this(url, poolSize, maxIdle, waitTimeout, BACKGROUND_WARM_UP);
+    }
+
+    /**
+     * @param backgroundWarmUp load the occupancy index on a background thread instead of before
+     *                         returning; calls that need it wait until it is loaded
+     */
+    public DB(String url, int poolSize, Duration maxIdle, Duration waitTimeout, boolean backgroundWarmUp) {
+        pool = new ConnectionPool(url, USER, PASS, poolSize, maxIdle, waitTimeout);
+        // one DB per location shares the process-wide metrics
+        poolGaugeName = "Connection pool " + url;
+        poolGauge = pool::getStats;
+        Metrics.global().registerGauge(poolGaugeName, poolGauge);
+
+        try (PooledConnection conn = pool.borrow()) {
+            bootstrap(conn.connection());
+            loadCarTypes(conn);
+            if (!backgroundWarmUp) {
+                // the index has to be complete before archival may remove entries from it
+                rebuildOccupancy(conn);
+            }
+        } catch (SQLException e) {
+            reportError(e);
+        }
+
+        if (backgroundWarmUp) {
+            warmedUp = CompletableFuture.runAsync(() -> {
+                try (PooledConnection conn = pool.borrow()) {
+                    rebuildOccupancy(conn);
+                } catch (SQLException e) {
+                    reportError(e);
+                }
+                if (!closing) {
+                    archiver.schedule();
+                }
+            }, runnable -> {
+                Thread t = new Thread(runnable, "db-warm-up");
+                t.setDaemon(true);
+                t.start();
+            });
+        } else {
+            warmedUp = CompletableFuture.completedFuture(null);
+            archiver.schedule();
+        }
+    }
+
+    /**
+     * Migrates the schema and seeds a new database in one transaction. A database whose
+     * {@code schema_version} is already current was seeded when it was created, so a normal
+     * start costs a single query.
+     */
+    private void bootstrap(Connection c) throws SQLException {
+        if (SchemaMigrations.currentVersion(c) == SchemaMigrations.LATEST_VERSION) {
+            return;
+        }
+        // H2 commits DDL on its own, so the transaction covers the data changes and the
+        // version marker: a new database is either seeded and marked current, or neither
+        c.setAutoCommit(false);
+        try (Statement stmt = c.createStatement()) {
+            SchemaMigrations.migrate(c);
+            stmt.executeUpdate("INSERT INTO settings (setting_key, setting_value) SELECT 'current_date', '2025-01-01' "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM settings WHERE setting_key = 'current_date')");
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM cars")) {
+                if (rs.next() && rs.getInt(1) == 0) {
+                    try (PreparedStatement insert = c.prepareStatement("INSERT INTO cars (car_type, amount) VALUES (?, 5)")) {
+                        for (String type : carTypes.names()) {
+                            insert.setString(1, type);
+                            insert.addBatch();
+                        }
+                        insert.executeBatch();
+                    }
+                }
+            }
+            c.commit();
         } catch (SQLException e) {
-            e.printStackTrace();
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(true);
         }
     }
 
-    private void initializeDefaultData() {
-        try (Connection conn = getConnection()) {
+    /**
+     * Database errors are logged and counted instead of being thrown to the caller.
+     */
+    private static void reportError(SQLException e) {
+        e.printStackTrace();
+        Metrics.global().error();
+    }
 
-            // Check if current_date is set, if not set default
-            PreparedStatement checkDate = conn.prepareStatement(
-                    "SELECT COUNT(*) as count FROM settings WHERE setting_key = 'current_date'");
-            ResultSet rs = checkDate.executeQuery();
-            if (rs.next() && rs.getInt("count") == 0) {
-                setCurrentDate("2025-01-01");
+    /** Registers the car types of the {@code cars} table, so each has an id. */
+    private void loadCarTypes(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepare("SELECT car_type FROM cars ORDER BY car_type").executeQuery()) {
+            while (rs.next()) {
+                carTypes.register(rs.getString("car_type"));
             }
-            rs.close();
-            checkDate.close();
+        }
+    }
 
-            // Check if cars table is empty, if so add defaults
-            PreparedStatement checkCars = conn.prepareStatement(
-                    "SELECT COUNT(*) as count FROM cars");
-            ResultSet rsCars = checkCars.executeQuery();
-            if (rsCars.next() && rsCars.getInt("count") == 0) {
-                setCarAmounts("SEDAN", 5);
-                setCarAmounts("SUV", 5);
-                setCarAmounts("VAN", 5);
+    /**
+     * Loads every stored reservation into the in-memory occupancy index.
+     */
+    private void rebuildOccupancy(PooledConnection conn) throws SQLException {
+        occupancy.clear();
+        try (ResultSet rs = conn.prepare("SELECT car, from_date, to_date FROM reservations").executeQuery()) {
+            while (rs.next() && !closing) {
+                occupancy.add(rs.getString("car"), rs.getDate("from_date"), rs.getDate("to_date"));
             }
-            rsCars.close();
-            checkCars.close();
+        }
+        try (ResultSet rs = conn.prepare("SELECT MAX(to_date) FROM reservations_archive").executeQuery()) {
+            Date latest = rs.next() ? rs.getDate(1) : null;
+            archivedThrough = latest != null ? OccupancyIndex.epochDay(latest) : Integer.MIN_VALUE;
+        }
+    }
 
+    /**
+     * Waits until the warm-up has loaded the occupancy index. Called before anything that
+     * reads the index or writes reservations, so no row is both loaded and added.
+     */
+    private void awaitWarmUp() {
+        if (!warmedUp.isDone()) {
+            warmedUp.join();
+        }
+    }
+
+    /**
+     * Moves reservations that ended before the current date to {@code reservations_archive},
+     * one transaction per chunk so the live table is never locked for long.
+     */
+    private int archiveExpired() throws SQLException {
+        String date = getCurrentDate();
+        if (date == null) {
+            return 0;
+        }
+        Date cutoff = Date.valueOf(date);
+        int moved = 0;
+        int chunk;
+        do {
+            chunk = archiveChunk(cutoff);
+            moved += chunk;
+        } while (chunk == ARCHIVE_CHUNK);
+        return moved;
+    }
+
+    private int archiveChunk(Date cutoff) throws SQLException {
+        List<Reservation> moved = new ArrayList<>();
+        try (PooledConnection conn = pool.borrow()) {
+            Connection c = conn.connection();
+            c.setAutoCommit(false);
+
+            PreparedStatement delete = conn.prepare("SELECT id, car, from_date, to_date, booked_on FROM OLD TABLE "
+                    + "(DELETE FROM reservations WHERE to_date < ? FETCH FIRST ? ROWS ONLY)");
+            delete.setDate(1, cutoff);
+            delete.setInt(2, ARCHIVE_CHUNK);
+            PreparedStatement insert = conn.prepare("INSERT INTO reservations_archive "
+                    + "(archive_month, id, car, from_date, to_date, booked_on) VALUES (?, ?, ?, ?, ?, ?)");
+            try (ResultSet rs = delete.executeQuery()) {
+                while (rs.next()) {
+                    Reservation r = new Reservation(
+                            rs.getInt("id"), rs.getString("car"), rs.getDate("from_date"), rs.getDate("to_date"));
+                    moved.add(r);
+                    insert.setInt(1, archiveMonth(r.to()));
+                    insert.setInt(2, r.id());
+                    insert.setString(3, r.car());
+                    insert.setDate(4, r.from());
+                    insert.setDate(5, r.to());
+                    insert.setDate(6, rs.getDate("booked_on"));
+                    insert.addBatch();
+                }
+            }
+            if (!moved.isEmpty()) {
+                insert.executeBatch();
+            }
+            // listings have to look in the archive before the rows leave the live table
+            for (Reservation r : moved) {
+                archivedThrough = Math.max(archivedThrough, OccupancyIndex.epochDay(r.to()));
+            }
+            c.commit();
+        }
+
+        for (Reservation r : moved) {
+            occupancy.remove(r.car(), r.from(), r.to());
+        }
+        return moved.size();
+    }
+
+    private static int archiveMonth(Date date) {
+        LocalDate day = date.toLocalDate();
+        return day.getYear() * 100 + day.getMonthValue();
+    }
+
+    /** Waits for archival started by earlier date changes to finish. */
+    void awaitArchival() {
+        awaitWarmUp();
+        archiver.awaitIdle();
+    }
+
+    public ArchiveStats getArchiveStats() {
+        Map<String, Long> rowsByMonth = new TreeMap<>();
+        try (PooledConnection conn = pool.borrow();
+             ResultSet rs = conn.prepare("SELECT archive_month, COUNT(*) FROM reservations_archive "
+                     + "GROUP BY archive_month ORDER BY archive_month").executeQuery()) {
+            while (rs.next()) {
+                int month = rs.getInt(1);
+                rowsByMonth.put(String.format(Locale.ROOT, "%d-%02d", month / 100, month % 100), rs.getLong(2));
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            reportError(e);
         }
+        return archiver.stats(rowsByMonth);
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASS);
+    public ConnectionPool.Stats getPoolStats() {
+        return pool.getStats();
+    }
+
+    @Override
+    public void close() {
+        // a background warm-up stops at the next row and must let go of its connection first
+        closing = true;
+        warmedUp.exceptionally(e -> null).join();
+        archiver.close();
+        Metrics.global().unregisterGauge(poolGaugeName, poolGauge);
+        pool.close();
+    }
+
+    /**
+     * Writers of the same car type serialize on its lock; other types proceed in parallel.
+     */
+    private ReentrantLock lockFor(String carType) {
+        return lockFor(carTypes.id(carType));
+    }
+
+    private ReentrantLock lockFor(int type) {
+        if (type < 0) {
+            return unknownTypeLock;
+        }
+        ReentrantLock[] current = locks;
+        return type < current.length ? current[type] : growLocks(type);
+    }
+
+    private synchronized ReentrantLock growLocks(int type) {
+        ReentrantLock[] current = locks;
+        if (type < current.length) {
+            return current[type];
+        }
+        ReentrantLock[] grown = Arrays.copyOf(current, Math.max(type + 1, carTypes.size()));
+        for (int i = current.length; i < grown.length; i++) {
+            grown[i] = new ReentrantLock();
+        }
+        locks = grown;
+        return grown[type];
     }
 
     public void addReservation(String car, Date from, Date to) {
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "INSERT INTO reservations (car, from_date, to_date) VALUES (?, ?, ?)")) {
+        awaitWarmUp();
+        ReentrantLock lock = lockFor(car);
+        lock.lock();
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement ps = conn.prepare(
+                    INSERT_RESERVATION);
 
             ps.setString(1, car);
             ps.setDate(2, from);
             ps.setDate(3, to);
 
             ps.executeUpdate();
+            occupancy.add(car, from, to);
 
         } catch (SQLException e) {
-            e.printStackTrace();
+            reportError(e);
+        } finally {
+            lock.unlock();
         }
     }
 
-    public int getAvailableCars(String carType, Date from, Date to) {
-        int totalCars = 0;
-        int bookedCars = 0;
+    public ReservationResult tryReserve(String car, Date from, Date to) {
+        awaitWarmUp();
+        int type = carTypes.id(car);
+        if (type < 0) {
+            return ReservationResult.unavailable(0);
+        }
+        int fromDay = OccupancyIndex.epochDay(from);
+        int toDay = OccupancyIndex.epochDay(to);
+        car = carTypes.name(type);
 
-        // Get total cars of this type
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "SELECT amount FROM cars WHERE car_type = ?")) {
-            ps.setString(1, carType.toUpperCase());
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                totalCars = rs.getInt("amount");
+        ReentrantLock lock = lockFor(type);
+        lock.lock();
+        try (PooledConnection conn = pool.borrow()) {
+            Connection c = conn.connection();
+            c.setAutoCommit(false);
+
+            // Availability comes from this process's occupancy index, which never sees another
+            // process's inserts, so the store must have a single writer process; the row lock
+            // only keeps the fleet size fixed until this transaction commits
+            PreparedStatement amount = conn.prepare("SELECT amount FROM cars WHERE car_type = ? FOR UPDATE");
+            amount.setString(1, car);
+            int totalCars = 0;
+            try (ResultSet rs = amount.executeQuery()) {
+                if (rs.next()) {
+                    totalCars = rs.getInt("amount");
+                }
             }
+
+            int available = totalCars - occupancy.peak(type, fromDay, toDay);
+            if (available <= 0) {
+                c.rollback();
+                return ReservationResult.unavailable(available);
+            }
+
+            PreparedStatement insert = conn.prepare(
+                    "SELECT id FROM FINAL TABLE (" + INSERT_RESERVATION + ")");
+            insert.setString(1, car);
+            insert.setDate(2, from);
+            insert.setDate(3, to);
+            int id;
+            try (ResultSet rs = insert.executeQuery()) {
+                rs.next();
+                id = rs.getInt("id");
+            }
+
+            c.commit();
+            occupancy.add(type, fromDay, toDay, 1);
+            return ReservationResult.accepted(id, available - 1);
+
         } catch (SQLException e) {
-            e.printStackTrace();
-            return 0;
+            reportError(e);
+            return ReservationResult.failed();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<ReservationResult> addReservations(List<Reservation> reservations) {
+        awaitWarmUp();
+        List<ReservationResult> results = new ArrayList<>(reservations.size());
+        if (reservations.isEmpty()) {
+            return results;
+        }
+
+        // Normalise the type names once, as tryReserve does; null marks an unknown type
+        List<Reservation> requests = new ArrayList<>(reservations.size());
+        TreeSet<Integer> types = new TreeSet<>();
+        for (Reservation r : reservations) {
+            int type = carTypes.id(r.car());
+            types.add(type);
+            requests.add(type < 0 ? null : new Reservation(carTypes.name(type), r.from(), r.to()));
+        }
+        // Take the lock of every type the batch needs, always in id order
+        for (int type : types) {
+            lockFor(type).lock();
+        }
+
+        List<Reservation> accepted = new ArrayList<>();
+        try (PooledConnection conn = pool.borrow()) {
+            Connection c = conn.connection();
+            c.setAutoCommit(false);
+
+            Map<String, Integer> totals = new HashMap<>();
+            PreparedStatement amount = conn.prepare("SELECT amount FROM cars WHERE car_type = ? FOR UPDATE");
+            for (Reservation r : requests) {
+                if (r != null && !totals.containsKey(r.car())) {
+                    amount.setString(1, r.car());
+                    try (ResultSet rs = amount.executeQuery()) {
+                        totals.put(r.car(), rs.next() ? rs.getInt("amount") : 0);
+                    }
+                }
+            }
+
+            // Validate in memory; accepted requests are added to the index right away so
+            // later requests in the batch see them
+            PreparedStatement insert = conn.prepareReturningKeys(
+                    INSERT_RESERVATION);
+            for (int i = 0; i < requests.size(); i++) {
+                Reservation r = requests.get(i);
+                if (reservations.get(i).from().after(reservations.get(i).to())) {
+                    results.add(ReservationResult.failed());
+                    continue;
+                }
+                if (r == null) {
+                    results.add(ReservationResult.unavailable(0));
+                    continue;
+                }
+                int available = totals.get(r.car()) - occupancy.peak(r.car(), r.from(), r.to());
+                if (available <= 0) {
+                    results.add(ReservationResult.unavailable(available));
+                    continue;
+                }
+                occupancy.add(r.car(), r.from(), r.to());
+                accepted.add(r);
+                results.add(ReservationResult.accepted(0, available - 1));
+
+                insert.setString(1, r.car());
+                insert.setDate(2, r.from());
+                insert.setDate(3, r.to());
+                insert.addBatch();
+            }
+
+            if (!accepted.isEmpty()) {
+                insert.executeBatch();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    for (int i = 0; i < results.size(); i++) {
+                        ReservationResult result = results.get(i);
+                        if (result.isAccepted() && keys.next()) {
+                            results.set(i, ReservationResult.accepted(keys.getInt(1), result.available()));
+                        }
+                    }
+                }
+            }
+            c.commit();
+            return results;
+
+        } catch (SQLException e) {
+            reportError(e);
+            // nothing was stored, so undo what the batch put into the index
+            for (Reservation r : accepted) {
+                occupancy.remove(r.car(), r.from(), r.to());
+            }
+            results.clear();
+            for (int i = 0; i < reservations.size(); i++) {
+                results.add(ReservationResult.failed());
+            }
+            return results;
+        } finally {
+            for (int type : types.descendingSet()) {
+                lockFor(type).unlock();
+            }
         }
+    }
 
-        // Count overlapping reservations
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "SELECT COUNT(*) as count FROM reservations WHERE car = ? AND " +
-                     "((from_date <= ? AND to_date > ?) OR " +
-                     "(from_date < ? AND to_date >= ?) OR " +
-                     "(from_date >= ? AND to_date <= ?))")) {
+    /** Car type of a reservation, or null if there is none with this id. */
+    private String carOf(int id) throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement ps = conn.prepare("SELECT car FROM reservations WHERE id = ?");
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString("car") : null;
+            }
+        }
+    }
 
-            ps.setString(1, carType);
-            ps.setDate(2, to);
-            ps.setDate(3, from);
-            ps.setDate(4, to);
-            ps.setDate(5, from);
-            ps.setDate(6, from);
-            ps.setDate(7, to);
+    public Reservation getReservation(int id) {
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement ps = conn.prepare("SELECT id, car, from_date, to_date FROM reservations WHERE id = ?");
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next()
+                        ? new Reservation(rs.getInt("id"), rs.getString("car"), rs.getDate("from_date"), rs.getDate("to_date"))
+                        : null;
+            }
+        } catch (SQLException e) {
+            reportError(e);
+            return null;
+        }
+    }
 
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                bookedCars = rs.getInt("count");
+    public boolean cancelReservation(int id) {
+        awaitWarmUp();
+        String car;
+        try {
+            // the car type never changes, so it can pick the lock before the row is locked
+            car = carOf(id);
+        } catch (SQLException e) {
+            reportError(e);
+            return false;
+        }
+        if (car == null) {
+            return false;
+        }
+
+        ReentrantLock lock = lockFor(car);
+        lock.lock();
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement delete = conn.prepare(
+                    "SELECT from_date, to_date FROM OLD TABLE (DELETE FROM reservations WHERE id = ?)");
+            delete.setInt(1, id);
+            try (ResultSet rs = delete.executeQuery()) {
+                if (!rs.next()) {
+                    // cancelled concurrently
+                    return false;
+                }
+                occupancy.remove(car, rs.getDate("from_date"), rs.getDate("to_date"));
+                return true;
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            reportError(e);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ReservationResult modifyReservation(int id, Date from, Date to) {
+        awaitWarmUp();
+        String car;
+        try {
+            car = carOf(id);
+        } catch (SQLException e) {
+            reportError(e);
+            return ReservationResult.failed();
+        }
+        if (car == null) {
+            return ReservationResult.notFound();
+        }
+        // checked before the index is touched: it rejects inverted ranges with an exception
+        if (from.after(to) || carTypes.id(car) < 0) {
+            return ReservationResult.failed();
+        }
+
+        ReentrantLock lock = lockFor(car);
+        lock.lock();
+        Date oldFrom = null;
+        Date oldTo = null;
+        try (PooledConnection conn = pool.borrow()) {
+            Connection c = conn.connection();
+            c.setAutoCommit(false);
+
+            PreparedStatement amount = conn.prepare("SELECT amount FROM cars WHERE car_type = ? FOR UPDATE");
+            amount.setString(1, car);
+            int totalCars = 0;
+            try (ResultSet rs = amount.executeQuery()) {
+                if (rs.next()) {
+                    totalCars = rs.getInt("amount");
+                }
+            }
+
+            PreparedStatement current = conn.prepare(
+                    "SELECT from_date, to_date FROM reservations WHERE id = ? FOR UPDATE");
+            current.setInt(1, id);
+            try (ResultSet rs = current.executeQuery()) {
+                if (!rs.next()) {
+                    c.rollback();
+                    return ReservationResult.notFound();
+                }
+                oldFrom = rs.getDate("from_date");
+                oldTo = rs.getDate("to_date");
+            }
+
+            // Move the reservation in the index, then check the new range including it
+            occupancy.remove(car, oldFrom, oldTo);
+            occupancy.add(car, from, to);
+            int available = totalCars - occupancy.peak(car, from, to);
+            if (available < 0) {
+                occupancy.remove(car, from, to);
+                occupancy.add(car, oldFrom, oldTo);
+                oldFrom = null;
+                c.rollback();
+                return ReservationResult.unavailable(available + 1);
+            }
+
+            PreparedStatement update = conn.prepare(
+                    "UPDATE reservations SET from_date = ?, to_date = ? WHERE id = ?");
+            update.setDate(1, from);
+            update.setDate(2, to);
+            update.setInt(3, id);
+            update.executeUpdate();
+            c.commit();
+            return ReservationResult.accepted(id, available);
+
+        } catch (SQLException e) {
+            reportError(e);
+            if (oldFrom != null) {
+                occupancy.remove(car, from, to);
+                occupancy.add(car, oldFrom, oldTo);
+            }
+            return ReservationResult.failed();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getAvailableCars(String carType, Date from, Date to) {
+        int totalCars = 0;
+
+        // Get total cars of this type
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement ps = conn.prepare("SELECT amount FROM cars WHERE car_type = ?");
+            ps.setString(1, carType.toUpperCase());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    totalCars = rs.getInt("amount");
+                }
+            }
+        } catch (SQLException e) {
+            reportError(e);
             return 0;
         }
 
-        return totalCars - bookedCars;
+        return totalCars - getBookedCars(carType, from, to);
+    }
+
+    public int getBookedCars(String carType, Date from, Date to) {
+        awaitWarmUp();
+        // Peak number of cars in use on any day of the range
+        return occupancy.peak(carType, from, to);
+    }
+
+    public int[][] getAvailabilityCalendar(Date from, Date to) {
+        awaitWarmUp();
+        // one query for the fleet, the per-day counts come from the occupancy index
+        return occupancy.calendar(getCarAmounts(), OccupancyIndex.epochDay(from), OccupancyIndex.epochDay(to));
     }
 
     public void setCurrentDate(String date) {
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "MERGE INTO settings (setting_key, setting_value) KEY(setting_key) VALUES ('current_date', ?)"
-             )) {
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement ps = conn.prepare(
+                    "MERGE INTO settings (setting_key, setting_value) KEY(setting_key) VALUES ('current_date', ?)");
 
             ps.setString(1, date);
             ps.executeUpdate();
 
-            System.out.println("Date set to " + date);
-
         } catch (SQLException e) {
-            e.printStackTrace();
+            reportError(e);
+            return;
         }
+        archiver.schedule();
     }
 
     public String getCurrentDate() {
-        String date = null;
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "SELECT * FROM settings WHERE setting_key = 'current_date'"
-             );
-             ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                date = rs.getString("setting_value");
-            }
-
+        try (PooledConnection conn = pool.borrow()) {
+            return readCurrentDate(conn);
         } catch (SQLException e) {
-            e.printStackTrace();
+            reportError(e);
+            return null;
+        }
+    }
+
+    private static String readCurrentDate(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepare("SELECT * FROM settings WHERE setting_key = 'current_date'").executeQuery()) {
+            return rs.next() ? rs.getString("setting_value") : null;
         }
-        return date;
     }
 
     public void setCarAmounts(String type, int amount) {
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "MERGE INTO cars (car_type, amount) KEY(car_type) VALUES (?, ?)")) {
+        try (PooledConnection conn = pool.borrow()) {
+            PreparedStatement ps = conn.prepare(
+                    "MERGE INTO cars (car_type, amount) KEY(car_type) VALUES (?, ?)");
             ps.setString(1, type.toUpperCase());
             ps.setInt(2, amount);
             ps.executeUpdate();
-            System.out.println("Set " + type + " amount to " + amount);
+            carTypes.register(type);
         } catch (SQLException e) {
-            e.printStackTrace();
+            reportError(e);
         }
     }
 
     public Map<String, Integer> getCarAmounts() {
-        Map<String, Integer> cars = new HashMap<>();
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT car_type, amount FROM cars");
-             ResultSet rs = ps.executeQuery()) {
+        try (PooledConnection conn = pool.borrow()) {
+            return readCarAmounts(conn);
+        } catch (SQLException e) {
+            reportError(e);
+            return new HashMap<>();
+        }
+    }
 
+    private static Map<String, Integer> readCarAmounts(PooledConnection conn) throws SQLException {
+        Map<String, Integer> cars = new HashMap<>();
+        try (ResultSet rs = conn.prepare("SELECT car_type, amount FROM cars").executeQuery()) {
             while (rs.next()) {
                 String carType = rs.getString("car_type");
                 int amount = rs.getInt("amount");
                 cars.put(carType, amount);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return cars;
     }
 
     public List<String> listReservations() {
         List<String> reservations = new ArrayList<>();
-        String currentDate = getCurrentDate();
+        forEachReservation(ReservationQuery.UPCOMING, r -> reservations.add(r.describe()));
+        return reservations;
+    }
 
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(
-                     "SELECT * FROM reservations WHERE to_date >= ? ORDER BY from_date")) {
+    public void forEachReservation(ReservationQuery query, Consumer<Reservation> action) {
+        Date from = query.from() != null ? query.from() : listFrom(getCurrentDate());
+        try (PooledConnection conn = pool.borrow()) {
+            forEachReservation(conn, from, query, action);
+        } catch (SQLException e) {
+            reportError(e);
+        }
+    }
 
-            // Use current date if set, otherwise show all
-            if (currentDate != null) {
-                ps.setDate(1, Date.valueOf(currentDate));
-            } else {
-                ps.setDate(1, Date.valueOf("1900-01-01")); // Show all if no current date
-            }
+    /** Where a listing without a start day begins: the current date if set, otherwise everything. */
+    private static Date listFrom(String currentDate) {
+        return Date.valueOf(currentDate != null ? currentDate : "1900-01-01");
+    }
+
+    private void forEachReservation(PooledConnection conn, Date from, ReservationQuery query,
+                                    Consumer<Reservation> action) throws SQLException {
+        StringBuilder filter = new StringBuilder(" WHERE to_date >= ?");
+        if (query.car() != null) {
+            filter.append(" AND car = ?");
+        }
+        if (query.to() != null) {
+            filter.append(" AND from_date <= ?");
+        }
+        StringBuilder sql = new StringBuilder("SELECT id, car, from_date, to_date FROM reservations").append(filter);
+        // Listings that start before the newest archived day also read the archive, pruned by month
+        boolean withArchive = OccupancyIndex.epochDay(from) <= archivedThrough;
+        if (withArchive) {
+            sql.append(" UNION ALL SELECT id, car, from_date, to_date FROM reservations_archive")
+                    .append(filter).append(" AND archive_month >= ?");
+        }
+        sql.append(" ORDER BY from_date, id");
+        if (query.isPaged()) {
+            sql.append(" LIMIT ? OFFSET ?");
+        }
 
-            ResultSet rs = ps.executeQuery();
+        PreparedStatement ps = conn.prepare(sql.toString());
+        ps.setFetchSize(FETCH_SIZE);
 
+        int i = 1;
+        for (int table = 0; table < (withArchive ? 2 : 1); table++) {
+            ps.setDate(i++, from);
+            if (query.car() != null) {
+                ps.setString(i++, query.car().toUpperCase());
+            }
+            if (query.to() != null) {
+                ps.setDate(i++, query.to());
+            }
+        }
+        if (withArchive) {
+            ps.setInt(i++, archiveMonth(from));
+        }
+        if (query.isPaged()) {
+            ps.setInt(i++, query.size());
+            ps.setLong(i, query.offset());
+        }
+
+        // Let H2 produce rows as they are read instead of buffering the full result
+        conn.prepare("SET LAZY_QUERY_EXECUTION TRUE").execute();
+        try (ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
-                reservations.add(
-                        rs.getInt("id") + ": " +
-                                rs.getString("car") + " " +
-                                rs.getDate("from_date") + " → " +
-                                rs.getDate("to_date"));
+                action.accept(new Reservation(
+                        rs.getInt("id"),
+                        rs.getString("car"),
+                        rs.getDate("from_date"),
+                        rs.getDate("to_date")));
             }
+        } finally {
+            conn.prepare("SET LAZY_QUERY_EXECUTION FALSE").execute();
+        }
+    }
 
+    /**
+     * Keeps one pooled connection in a transaction at H2's SNAPSHOT isolation level, which
+     * reads every table as of the transaction's first statement. H2 keeps old row versions
+     * for open transactions, so bookings made meanwhile neither wait for the snapshot nor
+     * show up in it. Reading the current date right away starts that transaction.
+     */
+    public Snapshot snapshot() {
+        PooledConnection conn = null;
+        try {
+            conn = pool.borrow();
+            conn.prepare("SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL SNAPSHOT").execute();
+            conn.connection().setAutoCommit(false);
+            return new SqlSnapshot(conn, readCurrentDate(conn), readCarAmounts(conn));
         } catch (SQLException e) {
-            e.printStackTrace();
+            reportError(e);
+            if (conn != null) {
+                releaseSnapshot(conn);
+            }
+            // an empty view, like the empty results other failed reads return
+            return new SqlSnapshot(null, null, Map.of());
         }
+    }
 
-        return reservations;
+    /** A {@link Snapshot} over one connection; a null connection reads as an empty store. */
+    private final class SqlSnapshot implements Snapshot {
+        private final PooledConnection conn;
+        private final String date;
+        private final Map<String, Integer> cars;
+        private boolean closed;
+
+        SqlSnapshot(PooledConnection conn, String date, Map<String, Integer> cars) {
+            this.conn = conn;
+            this.date = date;
+            this.cars = Map.copyOf(cars);
+        }
+
+        @Override
+        public String getCurrentDate() {
+            return date;
+        }
+
+        @Override
+        public Map<String, Integer> getCarAmounts() {
+            return cars;
+        }
+
+        @Override
+        public int[][] getAvailabilityCalendar(Date from, Date to) {
+            List<Reservation> overlapping = new ArrayList<>();
+            if (conn != null) {
+                try {
+                    PreparedStatement ps = conn.prepare(
+                            "SELECT car, from_date, to_date FROM reservations WHERE to_date >= ? AND from_date <= ?");
+                    ps.setDate(1, from);
+                    ps.setDate(2, to);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            overlapping.add(new Reservation(rs.getString(1), rs.getDate(2), rs.getDate(3)));
+                        }
+                    }
+                } catch (SQLException e) {
+                    reportError(e);
+                }
+            }
+            return Snapshot.calendar(cars, overlapping, OccupancyIndex.epochDay(from), OccupancyIndex.epochDay(to));
+        }
+
+        @Override
+        public void forEachReservation(ReservationQuery query, Consumer<Reservation> action) {
+            if (conn == null) {
+                return;
+            }
+            try {
+                // archivedThrough may have moved on since; the archive is read as of the snapshot all the same
+                DB.this.forEachReservation(conn, query.from() != null ? query.from() : listFrom(date), query, action);
+            } catch (SQLException e) {
+                reportError(e);
+            }
+        }
+
+        /**
+         * Dates come back as day numbers computed by H2, so no {@link Date} is created per row.
+         * The live table and the archive are read one after the other, each lazily, since a
+         * union would be buffered in full first; the archive only when the range reaches it.
+         */
+        @Override
+        public ReservationColumns columns(Date from, Date to) {
+            ReservationColumns columns = new ReservationColumns();
+            if (conn == null) {
+                return columns;
+            }
+            try {
+                conn.prepare("SET LAZY_QUERY_EXECUTION TRUE").execute();
+                try {
+                    readColumns(false, from, to, columns);
+                    if (OccupancyIndex.epochDay(from) <= archivedThrough) {
+                        readColumns(true, from, to, columns);
+                    }
+                } finally {
+                    conn.prepare("SET LAZY_QUERY_EXECUTION FALSE").execute();
+                }
+            } catch (SQLException e) {
+                reportError(e);
+            }
+            return columns;
+        }
+
+        /** Adds the rows of the live table or the archive that overlap {@code [from, to]}. */
+        private void readColumns(boolean archive, Date from, Date to, ReservationColumns columns) throws SQLException {
+            PreparedStatement ps = conn.prepare("SELECT id, car, DATEDIFF('DAY', DATE '1970-01-01', from_date), "
+                    + "DATEDIFF('DAY', DATE '1970-01-01', to_date), DATEDIFF('DAY', DATE '1970-01-01', booked_on) "
+                    + (archive ? "FROM reservations_archive WHERE archive_month >= ? AND" : "FROM reservations WHERE")
+                    + " to_date >= ? AND from_date <= ?");
+            ps.setFetchSize(FETCH_SIZE);
+            int i = 1;
+            if (archive) {
+                ps.setInt(i++, archiveMonth(from));
+            }
+            ps.setDate(i++, from);
+            ps.setDate(i, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    int type = carTypes.id(rs.getString(2));
+                    int fromDay = rs.getInt(3);
+                    int toDay = rs.getInt(4);
+                    int bookedDay = rs.getInt(5);
+                    // rows from before schema v4 have no booking day
+                    if (rs.wasNull()) {
+                        bookedDay = EpochDays.INVALID;
+                    }
+                    if (type >= 0) {
+                        columns.add(id, type, fromDay, toDay, bookedDay);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (conn != null && !closed) {
+                closed = true;
+                releaseSnapshot(conn);
+            }
+        }
+    }
+
+    /** Ends the snapshot transaction and hands the connection back at the default isolation level. */
+    private static void releaseSnapshot(PooledConnection conn) {
+        try {
+            conn.connection().rollback();
+            conn.connection().setAutoCommit(true);
+            conn.prepare("SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL READ COMMITTED").execute();
+        } catch (SQLException e) {
+            reportError(e);
+        } finally {
+            conn.close();
+        }
     }
 
     public void resetDatabase() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
+        awaitWarmUp();
+        try (PooledConnection conn = pool.borrow();
+             Statement stmt = conn.connection().createStatement()) {
 
             stmt.execute("DROP TABLE IF EXISTS reservations;");
+            stmt.execute("DROP TABLE IF EXISTS reservations_archive;");
             stmt.execute("DROP TABLE IF EXISTS cars;");
             stmt.execute("DROP TABLE IF EXISTS settings;");
+            stmt.execute("DROP TABLE IF EXISTS schema_version;");
 
-            stmt.execute("""
-                        CREATE TABLE settings (
-                            setting_key VARCHAR(50) PRIMARY KEY,
-                            setting_value VARCHAR(255)
-                        );
-                    """);
-
-            stmt.execute("""
-                        CREATE TABLE cars (
-                            car_type VARCHAR(50) PRIMARY KEY,
-                            amount INT
-                        );
-                    """);
-
-            stmt.execute("""
-                        CREATE TABLE reservations (
-                            id INT AUTO_INCREMENT PRIMARY KEY,
-                            car VARCHAR(50),
-                            from_date DATE,
-                            to_date DATE
-                        );
-                    """);
-
-            setCurrentDate("2025-01-01");
-            setCarAmounts("SEDAN", 5);
-            setCarAmounts("SUV", 5);
-            setCarAmounts("VAN", 5);
-
-            System.out.println("Database reset and initialized.");
+            SchemaMigrations.migrate(conn.connection());
 
         } catch (SQLException e) {
-            e.printStackTrace();
+            reportError(e);
+            return;
+        } finally {
+            // cached statements may still point at the dropped tables
+            pool.invalidateStatements();
+            occupancy.clear();
+            archivedThrough = Integer.MIN_VALUE;
+        }
+
+        setCurrentDate("2025-01-01");
+        setCarAmounts("SEDAN", 5);
+        setCarAmounts("SUV", 5);
+        setCarAmounts("VAN", 5);
+    }
+
+    /**
+     * Loads everything in one transaction with batched inserts that keep the ids, then
+     * restarts the id sequence after the highest one and rebuilds the index. Every reservation
+     * goes into the live table; the archiver moves the ended ones again afterwards.
+     */
+    public void replaceState(String currentDate, Map<String, Integer> cars, ReservationColumns reservations) {
+        awaitArchival();
+        int maxId = 0;
+        try (PooledConnection conn = pool.borrow()) {
+            Connection c = conn.connection();
+            c.setAutoCommit(false);
+            try (Statement stmt = c.createStatement()) {
+                stmt.executeUpdate("DELETE FROM reservations");
+                stmt.executeUpdate("DELETE FROM reservations_archive");
+                stmt.executeUpdate("DELETE FROM cars");
+                if (currentDate == null) {
+                    stmt.executeUpdate("DELETE FROM settings WHERE setting_key = 'current_date'");
+                }
+            }
+            if (currentDate != null) {
+                PreparedStatement date = conn.prepare(
+                        "MERGE INTO settings (setting_key, setting_value) KEY(setting_key) VALUES ('current_date', ?)");
+                date.setString(1, currentDate);
+                date.executeUpdate();
+            }
+
+            // every type a reservation uses needs a row in cars, if only with no cars
+            Map<String, Integer> fleet = new HashMap<>();
+            cars.forEach((type, amount) -> fleet.put(type.toUpperCase(), amount));
+            for (int row = 0; row < reservations.size(); row++) {
+                fleet.putIfAbsent(carTypes.name(reservations.type(row)), 0);
+            }
+            PreparedStatement car = conn.prepare("INSERT INTO cars (car_type, amount) VALUES (?, ?)");
+            for (Map.Entry<String, Integer> entry : fleet.entrySet()) {
+                carTypes.register(entry.getKey());
+                car.setString(1, entry.getKey());
+                car.setInt(2, entry.getValue());
+                car.addBatch();
+            }
+            car.executeBatch();
+
+            PreparedStatement insert = conn.prepare("INSERT INTO reservations (id, car, from_date, to_date, booked_on) "
+                    + "VALUES (?, ?, DATEADD('DAY', ?, DATE '1970-01-01'), DATEADD('DAY', ?, DATE '1970-01-01'), "
+                    + "DATEADD('DAY', ?, DATE '1970-01-01'))");
+            for (int row = 0; row < reservations.size(); row++) {
+                insert.setInt(1, reservations.id(row));
+                insert.setString(2, carTypes.name(reservations.type(row)));
+                insert.setInt(3, reservations.fromDay(row));
+                insert.setInt(4, reservations.toDay(row));
+                if (reservations.bookedDay(row) == EpochDays.INVALID) {
+                    insert.setNull(5, Types.INTEGER);
+                } else {
+                    insert.setInt(5, reservations.bookedDay(row));
+                }
+                insert.addBatch();
+                maxId = Math.max(maxId, reservations.id(row));
+                if ((row + 1) % ARCHIVE_CHUNK == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+            c.commit();
+
+            try (Statement stmt = c.createStatement()) {
+                stmt.execute("ALTER TABLE reservations ALTER COLUMN id RESTART WITH " + (maxId + 1));
+            }
+            rebuildOccupancy(conn);
+        } catch (SQLException e) {
+            reportError(e);
+            return;
         }
+        archiver.schedule();
     }
-}
\ No newline at end of file
+}
@@ -3,16 +3,86 @@ package org.example;
 import java.sql.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
-public interface Database {
+public interface Database extends AutoCloseable {
+    /** Stores a reservation without checking availability, e.g. to seed data; see {@link #tryReserve}. */
     void addReservation(String car, Date from, Date to);
     int getAvailableCars(String carType, Date from, Date to);
 
+    /** Highest number of cars of this type booked on any single day in {@code [from, to]}. */
+    int getBookedCars(String carType, Date from, Date to);
+
+    /**
+     * Free cars per day: {@code result[type][day]} for each {@link CarTypes} id and each
+     * day of {@code [from, to]}, computed in one call instead of one query per type and day.
+     */
+    int[][] getAvailabilityCalendar(Date from, Date to);
+
+    /**
+     * Checks availability and stores the reservation as one atomic step, so concurrent
+     * callers can never book more cars than the fleet has.
+     */
+    ReservationResult tryReserve(String car, Date from, Date to);
+
+    /**
+     * Books a batch in one transaction. Requests are checked in order against availability,
+     * including earlier requests of the same batch; one result is returned per request.
+     */
+    List<ReservationResult> addReservations(List<Reservation> reservations);
+
+    /** @return the live reservation with this id, or null if there is none or it was archived */
+    Reservation getReservation(int id);
+
+    /**
+     * Deletes a reservation and frees its cars for its days.
+     *
+     * @return false if there is no reservation with this id
+     */
+    boolean cancelReservation(int id);
+
+    /**
+     * Moves a reservation to new dates if its car type is free for them, not counting the
+     * reservation itself. Checked and applied atomically like {@link #tryReserve}.
+     */
+    ReservationResult modifyReservation(int id, Date from, Date to);
+
     // util methods
     String getCurrentDate();
+
+    /**
+     * Also starts moving reservations that ended before {@code date} to the archive in the
+     * background. Archived reservations no longer count towards availability and cannot be
+     * cancelled or modified, but still show up when reservations are listed from an earlier date.
+     */
     void setCurrentDate(String date);
+
+    ArchiveStats getArchiveStats();
     Map<String, Integer> getCarAmounts();
     void setCarAmounts(String type, int amount);
     List<String> listReservations();
+
+    /**
+     * Passes each matching reservation to {@code action} as it is read, without building the
+     * whole result in memory. The action must not call back into the database.
+     */
+    void forEachReservation(ReservationQuery query, Consumer<Reservation> action);
+
+    /**
+     * A consistent view of the store as it is now, for reports that read it more than once.
+     * Taking and reading it does not block bookings; close it when done.
+     */
+    Snapshot snapshot();
     void resetDatabase();
+
+    /**
+     * Replaces the current date, the fleet and all reservations, keeping their ids and booking
+     * days, e.g. with the contents of an export. New bookings continue after the highest id;
+     * reservations that have already ended are archived again.
+     */
+    void replaceState(String currentDate, Map<String, Integer> cars, ReservationColumns reservations);
+
+    /** Releases connections and files; the instance is unusable afterwards. */
+    @Override
+    void close();
 }
\ No newline at end of file
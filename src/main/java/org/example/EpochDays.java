@@ -0,0 +1,112 @@
+package org.example;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.TimeZone;
+
+/**
+ * Conversion between {@code yyyy-mm-dd} text and epoch days without intermediate objects.
+ * Accepts the same shapes as {@link Date#valueOf(String)} (four-digit year, one- or two-digit
+ * month and day) but rejects days that do not exist instead of rolling them over.
+ */
+final class EpochDays {
+
+    /** Returned by {@link #parse} for text that is not a valid date. */
+    static final int INVALID = Integer.MIN_VALUE;
+
+    private static final int DAYS_0000_TO_1970 = 719_528;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final TimeZone ZONE = TimeZone.getDefault();
+
+    private EpochDays() {
+    }
+
+    static int parse(String s) {
+        return s == null ? INVALID : parse(s, 0, s.length());
+    }
+
+    /** @return the epoch day of characters {@code [start, end)} of {@code s}, or {@link #INVALID} */
+    static int parse(String s, int start, int end) {
+        if (end - start < 8 || end - start > 10 || s.charAt(start + 4) != '-') {
+            return INVALID;
+        }
+        int year = digits(s, start, start + 4);
+        int secondDash = s.indexOf('-', start + 5);
+        if (secondDash < 0 || secondDash >= end) {
+            return INVALID;
+        }
+        int monthLength = secondDash - start - 5;
+        int dayLength = end - secondDash - 1;
+        if (monthLength < 1 || monthLength > 2 || dayLength < 1 || dayLength > 2) {
+            return INVALID;
+        }
+        int month = digits(s, start + 5, secondDash);
+        int day = digits(s, secondDash + 1, end);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    /** @return the value of the decimal digits, or -1 if there is a non-digit */
+    private static int digits(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /** Same arithmetic as {@link LocalDate#toEpochDay()}, for non-negative years. */
+    private static int toEpochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeap(year)) {
+                total--;
+            }
+        }
+        return (int) (total - DAYS_0000_TO_1970);
+    }
+
+    /**
+     * Same instant as {@code Date.valueOf(LocalDate.ofEpochDay(epochDay))}, local midnight in
+     * the default time zone, without the calendar objects {@code Date.valueOf} goes through.
+     * The zone is read once; changing the JVM default afterwards is not picked up.
+     */
+    static Date toDate(int epochDay) {
+        return toDate(epochDay, ZONE);
+    }
+
+    /** {@link #toDate(int)} for {@code zone}, which must be the JVM default for the fallback. */
+    static Date toDate(int epochDay, TimeZone zone) {
+        long local = epochDay * MILLIS_PER_DAY;
+        int offset = zone.getOffset(local - zone.getRawOffset());
+        long utc = local - offset;
+        if (zone.getOffset(utc) == offset
+                && zone.getOffset(utc - MILLIS_PER_DAY) == offset
+                && zone.getOffset(utc + MILLIS_PER_DAY) == offset) {
+            return new Date(utc);
+        }
+        // the offset changes close to this midnight; let the calendar resolve gaps and overlaps
+        return Date.valueOf(LocalDate.ofEpochDay(epochDay));
+    }
+}
@@ -0,0 +1,217 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * The branches of the rental, each with its own {@link Database}.
+ * <p>
+ * Every location is a separate store with its own fleet, reservations, locks and occupancy
+ * index, so bookings at different branches never wait for each other. Reservation ids are
+ * only unique within a location. {@link #DEFAULT_LOCATION} is the store the application has
+ * always used; commands without a location go there.
+ * <p>
+ * Other locations and the coordinates used by {@link #findNearest} are kept in a registry
+ * file, one {@code NAME latitude longitude} line per location, and their stores are opened on
+ * startup. The simulation date is shared: {@link #setCurrentDate} moves every location.
+ * Each location also has its own {@link Waitlist}.
+ */
+public class Fleet implements AutoCloseable {
+
+    public static final String DEFAULT_LOCATION = "MAIN";
+
+    private static final Pattern NAME = Pattern.compile("[A-Z0-9_-]{1,32}");
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    /** A branch and where it is. */
+    public record Location(String name, double latitude, double longitude) {
+    }
+
+    /** A branch with a free car for the requested dates, {@code distanceKm} from the origin. */
+    public record Nearby(String location, double distanceKm, int available) {
+    }
+
+    private final Database main;
+    private final Function<String, Database> opener;
+    private final Path registry;
+    private final Map<String, Database> stores = new ConcurrentHashMap<>();
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+    private final Map<String, Waitlist> waitlists = new ConcurrentHashMap<>();
+
+    /** A single-location fleet around {@code main}. */
+    public Fleet(Database main) {
+        this(main, null, null);
+    }
+
+    /**
+     * @param opener   opens the store of a location other than the default one
+     * @param registry file listing the locations; created on the first {@link #setLocation}
+     */
+    public Fleet(Database main, Function<String, Database> opener, Path registry) {
+        this.main = main;
+        this.opener = opener;
+        this.registry = registry;
+        stores.put(DEFAULT_LOCATION, main);
+        if (registry != null && Files.exists(registry)) {
+            try {
+                for (String line : Files.readAllLines(registry)) {
+                    String[] parts = line.trim().split("\\s+");
+                    if (parts.length == 3) {
+                        Location location = new Location(parts[0], Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                        locations.put(location.name(), location);
+                        stores.computeIfAbsent(location.name(), opener);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read locations from " + registry, e);
+            }
+        }
+    }
+
+    /** Store of the default location. */
+    public Database main() {
+        return main;
+    }
+
+    /** @return the store of this location, ignoring case, or null if there is no such location */
+    public Database at(String location) {
+        return stores.get(location.toUpperCase(Locale.ROOT));
+    }
+
+    /** Waitlist of this location, ignoring case; created on first use. */
+    public Waitlist waitlist(String location) {
+        return waitlists.computeIfAbsent(location.toUpperCase(Locale.ROOT), name -> new Waitlist());
+    }
+
+    /**
+     * Adds a location or moves an existing one. A new location starts with an empty fleet at
+     * the current date of the default location.
+     *
+     * @throws IllegalArgumentException if the name is not 1-32 letters, digits, '-' or '_',
+     *                                  or the coordinates are out of range
+     * @throws IllegalStateException    if this fleet cannot open new stores
+     */
+    public synchronized Location setLocation(String name, double latitude, double longitude) {
+        String key = name.toUpperCase(Locale.ROOT);
+        if (!NAME.matcher(key).matches()) {
+            throw new IllegalArgumentException("Location names are 1-32 letters, digits, '-' or '_'");
+        }
+        if (!(Math.abs(latitude) <= 90 && Math.abs(longitude) <= 180)) {
+            throw new IllegalArgumentException("Latitude must be within ±90 and longitude within ±180");
+        }
+        if (opener == null) {
+            throw new IllegalStateException("This fleet has a single location");
+        }
+
+        Location location = new Location(key, latitude, longitude);
+        locations.put(key, location);
+        saveRegistry();
+        if (!stores.containsKey(key)) {
+            Database store = opener.apply(key);
+            String date = main.getCurrentDate();
+            if (date != null) {
+                store.setCurrentDate(date);
+            }
+            stores.put(key, store);
+        }
+        return location;
+    }
+
+    private void saveRegistry() {
+        StringBuilder sb = new StringBuilder();
+        for (Location location : getLocations()) {
+            sb.append(String.format(Locale.ROOT, "%s %.6f %.6f%n", location.name(), location.latitude(), location.longitude()));
+        }
+        try {
+            Path tmp = registry.resolveSibling(registry.getFileName() + ".tmp");
+            Files.writeString(tmp, sb);
+            Files.move(tmp, registry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write locations to " + registry, e);
+        }
+    }
+
+    /** Locations with coordinates, by name. */
+    public List<Location> getLocations() {
+        return new ArrayList<>(new TreeMap<>(locations).values());
+    }
+
+    /** Names of all locations including the default one, sorted. */
+    public List<String> getLocationNames() {
+        return new ArrayList<>(new TreeMap<>(stores).keySet());
+    }
+
+    /**
+     * Locations that have a car of this type free for all of {@code [from, to]}, closest to
+     * {@code origin} first (including the origin itself). Only locations with coordinates are
+     * considered; stores are asked in order of distance until {@code limit} are found.
+     *
+     * @throws IllegalArgumentException if the origin has no coordinates
+     */
+    public List<Nearby> findNearest(String origin, String car, Date from, Date to, int limit) {
+        Location start = locations.get(origin.toUpperCase(Locale.ROOT));
+        if (start == null) {
+            throw new IllegalArgumentException("Unknown location or no coordinates: " + origin);
+        }
+
+        List<Location> candidates = new ArrayList<>(locations.values());
+        candidates.sort(Comparator.comparingDouble(l -> distanceKm(start, l)));
+        List<Nearby> found = new ArrayList<>();
+        for (Location location : candidates) {
+            if (found.size() >= limit) {
+                break;
+            }
+            int available = stores.get(location.name()).getAvailableCars(car, from, to);
+            if (available > 0) {
+                found.add(new Nearby(location.name(), distanceKm(start, location), available));
+            }
+        }
+        return found;
+    }
+
+    /** Great-circle distance by the haversine formula. */
+    static double distanceKm(Location a, Location b) {
+        double dLat = Math.toRadians(b.latitude() - a.latitude());
+        double dLon = Math.toRadians(b.longitude() - a.longitude());
+        double h = Math.pow(Math.sin(dLat / 2), 2)
+                + Math.cos(Math.toRadians(a.latitude())) * Math.cos(Math.toRadians(b.latitude())) * Math.pow(Math.sin(dLon / 2), 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    /** Moves the simulation date of every location. */
+    public void setCurrentDate(String date) {
+        for (Database store : stores.values()) {
+            store.setCurrentDate(date);
+        }
+    }
+
+    /** Resets every location's store and empties the waitlists; the locations stay registered. */
+    public void resetAll() {
+        for (Database store : stores.values()) {
+            store.resetDatabase();
+        }
+        for (Waitlist waitlist : waitlists.values()) {
+            waitlist.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Database store : stores.values()) {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.example;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Base for {@link Database} decorators: forwards every call to the wrapped instance so a
+ * decorator only overrides what it changes.
+ */
+public abstract class ForwardingDatabase implements Database {
+
+    protected final Database delegate;
+
+    protected ForwardingDatabase(Database delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void addReservation(String car, Date from, Date to) {
+        delegate.addReservation(car, from, to);
+    }
+
+    @Override
+    public int getAvailableCars(String carType, Date from, Date to) {
+        return delegate.getAvailableCars(carType, from, to);
+    }
+
+    @Override
+    public int getBookedCars(String carType, Date from, Date to) {
+        return delegate.getBookedCars(carType, from, to);
+    }
+
+    @Override
+    public int[][] getAvailabilityCalendar(Date from, Date to) {
+        return delegate.getAvailabilityCalendar(from, to);
+    }
+
+    @Override
+    public ReservationResult tryReserve(String car, Date from, Date to) {
+        return delegate.tryReserve(car, from, to);
+    }
+
+    @Override
+    public List<ReservationResult> addReservations(List<Reservation> reservations) {
+        return delegate.addReservations(reservations);
+    }
+
+    @Override
+    public Reservation getReservation(int id) {
+        return delegate.getReservation(id);
+    }
+
+    @Override
+    public boolean cancelReservation(int id) {
+        return delegate.cancelReservation(id);
+    }
+
+    @Override
+    public ReservationResult modifyReservation(int id, Date from, Date to) {
+        return delegate.modifyReservation(id, from, to);
+    }
+
+    @Override
+    public String getCurrentDate() {
+        return delegate.getCurrentDate();
+    }
+
+    @Override
+    public void setCurrentDate(String date) {
+        delegate.setCurrentDate(date);
+    }
+
+    @Override
+    public ArchiveStats getArchiveStats() {
+        return delegate.getArchiveStats();
+    }
+
+    @Override
+    public Map<String, Integer> getCarAmounts() {
+        return delegate.getCarAmounts();
+    }
+
+    @Override
+    public void setCarAmounts(String type, int amount) {
+        delegate.setCarAmounts(type, amount);
+    }
+
+    @Override
+    public List<String> listReservations() {
+        return delegate.listReservations();
+    }
+
+    @Override
+    public void forEachReservation(ReservationQuery query, Consumer<Reservation> action) {
+        delegate.forEachReservation(query, action);
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        return delegate.snapshot();
+    }
+
+    @Override
+    public void resetDatabase() {
+        delegate.resetDatabase();
+    }
+
+    @Override
+    public void replaceState(String currentDate, Map<String, Integer> cars, ReservationColumns reservations) {
+        delegate.replaceState(currentDate, cars, reservations);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
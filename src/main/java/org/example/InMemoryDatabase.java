@@ -0,0 +1,1231 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+
+/**
+ * {@link Database} that keeps everything in memory and persists through a write-ahead log.
+ * <p>
+ * Reservations are stored column-wise in primitive arrays (id, car type id, first and last
+ * epoch day) and availability comes from an {@link OccupancyIndex}. Every change is appended
+ * to {@code wal.log} in the data directory before it becomes visible; every
+ * {@code snapshotInterval} records the full state is written to {@code snapshot.bin} and the
+ * log is emptied. On startup the snapshot is loaded and newer log records are replayed.
+ * <p>
+ * Reservations that ended before the current date are appended to one file per month under
+ * {@code archive/} in the background and then dropped from memory. Archive files start with a
+ * magic number and a version; files from before version 2 have neither and no booking days,
+ * and are converted when rows are next added to them.
+ * <p>
+ * Writers are serialized by one lock (the log is sequential anyway); readers share it.
+ */
+public class InMemoryDatabase implements Database {
+
+    private static final int SNAPSHOT_MAGIC = 0x43525344; // "CRSD"
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final int DEFAULT_SNAPSHOT_INTERVAL = 100_000;
+    private static final int ARCHIVE_MAGIC = 0x43525341; // "CRSA"
+    /** 2 adds the header and the booking day of each row. */
+    private static final byte ARCHIVE_VERSION = 2;
+
+    private static final byte SET_DATE = 1;
+    private static final byte SET_CARS = 2;
+    private static final byte RESERVE = 3;
+    private static final byte RESET = 4;
+    private static final byte CANCEL = 5;
+    private static final byte MODIFY = 6;
+    private static final byte ARCHIVE = 7;
+    /** A reservation with its booking day; older logs hold {@link #RESERVE} records without one. */
+    private static final byte BOOK = 8;
+
+    /** Car type id of a cancelled row; such rows are dropped at the next snapshot. */
+    private static final int CANCELLED = -1;
+
+    private final Path snapshotFile;
+    private final Path archiveDir;
+    private final boolean fsync;
+    private final Archiver archiver = new Archiver(this::archiveExpired);
+    private final WriteAheadLog wal;
+    private final int snapshotInterval;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Held while archive files are written or deleted; always taken before {@link #lock}. */
+    private final ReentrantLock archiveWrite = new ReentrantLock();
+    private final OccupancyIndex occupancy = new OccupancyIndex();
+
+    private String currentDate;
+    /** {@link #currentDate} as an epoch day, {@link EpochDays#INVALID} while it is not set. */
+    private int currentDay = EpochDays.INVALID;
+    private final CarTypes carTypes = CarTypes.global();
+    /** Store-local type id by {@link CarTypes} id, -1 if this store does not have the type. */
+    private int[] localTypes = new int[0];
+    /** {@link CarTypes} id by store-local type id; local ids are what snapshots store. */
+    private int[] globalTypes = new int[8];
+    private final List<String> typeNames = new ArrayList<>();
+    private int[] amounts = new int[8];
+
+    private int size;
+    private int nextId = 1;
+    private int[] ids = new int[1024];
+    private int[] types = new int[1024];
+    private int[] fromDays = new int[1024];
+    private int[] toDays = new int[1024];
+    /** Simulation date each reservation was made on, {@link EpochDays#INVALID} if not recorded. */
+    private int[] bookedDays = new int[1024];
+
+    /** Epoch day of the latest end date in the archive; listings from before it include the archive. */
+    private int archivedThrough = Integer.MIN_VALUE;
+
+    private long recordsSinceSnapshot;
+
+    public InMemoryDatabase(Path dataDir) {
+        this(dataDir, DEFAULT_SNAPSHOT_INTERVAL, false);
+    }
+
+    /**
+     * @param snapshotInterval log records between snapshots
+     * @param fsync            force every commit to disk instead of only to the OS
+     */
+    public InMemoryDatabase(Path dataDir, int snapshotInterval, boolean fsync) {
+        this.snapshotFile = dataDir.resolve("snapshot.bin");
+        this.archiveDir = dataDir.resolve("archive");
+        this.wal = new WriteAheadLog(dataDir.resolve("wal.log"), fsync);
+        this.snapshotInterval = snapshotInterval;
+        this.fsync = fsync;
+
+        try {
+            boolean restored = Files.exists(snapshotFile);
+            long snapshotSequence = restored ? loadSnapshot() : 0;
+            recordsSinceSnapshot = wal.replay(snapshotSequence, this::apply);
+            if (!restored && recordsSinceSnapshot == 0) {
+                seedDefaults();
+                commit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open data directory " + dataDir, e);
+        }
+        archiver.schedule();
+    }
+
+    // ===== log records =====
+
+    private void logSetDate(String date) throws IOException {
+        DataOutputStream out = wal.record();
+        out.writeByte(SET_DATE);
+        out.writeBoolean(date != null);
+        if (date != null) {
+            WriteAheadLog.writeString(out, date);
+        }
+        wal.append();
+        applySetDate(date);
+    }
+
+    private void logSetCars(String type, int amount) throws IOException {
+        DataOutputStream out = wal.record();
+        out.writeByte(SET_CARS);
+        WriteAheadLog.writeString(out, type);
+        out.writeInt(amount);
+        wal.append();
+        applySetCars(type, amount);
+    }
+
+    private int logReserve(int type, int fromDay, int toDay) throws IOException {
+        int id = nextId;
+        DataOutputStream out = wal.record();
+        out.writeByte(BOOK);
+        out.writeInt(id);
+        WriteAheadLog.writeString(out, typeNames.get(type));
+        out.writeInt(fromDay);
+        out.writeInt(toDay);
+        out.writeInt(currentDay);
+        wal.append();
+        applyReserve(id, type, fromDay, toDay, currentDay);
+        return id;
+    }
+
+    private void logCancel(int index) throws IOException {
+        DataOutputStream out = wal.record();
+        out.writeByte(CANCEL);
+        out.writeInt(ids[index]);
+        wal.append();
+        applyCancel(index);
+    }
+
+    private void logModify(int index, int fromDay, int toDay) throws IOException {
+        DataOutputStream out = wal.record();
+        out.writeByte(MODIFY);
+        out.writeInt(ids[index]);
+        out.writeInt(fromDay);
+        out.writeInt(toDay);
+        wal.append();
+        applyModify(index, fromDay, toDay);
+    }
+
+    private void logArchive(int cutoffDay) throws IOException {
+        DataOutputStream out = wal.record();
+        out.writeByte(ARCHIVE);
+        out.writeInt(cutoffDay);
+        wal.append();
+        applyArchive(cutoffDay);
+    }
+
+    private void logReset() throws IOException {
+        wal.record().writeByte(RESET);
+        wal.append();
+        applyReset();
+    }
+
+    /** Replays one log record. */
+    private void apply(ByteBuffer in) {
+        switch (in.get()) {
+            case SET_DATE -> applySetDate(in.get() != 0 ? WriteAheadLog.readString(in) : null);
+            case SET_CARS -> applySetCars(WriteAheadLog.readString(in), in.getInt());
+            case RESERVE -> {
+                int id = in.getInt();
+                int type = typeId(WriteAheadLog.readString(in), true);
+                applyReserve(id, type, in.getInt(), in.getInt(), EpochDays.INVALID);
+            }
+            case BOOK -> {
+                int id = in.getInt();
+                int type = typeId(WriteAheadLog.readString(in), true);
+                applyReserve(id, type, in.getInt(), in.getInt(), in.getInt());
+            }
+            case RESET -> applyReset();
+            case CANCEL -> applyCancel(indexOf(in.getInt()));
+            case MODIFY -> applyModify(indexOf(in.getInt()), in.getInt(), in.getInt());
+            case ARCHIVE -> applyArchive(in.getInt());
+            default -> throw new IllegalStateException("Unknown log record type");
+        }
+    }
+
+    private void applySetDate(String date) {
+        currentDate = date;
+        currentDay = EpochDays.parse(date);
+    }
+
+    private void applySetCars(String type, int amount) {
+        amounts[typeId(type, true)] = amount;
+    }
+
+    private void applyReserve(int id, int type, int fromDay, int toDay, int bookedDay) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            types = Arrays.copyOf(types, capacity);
+            fromDays = Arrays.copyOf(fromDays, capacity);
+            toDays = Arrays.copyOf(toDays, capacity);
+            bookedDays = Arrays.copyOf(bookedDays, capacity);
+        }
+        ids[size] = id;
+        types[size] = type;
+        fromDays[size] = fromDay;
+        toDays[size] = toDay;
+        bookedDays[size] = bookedDay;
+        size++;
+        nextId = Math.max(nextId, id + 1);
+        occupancy.add(globalTypes[type], fromDay, toDay, 1);
+    }
+
+    private void applyCancel(int index) {
+        occupancy.add(globalTypes[types[index]], fromDays[index], toDays[index], -1);
+        types[index] = CANCELLED;
+    }
+
+    private void applyModify(int index, int fromDay, int toDay) {
+        int type = globalTypes[types[index]];
+        occupancy.add(type, fromDays[index], toDays[index], -1);
+        occupancy.add(type, fromDay, toDay, 1);
+        fromDays[index] = fromDay;
+        toDays[index] = toDay;
+    }
+
+    /** Drops reservations that ended before {@code cutoffDay}; their files are already written. */
+    private void applyArchive(int cutoffDay) {
+        for (int i = 0; i < size; i++) {
+            if (types[i] != CANCELLED && toDays[i] < cutoffDay) {
+                archivedThrough = Math.max(archivedThrough, toDays[i]);
+                applyCancel(i);
+            }
+        }
+    }
+
+    /** Row of a live reservation, or -1. Ids only grow, so the rows are sorted by id. */
+    private int indexOf(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        return index >= 0 && types[index] != CANCELLED ? index : -1;
+    }
+
+    /** Drops cancelled rows, keeping the id order. */
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < size; i++) {
+            if (types[i] != CANCELLED) {
+                ids[live] = ids[i];
+                types[live] = types[i];
+                fromDays[live] = fromDays[i];
+                toDays[live] = toDays[i];
+                bookedDays[live] = bookedDays[i];
+                live++;
+            }
+        }
+        size = live;
+    }
+
+    private void applyReset() {
+        currentDate = null;
+        currentDay = EpochDays.INVALID;
+        Arrays.fill(localTypes, -1);
+        typeNames.clear();
+        Arrays.fill(amounts, 0);
+        size = 0;
+        nextId = 1;
+        archivedThrough = Integer.MIN_VALUE;
+        occupancy.clear();
+    }
+
+    private void seedDefaults() throws IOException {
+        logSetDate("2025-01-01");
+        for (String type : carTypes.names()) {
+            logSetCars(type, 5);
+        }
+    }
+
+    /**
+     * Makes the records appended so far durable and takes a snapshot when enough of them
+     * have piled up. Called with the write lock held.
+     */
+    private void commit() throws IOException {
+        wal.flush();
+        recordsSinceSnapshot++;
+        if (recordsSinceSnapshot >= snapshotInterval) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * @param create register the type if it is unknown
+     * @return the dense id of the type, or -1 if unknown and not created
+     */
+    private int typeId(String type, boolean create) {
+        int global = create ? carTypes.register(type) : carTypes.id(type);
+        if (global < 0) {
+            return -1;
+        }
+        if (global < localTypes.length && localTypes[global] >= 0) {
+            return localTypes[global];
+        }
+        if (!create) {
+            return -1;
+        }
+        if (global >= localTypes.length) {
+            int old = localTypes.length;
+            localTypes = Arrays.copyOf(localTypes, Math.max(global + 1, carTypes.size()));
+            Arrays.fill(localTypes, old, localTypes.length, -1);
+        }
+        int newId = typeNames.size();
+        typeNames.add(carTypes.name(global));
+        localTypes[global] = newId;
+        if (newId == amounts.length) {
+            amounts = Arrays.copyOf(amounts, newId * 2);
+            globalTypes = Arrays.copyOf(globalTypes, newId * 2);
+        }
+        globalTypes[newId] = global;
+        return newId;
+    }
+
+    // ===== snapshots =====
+
+    private void writeSnapshot() throws IOException {
+        compact();
+        Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(wal.sequence());
+            out.writeBoolean(currentDate != null);
+            if (currentDate != null) {
+                WriteAheadLog.writeString(out, currentDate);
+            }
+            out.writeInt(typeNames.size());
+            for (int i = 0; i < typeNames.size(); i++) {
+                WriteAheadLog.writeString(out, typeNames.get(i));
+                out.writeInt(amounts[i]);
+            }
+            out.writeInt(nextId);
+            out.writeInt(archivedThrough);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(ids[i]);
+                out.writeShort(types[i]);
+                out.writeInt(fromDays[i]);
+                out.writeInt(toDays[i]);
+                out.writeInt(bookedDays[i]);
+            }
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // records up to the snapshot's sequence are skipped on replay, so a crash before
+        // this truncation is harmless
+        wal.truncate();
+        recordsSinceSnapshot = 0;
+    }
+
+    /** @return the log sequence number the snapshot includes */
+    private long loadSnapshot() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+            int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+            if (version < 1 || version > SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot format in " + snapshotFile);
+            }
+            long sequence = in.readLong();
+            applySetDate(in.readBoolean() ? readString(in) : null);
+            int typeCount = in.readInt();
+            for (int i = 0; i < typeCount; i++) {
+                applySetCars(readString(in), in.readInt());
+            }
+            nextId = in.readInt();
+            if (version >= 2) {
+                archivedThrough = in.readInt();
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                applyReserve(in.readInt(), in.readShort(), in.readInt(), in.readInt(),
+                        version >= 3 ? in.readInt() : EpochDays.INVALID);
+            }
+            return sequence;
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ===== archive =====
+
+    /**
+     * Appends reservations that ended before the current date to their month's file, then
+     * logs their removal. A crash in between leaves them in both places; reads skip such
+     * duplicates by id.
+     * <p>
+     * Only the copy and the removal hold the write lock; the files are written without it, so
+     * bookings go on meanwhile. Readers skip the rows while they are still live, and a record
+     * that is only partly written yet. If one of the rows was cancelled or moved in the
+     * meantime, the appended bytes are cut off again and the run starts over.
+     */
+    private int archiveExpired() throws IOException {
+        archiveWrite.lock();
+        try {
+            while (true) {
+                Expired expired = copyExpired();
+                if (expired == null) {
+                    return 0;
+                }
+
+                Files.createDirectories(archiveDir);
+                Map<Path, Long> sizesBefore = new HashMap<>();
+                for (Map.Entry<String, ByteArrayOutputStream> month : expired.months().entrySet()) {
+                    Path file = archiveDir.resolve(month.getKey() + ".bin");
+                    upgradeArchive(file);
+                    try (FileChannel channel = FileChannel.open(file,
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                        sizesBefore.put(file, channel.size());
+                        if (channel.size() == 0) {
+                            channel.write(ByteBuffer.allocate(5).putInt(ARCHIVE_MAGIC).put(ARCHIVE_VERSION).flip());
+                        }
+                        channel.write(ByteBuffer.wrap(month.getValue().toByteArray()));
+                        if (fsync) {
+                            channel.force(false);
+                        }
+                    }
+                }
+
+                lock.writeLock().lock();
+                try {
+                    if (stillExpired(expired)) {
+                        logArchive(expired.cutoff());
+                        commit();
+                        return expired.ids().length;
+                    }
+                    for (Map.Entry<Path, Long> file : sizesBefore.entrySet()) {
+                        try (FileChannel channel = FileChannel.open(file.getKey(), StandardOpenOption.WRITE)) {
+                            channel.truncate(file.getValue());
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            archiveWrite.unlock();
+        }
+    }
+
+    /** Rows copied for archival, in id order, and their encoded records per month. */
+    private record Expired(int cutoff, int[] ids, int[] types, int[] fromDays, int[] toDays,
+                           Map<String, ByteArrayOutputStream> months) {
+    }
+
+    /** @return the reservations that ended before the current date, or null if there are none */
+    private Expired copyExpired() throws IOException {
+        lock.readLock().lock();
+        try {
+            int cutoff = EpochDays.parse(currentDate);
+            if (cutoff == EpochDays.INVALID) {
+                return null;
+            }
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (types[i] != CANCELLED && toDays[i] < cutoff) {
+                    count++;
+                }
+            }
+            if (count == 0) {
+                return null;
+            }
+
+            Expired expired = new Expired(cutoff, new int[count], new int[count], new int[count], new int[count],
+                    new TreeMap<>());
+            int k = 0;
+            for (int i = 0; i < size; i++) {
+                if (types[i] == CANCELLED || toDays[i] >= cutoff) {
+                    continue;
+                }
+                DataOutputStream out = new DataOutputStream(
+                        expired.months().computeIfAbsent(monthOf(toDays[i]), m -> new ByteArrayOutputStream()));
+                out.writeInt(ids[i]);
+                WriteAheadLog.writeString(out, typeNames.get(types[i]));
+                out.writeInt(fromDays[i]);
+                out.writeInt(toDays[i]);
+                out.writeInt(bookedDays[i]);
+                expired.ids()[k] = ids[i];
+                expired.types()[k] = types[i];
+                expired.fromDays()[k] = fromDays[i];
+                expired.toDays()[k] = toDays[i];
+                k++;
+            }
+            return expired;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Called with the write lock held: are exactly the copied rows still the expired ones? */
+    private boolean stillExpired(Expired expired) {
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            if (types[i] == CANCELLED || toDays[i] >= expired.cutoff()) {
+                continue;
+            }
+            if (k == expired.ids().length || ids[i] != expired.ids()[k] || types[i] != expired.types()[k]
+                    || fromDays[i] != expired.fromDays()[k] || toDays[i] != expired.toDays()[k]) {
+                return false;
+            }
+            k++;
+        }
+        return k == expired.ids().length;
+    }
+
+    private static String monthOf(int epochDay) {
+        return YearMonth.from(LocalDate.ofEpochDay(epochDay)).toString();
+    }
+
+    /** Archive files of the months from {@code fromMonth} on, oldest first. */
+    private List<Path> archiveFiles(String fromMonth) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(archiveDir)) {
+            try (Stream<Path> list = Files.list(archiveDir)) {
+                list.filter(f -> f.getFileName().toString().endsWith(".bin"))
+                        .filter(f -> f.getFileName().toString().compareTo(fromMonth) >= 0)
+                        .sorted()
+                        .forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    /** A row read from the archive; {@code bookedDay} is {@link EpochDays#INVALID} if unknown. */
+    private interface ArchivedRow {
+        void accept(int id, String type, int fromDay, int toDay, int bookedDay);
+    }
+
+    /** Passes every archived reservation in the files to {@code action}, once per id. */
+    private void readArchive(List<Path> files, Consumer<Reservation> action) throws IOException {
+        readArchive(files, id -> indexOf(id) < 0, (id, type, fromDay, toDay, bookedDay) ->
+                action.accept(new Reservation(id, type, toDate(fromDay), toDate(toDay))));
+    }
+
+    /** As above, for the ids {@code archived} accepts; the others are still live rows. */
+    private void readArchive(List<Path> files, IntPredicate archived, ArchivedRow action) throws IOException {
+        Set<Integer> seen = new HashSet<>();
+        for (Path file : files) {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+            int version = archiveVersion(in, file);
+            while (in.hasRemaining()) {
+                int id;
+                String type;
+                int fromDay;
+                int toDay;
+                int bookedDay;
+                try {
+                    id = in.getInt();
+                    type = WriteAheadLog.readString(in);
+                    fromDay = in.getInt();
+                    toDay = in.getInt();
+                    bookedDay = version >= 2 ? in.getInt() : EpochDays.INVALID;
+                } catch (BufferUnderflowException e) {
+                    // being appended right now; its rows are still live
+                    break;
+                }
+                if (seen.add(id) && archived.test(id)) {
+                    action.accept(id, type, fromDay, toDay, bookedDay);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the header, if the file has one, and leaves {@code in} at the first row. A header
+     * that is still being written reads as an empty version 1 file.
+     *
+     * @return the format version of the file
+     */
+    private static int archiveVersion(ByteBuffer in, Path file) throws IOException {
+        if (in.remaining() < 5 || in.getInt(0) != ARCHIVE_MAGIC) {
+            return 1;
+        }
+        in.position(4);
+        int version = in.get();
+        if (version > ARCHIVE_VERSION) {
+            throw new IOException("Unsupported archive version " + version + " in " + file);
+        }
+        return version;
+    }
+
+    /**
+     * Rewrites a version 1 file in the current format, with unknown booking days, so rows can
+     * be appended to it. The new file replaces the old one in one move, so readers see either.
+     */
+    private void upgradeArchive(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (archiveVersion(in, file) == ARCHIVE_VERSION) {
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(ARCHIVE_MAGIC);
+        out.writeByte(ARCHIVE_VERSION);
+        while (in.hasRemaining()) {
+            out.writeInt(in.getInt());
+            WriteAheadLog.writeString(out, WriteAheadLog.readString(in));
+            out.writeInt(in.getInt());
+            out.writeInt(in.getInt());
+            out.writeInt(EpochDays.INVALID);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, buffer.toByteArray());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Waits for archival started by earlier date changes to finish. */
+    void awaitArchival() {
+        archiver.awaitIdle();
+    }
+
+    @Override
+    public ArchiveStats getArchiveStats() {
+        Map<String, Long> rowsByMonth = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            for (Path file : archiveFiles("")) {
+                long[] count = {0};
+                readArchive(List.of(file), r -> count[0]++);
+                String name = file.getFileName().toString();
+                rowsByMonth.put(name.substring(0, name.length() - ".bin".length()), count[0]);
+            }
+        } catch (IOException e) {
+            reportError(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return archiver.stats(rowsByMonth);
+    }
+
+    // ===== Database =====
+
+    private static int epochDay(Date date) {
+        return OccupancyIndex.epochDay(date);
+    }
+
+    private static Date toDate(int epochDay) {
+        return Date.valueOf(LocalDate.ofEpochDay(epochDay));
+    }
+
+    private static void reportError(Exception e) {
+        e.printStackTrace();
+        Metrics.global().error();
+    }
+
+    @Override
+    public void addReservation(String car, Date from, Date to) {
+        lock.writeLock().lock();
+        try {
+            int type = typeId(car, false);
+            if (type < 0) {
+                // same outcome as the foreign key on the H2 store
+                reportError(new IllegalArgumentException("Unknown car type " + car));
+                return;
+            }
+            logReserve(type, epochDay(from), epochDay(to));
+            commit();
+        } catch (IOException e) {
+            reportError(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int getAvailableCars(String carType, Date from, Date to) {
+        return amount(carType) - getBookedCars(carType, from, to);
+    }
+
+    private int amount(String carType) {
+        lock.readLock().lock();
+        try {
+            int type = typeId(carType, false);
+            return type < 0 ? 0 : amounts[type];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getBookedCars(String carType, Date from, Date to) {
+        return occupancy.peak(carType, from, to);
+    }
+
+    @Override
+    public int[][] getAvailabilityCalendar(Date from, Date to) {
+        return occupancy.calendar(getCarAmounts(), epochDay(from), epochDay(to));
+    }
+
+    @Override
+    public ReservationResult tryReserve(String car, Date from, Date to) {
+        lock.writeLock().lock();
+        try {
+            int type = typeId(car, false);
+            if (type < 0) {
+                return ReservationResult.unavailable(0);
+            }
+            int fromDay = epochDay(from);
+            int toDay = epochDay(to);
+            int available = amounts[type] - occupancy.peak(globalTypes[type], fromDay, toDay);
+            if (available <= 0) {
+                return ReservationResult.unavailable(available);
+            }
+            int id = logReserve(type, fromDay, toDay);
+            commit();
+            return ReservationResult.accepted(id, available - 1);
+        } catch (IOException e) {
+            reportError(e);
+            return ReservationResult.failed();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ReservationResult> addReservations(List<Reservation> reservations) {
+        List<ReservationResult> results = new ArrayList<>(reservations.size());
+        lock.writeLock().lock();
+        try {
+            for (Reservation r : reservations) {
+                int type = typeId(r.car(), false);
+                if (r.from().after(r.to())) {
+                    results.add(ReservationResult.failed());
+                    continue;
+                }
+                int available = type < 0 ? 0
+                        : amounts[type] - occupancy.peak(globalTypes[type], epochDay(r.from()), epochDay(r.to()));
+                if (available <= 0) {
+                    results.add(ReservationResult.unavailable(available));
+                    continue;
+                }
+                int id = logReserve(type, epochDay(r.from()), epochDay(r.to()));
+                results.add(ReservationResult.accepted(id, available - 1));
+            }
+            // one flush for the whole batch
+            commit();
+        } catch (IOException e) {
+            reportError(e);
+            while (results.size() < reservations.size()) {
+                results.add(ReservationResult.failed());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return results;
+    }
+
+    @Override
+    public Reservation getReservation(int id) {
+        lock.readLock().lock();
+        try {
+            int index = indexOf(id);
+            return index < 0 ? null
+                    : new Reservation(id, typeNames.get(types[index]), toDate(fromDays[index]), toDate(toDays[index]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean cancelReservation(int id) {
+        lock.writeLock().lock();
+        try {
+            int index = indexOf(id);
+            if (index < 0) {
+                return false;
+            }
+            logCancel(index);
+            commit();
+            return true;
+        } catch (IOException e) {
+            reportError(e);
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public ReservationResult modifyReservation(int id, Date from, Date to) {
+        lock.writeLock().lock();
+        try {
+            int index = indexOf(id);
+            if (index < 0) {
+                return ReservationResult.notFound();
+            }
+            int type = globalTypes[types[index]];
+            int fromDay = epochDay(from);
+            int toDay = epochDay(to);
+            // a logged modify that cannot be applied would break every later WAL replay
+            if (fromDay > toDay) {
+                return ReservationResult.failed();
+            }
+
+            // check the new range without this reservation's own days
+            occupancy.add(type, fromDays[index], toDays[index], -1);
+            int available = amounts[types[index]] - occupancy.peak(type, fromDay, toDay);
+            occupancy.add(type, fromDays[index], toDays[index], 1);
+            if (available <= 0) {
+                return ReservationResult.unavailable(available);
+            }
+            logModify(index, fromDay, toDay);
+            commit();
+            return ReservationResult.accepted(id, available - 1);
+        } catch (IOException e) {
+            reportError(e);
+            return ReservationResult.failed();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String getCurrentDate() {
+        lock.readLock().lock();
+        try {
+            return currentDate;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void setCurrentDate(String date) {
+        lock.writeLock().lock();
+        try {
+            logSetDate(date);
+            commit();
+        } catch (IOException e) {
+            reportError(e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        archiver.schedule();
+    }
+
+    @Override
+    public Map<String, Integer> getCarAmounts() {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> cars = new HashMap<>();
+            for (int i = 0; i < typeNames.size(); i++) {
+                cars.put(typeNames.get(i), amounts[i]);
+            }
+            return cars;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void setCarAmounts(String type, int amount) {
+        lock.writeLock().lock();
+        try {
+            logSetCars(type.toUpperCase(Locale.ROOT), amount);
+            commit();
+        } catch (IOException e) {
+            reportError(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> listReservations() {
+        List<String> reservations = new ArrayList<>();
+        forEachReservation(ReservationQuery.UPCOMING, r -> reservations.add(r.describe()));
+        return reservations;
+    }
+
+    /**
+     * Copies the rows under a brief read lock; reading the copy takes no lock at all. Copying
+     * is a few arrays of {@code int}, milliseconds even for a million reservations.
+     */
+    @Override
+    public Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return new CopiedSnapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachReservation(ReservationQuery query, Consumer<Reservation> action) {
+        lock.readLock().lock();
+        try {
+            int minTo;
+            if (query.from() != null) {
+                minTo = epochDay(query.from());
+            } else {
+                // Use current date if set, otherwise show all
+                minTo = currentDate != null ? (int) LocalDate.parse(currentDate).toEpochDay() : Integer.MIN_VALUE;
+            }
+            int maxFrom = query.to() != null ? epochDay(query.to()) : Integer.MAX_VALUE;
+            int type = -2;
+            if (query.car() != null) {
+                type = typeId(query.car(), false);
+                if (type < 0) {
+                    return;
+                }
+            }
+
+            if (archivedThrough != Integer.MIN_VALUE && minTo <= archivedThrough) {
+                listWithArchive(minTo, maxFrom, query, action);
+                return;
+            }
+
+            // sort matches by (from day, insertion order == id order) packed into one long
+            long[] keys = new long[16];
+            int matches = 0;
+            for (int i = 0; i < size; i++) {
+                if (types[i] != CANCELLED && toDays[i] >= minTo && fromDays[i] <= maxFrom
+                        && (type == -2 || types[i] == type)) {
+                    if (matches == keys.length) {
+                        keys = Arrays.copyOf(keys, matches * 2);
+                    }
+                    keys[matches++] = ((long) fromDays[i] << 32) | i;
+                }
+            }
+            Arrays.sort(keys, 0, matches);
+
+            long start = Math.min(query.offset(), matches);
+            long end = query.isPaged() ? Math.min(start + query.size(), matches) : matches;
+            for (long k = start; k < end; k++) {
+                int i = (int) keys[(int) k];
+                action.accept(new Reservation(ids[i], typeNames.get(types[i]), toDate(fromDays[i]), toDate(toDays[i])));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Listing that reaches back into archived months; materializes and sorts all matches. */
+    private void listWithArchive(int minTo, int maxFrom, ReservationQuery query, Consumer<Reservation> action) {
+        List<Reservation> matches = new ArrayList<>();
+        Consumer<Reservation> filter = r -> {
+            int fromDay = epochDay(r.from());
+            if (epochDay(r.to()) >= minTo && fromDay <= maxFrom
+                    && (query.car() == null || r.car().equalsIgnoreCase(query.car()))) {
+                matches.add(r);
+            }
+        };
+        try {
+            readArchive(archiveFiles(monthOf(minTo)), filter);
+        } catch (IOException e) {
+            reportError(e);
+        }
+        for (int i = 0; i < size; i++) {
+            if (types[i] != CANCELLED) {
+                filter.accept(new Reservation(ids[i], typeNames.get(types[i]), toDate(fromDays[i]), toDate(toDays[i])));
+            }
+        }
+        matches.sort(Comparator.comparing(Reservation::from).thenComparingInt(Reservation::id));
+
+        long start = Math.min(query.offset(), matches.size());
+        long end = query.isPaged() ? Math.min(start + query.size(), matches.size()) : matches.size();
+        for (long k = start; k < end; k++) {
+            action.accept(matches.get((int) k));
+        }
+    }
+
+    /** The store's state when it was taken; created with the read lock held. */
+    private final class CopiedSnapshot implements Snapshot {
+        private final String date = currentDate;
+        private final Map<String, Integer> cars = Map.copyOf(InMemoryDatabase.this.getCarAmounts());
+        private final String[] names = typeNames.toArray(new String[0]);
+        private final int rows = size;
+        private final int firstNewId = nextId;
+        private final int[] rowIds = Arrays.copyOf(ids, size);
+        private final int[] rowTypes = Arrays.copyOf(types, size);
+        private final int[] rowFrom = Arrays.copyOf(fromDays, size);
+        private final int[] rowTo = Arrays.copyOf(toDays, size);
+        private final int[] rowBooked = Arrays.copyOf(bookedDays, size);
+        private final int archived = archivedThrough;
+
+        @Override
+        public String getCurrentDate() {
+            return date;
+        }
+
+        @Override
+        public Map<String, Integer> getCarAmounts() {
+            return cars;
+        }
+
+        @Override
+        public int[][] getAvailabilityCalendar(Date from, Date to) {
+            int fromDay = epochDay(from);
+            int toDay = epochDay(to);
+            return Snapshot.calendar(cars, matching(fromDay, toDay, null), fromDay, toDay);
+        }
+
+        @Override
+        public void forEachReservation(ReservationQuery query, Consumer<Reservation> action) {
+            int minTo;
+            if (query.from() != null) {
+                minTo = epochDay(query.from());
+            } else {
+                minTo = date != null ? EpochDays.parse(date) : Integer.MIN_VALUE;
+            }
+            int maxFrom = query.to() != null ? epochDay(query.to()) : Integer.MAX_VALUE;
+            List<Reservation> matches = matching(minTo, maxFrom, query.car());
+
+            if (archived != Integer.MIN_VALUE && minTo <= archived) {
+                // rows archived since the snapshot are still live here; rows booked since are left out
+                readArchive(minTo, r -> {
+                    if (epochDay(r.to()) >= minTo && epochDay(r.from()) <= maxFrom
+                            && (query.car() == null || r.car().equalsIgnoreCase(query.car()))) {
+                        matches.add(r);
+                    }
+                });
+            }
+            matches.sort(Comparator.comparing(Reservation::from).thenComparingInt(Reservation::id));
+
+            long start = Math.min(query.offset(), matches.size());
+            long end = query.isPaged() ? Math.min(start + query.size(), matches.size()) : matches.size();
+            for (long k = start; k < end; k++) {
+                action.accept(matches.get((int) k));
+            }
+        }
+
+        @Override
+        public ReservationColumns columns(Date from, Date to) {
+            int fromDay = epochDay(from);
+            int toDay = epochDay(to);
+            int[] global = new int[names.length];
+            for (int type = 0; type < names.length; type++) {
+                global[type] = carTypes.id(names[type]);
+            }
+            ReservationColumns columns = new ReservationColumns(rows);
+            for (int i = 0; i < rows; i++) {
+                int type = rowTypes[i];
+                if (type != CANCELLED && rowTo[i] >= fromDay && rowFrom[i] <= toDay) {
+                    columns.add(rowIds[i], global[type], rowFrom[i], rowTo[i], rowBooked[i]);
+                }
+            }
+            if (archived != Integer.MIN_VALUE && fromDay <= archived) {
+                readArchive(fromDay, (id, car, start, end, bookedDay) -> {
+                    int type = carTypes.id(car);
+                    if (type >= 0 && end >= fromDay && start <= toDay) {
+                        columns.add(id, type, start, end, bookedDay);
+                    }
+                });
+            }
+            return columns;
+        }
+
+        /**
+         * Reads the archive files from the month of {@code fromDay} on, skipping rows that were
+         * still live when the snapshot was taken and rows booked after it.
+         */
+        private void readArchive(int fromDay, Consumer<Reservation> action) {
+            readArchive(fromDay, (id, type, start, end, bookedDay) ->
+                    action.accept(new Reservation(id, type, toDate(start), toDate(end))));
+        }
+
+        private void readArchive(int fromDay, ArchivedRow action) {
+            IntPredicate archivedBefore = id -> {
+                int index = Arrays.binarySearch(rowIds, 0, rows, id);
+                return id < firstNewId && (index < 0 || rowTypes[index] == CANCELLED);
+            };
+            lock.readLock().lock();
+            try {
+                InMemoryDatabase.this.readArchive(archiveFiles(monthOf(fromDay)), archivedBefore, action);
+            } catch (IOException e) {
+                reportError(e);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /** Live rows overlapping {@code [minTo, maxFrom]}, of one type unless {@code car} is null. */
+        private List<Reservation> matching(int minTo, int maxFrom, String car) {
+            List<Reservation> matches = new ArrayList<>();
+            for (int i = 0; i < rows; i++) {
+                int type = rowTypes[i];
+                if (type != CANCELLED && rowTo[i] >= minTo && rowFrom[i] <= maxFrom
+                        && (car == null || names[type].equalsIgnoreCase(car))) {
+                    matches.add(new Reservation(rowIds[i], names[type], toDate(rowFrom[i]), toDate(rowTo[i])));
+                }
+            }
+            return matches;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Override
+    public void resetDatabase() {
+        archiveWrite.lock();
+        lock.writeLock().lock();
+        try {
+            if (Files.isDirectory(archiveDir)) {
+                for (Path file : archiveFiles("")) {
+                    Files.delete(file);
+                }
+            }
+            logReset();
+            seedDefaults();
+            // a reset makes all history obsolete, so compact right away
+            wal.flush();
+            writeSnapshot();
+        } catch (IOException e) {
+            reportError(e);
+        } finally {
+            lock.writeLock().unlock();
+            archiveWrite.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the state in memory and writes it as a snapshot straight away, so the import
+     * costs one sequential file write instead of a log record per reservation.
+     */
+    @Override
+    public void replaceState(String currentDate, Map<String, Integer> cars, ReservationColumns reservations) {
+        // rows are kept in id order
+        long[] order = new long[reservations.size()];
+        for (int row = 0; row < order.length; row++) {
+            order[row] = ((long) reservations.id(row) << 32) | row;
+        }
+        Arrays.sort(order);
+
+        archiveWrite.lock();
+        lock.writeLock().lock();
+        try {
+            if (Files.isDirectory(archiveDir)) {
+                for (Path file : archiveFiles("")) {
+                    Files.delete(file);
+                }
+            }
+            applyReset();
+            applySetDate(currentDate);
+            cars.forEach(this::applySetCars);
+            int previousId = 0;
+            for (long key : order) {
+                int row = (int) key;
+                int id = reservations.id(row);
+                if (id == previousId) {
+                    continue;
+                }
+                applyReserve(id, typeId(carTypes.name(reservations.type(row)), true),
+                        reservations.fromDay(row), reservations.toDay(row), reservations.bookedDay(row));
+                previousId = id;
+            }
+            wal.flush();
+            writeSnapshot();
+        } catch (IOException e) {
+            reportError(e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+            archiveWrite.unlock();
+        }
+        archiver.schedule();
+    }
+
+    @Override
+    public void close() {
+        archiver.close();
+        lock.writeLock().lock();
+        try {
+            wal.close();
+        } catch (IOException e) {
+            reportError(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.example;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Records the latency of every {@link Database} call in {@link Metrics}, per method name.
+ */
+public class InstrumentedDatabase extends ForwardingDatabase {
+
+    private final Metrics metrics;
+
+    public InstrumentedDatabase(Database delegate, Metrics metrics) {
+        super(delegate);
+        this.metrics = metrics;
+    }
+
+    private <T> T time(String method, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            metrics.recordDatabaseCall(method, System.nanoTime() - start);
+        }
+    }
+
+    private void time(String method, Runnable call) {
+        long start = System.nanoTime();
+        try {
+            call.run();
+        } finally {
+            metrics.recordDatabaseCall(method, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addReservation(String car, Date from, Date to) {
+        time("addReservation", () -> delegate.addReservation(car, from, to));
+    }
+
+    @Override
+    public int getAvailableCars(String carType, Date from, Date to) {
+        return time("getAvailableCars", () -> delegate.getAvailableCars(carType, from, to));
+    }
+
+    @Override
+    public int getBookedCars(String carType, Date from, Date to) {
+        return time("getBookedCars", () -> delegate.getBookedCars(carType, from, to));
+    }
+
+    @Override
+    public int[][] getAvailabilityCalendar(Date from, Date to) {
+        return time("getAvailabilityCalendar", () -> delegate.getAvailabilityCalendar(from, to));
+    }
+
+    @Override
+    public ReservationResult tryReserve(String car, Date from, Date to) {
+        return time("tryReserve", () -> delegate.tryReserve(car, from, to));
+    }
+
+    @Override
+    public List<ReservationResult> addReservations(List<Reservation> reservations) {
+        return time("addReservations", () -> delegate.addReservations(reservations));
+    }
+
+    @Override
+    public Reservation getReservation(int id) {
+        return time("getReservation", () -> delegate.getReservation(id));
+    }
+
+    @Override
+    public boolean cancelReservation(int id) {
+        return time("cancelReservation", () -> delegate.cancelReservation(id));
+    }
+
+    @Override
+    public ReservationResult modifyReservation(int id, Date from, Date to) {
+        return time("modifyReservation", () -> delegate.modifyReservation(id, from, to));
+    }
+
+    @Override
+    public String getCurrentDate() {
+        return time("getCurrentDate", delegate::getCurrentDate);
+    }
+
+    @Override
+    public void setCurrentDate(String date) {
+        time("setCurrentDate", () -> delegate.setCurrentDate(date));
+    }
+
+    @Override
+    public ArchiveStats getArchiveStats() {
+        return time("getArchiveStats", () -> delegate.getArchiveStats());
+    }
+
+    @Override
+    public Map<String, Integer> getCarAmounts() {
+        return time("getCarAmounts", delegate::getCarAmounts);
+    }
+
+    @Override
+    public void setCarAmounts(String type, int amount) {
+        time("setCarAmounts", () -> delegate.setCarAmounts(type, amount));
+    }
+
+    @Override
+    public List<String> listReservations() {
+        return time("listReservations", delegate::listReservations);
+    }
+
+    @Override
+    public void forEachReservation(ReservationQuery query, Consumer<Reservation> action) {
+        time("forEachReservation", () -> delegate.forEachReservation(query, action));
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        return time("snapshot", () -> delegate.snapshot());
+    }
+
+    @Override
+    public void resetDatabase() {
+        time("resetDatabase", delegate::resetDatabase);
+    }
+
+    @Override
+    public void replaceState(String currentDate, Map<String, Integer> cars, ReservationColumns reservations) {
+        time("replaceState", () -> delegate.replaceState(currentDate, cars, reservations));
+    }
+}
@@ -0,0 +1,358 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a store with a synthetic stream of reservations at a target rate and reports
+ * throughput, latency percentiles and rejections.
+ * <p>
+ * In the open loop every worker has a fixed schedule of intended start times and a request
+ * that starts late is still timed from its intended start, so a stall shows up in the
+ * latency of every request queued behind it (the correction for coordinated omission). In the
+ * closed loop each worker sends its next request when the previous one is answered; with a
+ * target rate, responses slower than the expected interval are backfilled with the samples
+ * the stall kept from being sent. Both the service time and the corrected latency are
+ * reported.
+ * <pre>
+ * java -cp target/classes:&lt;h2.jar&gt; org.example.LoadGenerator --rate 2000 --threads 4 --duration 10
+ * </pre>
+ * Options: {@code --mode open|closed}, {@code --rate <req/s>} (0: as fast as possible,
+ * closed loop only), {@code --threads}, {@code --duration <s>} or {@code --requests <n>},
+ * {@code --warmup <s>}, {@code --mix sedan=5,suv=3,van=2}, {@code --lead uniform:0:90} (days
+ * from the current date to pick-up), {@code --length exp:3} (extra days after pick-up),
+ * {@code --cars <per type>}, {@code --via db|command}, {@code --store h2|memory},
+ * {@code --url <jdbc url>}, {@code --data <dir>}, {@code --write-behind <ms>},
+ * {@code --seed <n>}. The default store is a fresh in-memory H2 database; a store given by
+ * {@code --url} or {@code --data} keeps its reservations and only has its fleet sizes set.
+ */
+public class LoadGenerator {
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /** Days drawn for lead time and length: {@code uniform:a:b}, {@code exp:mean} or {@code fixed:n}. */
+    record Distribution(String kind, double a, double b) {
+
+        static Distribution parse(String spec) {
+            String[] parts = spec.split(":");
+            try {
+                return switch (parts[0]) {
+                    case "uniform" -> new Distribution("uniform", Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                    case "exp" -> new Distribution("exp", Double.parseDouble(parts[1]), 0);
+                    case "fixed" -> new Distribution("fixed", Double.parseDouble(parts[1]), 0);
+                    default -> throw new IllegalArgumentException("Unknown distribution " + spec);
+                };
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Expected uniform:a:b, exp:mean or fixed:n, got " + spec);
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            return switch (kind) {
+                case "uniform" -> (int) a + random.nextInt((int) b - (int) a + 1);
+                case "exp" -> (int) (-a * Math.log(1 - random.nextDouble()));
+                default -> (int) a;
+            };
+        }
+    }
+
+    /**
+     * @param rate     target requests per second over all workers; 0 sends as fast as possible
+     * @param requests total requests to send, or 0 to run for {@code duration}
+     * @param types    car type names to book, drawn with the given {@code weights}
+     */
+    record Config(boolean openLoop, double rate, int threads, Duration duration, long requests, Duration warmup,
+                  List<String> types, int[] weights, Distribution lead, Distribution length, boolean viaCommands,
+                  long seed) {
+
+        Config {
+            if (threads < 1 || types.isEmpty() || types.size() != weights.length) {
+                throw new IllegalArgumentException("Need at least one thread and one car type");
+            }
+            if (openLoop && rate <= 0) {
+                throw new IllegalArgumentException("The open loop needs --rate");
+            }
+        }
+    }
+
+    /** Outcome of a run; latencies in nanoseconds. */
+    record Report(long sent, long accepted, long unavailable, long failed, long elapsedNanos,
+                  LatencyHistogram service, LatencyHistogram corrected) {
+
+        double throughput() {
+            return elapsedNanos > 0 ? sent * 1e9 / elapsedNanos : 0;
+        }
+
+        double rejectionRate() {
+            return sent > 0 ? (double) (sent - accepted) / sent : 0;
+        }
+    }
+
+    private final Config config;
+    private final Fleet fleet;
+    private final LocalDate today;
+
+    private final LatencyHistogram service = new LatencyHistogram();
+    private final LatencyHistogram corrected = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    LoadGenerator(Config config, Database db) {
+        this.config = config;
+        this.fleet = new Fleet(db);
+        String date = db.getCurrentDate();
+        this.today = date != null ? LocalDate.parse(date) : LocalDate.now();
+    }
+
+    /** Runs the configured load and returns what was measured after the warm-up. */
+    Report run() throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + config.warmup().toNanos();
+        long end = config.requests() > 0 ? Long.MAX_VALUE : measureFrom + config.duration().toNanos();
+
+        ExecutorService workers = Executors.newFixedThreadPool(config.threads());
+        List<Future<?>> done = new ArrayList<>();
+        for (int w = 0; w < config.threads(); w++) {
+            int worker = w;
+            done.add(workers.submit(() -> work(worker, start, measureFrom, end)));
+        }
+        workers.shutdown();
+        try {
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load worker failed", e.getCause());
+        }
+        long elapsed = System.nanoTime() - Math.min(measureFrom, System.nanoTime());
+        return new Report(sent.sum(), accepted.sum(), unavailable.sum(), failed.sum(), elapsed, service, corrected);
+    }
+
+    private void work(int worker, long start, long measureFrom, long end) {
+        SplittableRandom random = new SplittableRandom(config.seed() + worker);
+        Metrics metrics = new Metrics();
+        CarRental rental = config.viaCommands() ? new CarRental(fleet, DISCARD, metrics) : null;
+        long rejected = 0;
+        long unavailableSoFar = 0;
+        int totalWeight = 0;
+        for (int weight : config.weights()) {
+            totalWeight += weight;
+        }
+
+        // each worker sends an equal share of the rate, offset so the workers interleave
+        long interval = config.rate() > 0 ? (long) (config.threads() * 1e9 / config.rate()) : 0;
+        long intended = start + interval * worker / config.threads();
+        long quota = config.requests() > 0
+                ? config.requests() / config.threads() + (worker < config.requests() % config.threads() ? 1 : 0)
+                : Long.MAX_VALUE;
+
+        for (long n = 0; n < quota; n++) {
+            if (interval > 0) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            String car = pick(random, totalWeight);
+            LocalDate from = today.plusDays(config.lead().sample(random));
+            LocalDate to = from.plusDays(config.length().sample(random));
+
+            long begin = System.nanoTime();
+            if (begin >= end) {
+                break;
+            }
+            ReservationResult.Status status;
+            if (rental != null) {
+                rental.handleCommand("reserve " + car + " " + from + " " + to);
+                status = null;
+            } else {
+                status = fleet.main().tryReserve(car, Date.valueOf(from), Date.valueOf(to)).status();
+            }
+            long finish = System.nanoTime();
+
+            if (rental != null) {
+                // the worker's own metrics only see its commands, so the counts tell the outcome
+                Map<String, Long> rejections = metrics.getRejections();
+                long total = rejections.values().stream().mapToLong(Long::longValue).sum();
+                long unavailableNow = rejections.getOrDefault("unavailable", 0L);
+                status = total == rejected ? ReservationResult.Status.ACCEPTED
+                        : unavailableNow > unavailableSoFar ? ReservationResult.Status.UNAVAILABLE
+                        : ReservationResult.Status.FAILED;
+                rejected = total;
+                unavailableSoFar = unavailableNow;
+            }
+            if (begin >= measureFrom) {
+                record(status, begin, finish, intended, interval);
+            }
+            if (interval > 0) {
+                // the open loop keeps its schedule; the closed loop paces from the response
+                intended = config.openLoop() ? intended + interval : finish + interval;
+            }
+        }
+    }
+
+    private void record(ReservationResult.Status status, long begin, long finish, long intended, long interval) {
+        sent.increment();
+        switch (status) {
+            case ACCEPTED -> accepted.increment();
+            case UNAVAILABLE -> unavailable.increment();
+            default -> failed.increment();
+        }
+        long serviceTime = finish - begin;
+        service.record(serviceTime);
+        if (config.openLoop()) {
+            corrected.record(finish - Math.min(begin, intended));
+        } else {
+            recordWithExpectedInterval(corrected, serviceTime, interval);
+        }
+    }
+
+    /**
+     * Records {@code value} and, when it exceeds the expected interval between requests, the
+     * latencies the requests that would have been sent during the stall would have seen.
+     */
+    static void recordWithExpectedInterval(LatencyHistogram histogram, long value, long interval) {
+        histogram.record(value);
+        if (interval <= 0) {
+            return;
+        }
+        for (long missing = value - interval; missing >= interval; missing -= interval) {
+            histogram.record(missing);
+        }
+    }
+
+    private String pick(SplittableRandom random, int totalWeight) {
+        int r = random.nextInt(totalWeight);
+        for (int i = 0; i < config.weights().length; i++) {
+            r -= config.weights()[i];
+            if (r < 0) {
+                return config.types().get(i);
+            }
+        }
+        return config.types().get(config.types().size() - 1);
+    }
+
+    /** Prints the request counts and a latency table in microseconds. */
+    static void print(Report report, PrintStream out) {
+        out.printf(Locale.ROOT, "Requests: %d (%d accepted, %d unavailable, %d failed), %.2f%% rejected%n",
+                report.sent(), report.accepted(), report.unavailable(), report.failed(), 100 * report.rejectionRate());
+        out.printf(Locale.ROOT, "Throughput: %.1f req/s%n", report.throughput());
+        out.printf(Locale.ROOT, "%-12s %10s %10s %10s %10s %10s %10s%n", "Latency us", "mean", "p50", "p90", "p99", "p99.9", "max");
+        printRow(out, "service", report.service());
+        printRow(out, "corrected", report.corrected());
+    }
+
+    private static void printRow(PrintStream out, String name, LatencyHistogram h) {
+        out.printf(Locale.ROOT, "%-12s %10d", name, h.mean() / 1000);
+        for (double p : PERCENTILES) {
+            out.printf(Locale.ROOT, " %10d", h.percentile(p) / 1000);
+        }
+        out.printf(Locale.ROOT, " %10d%n", h.max() / 1000);
+    }
+
+    /** Parses {@code sedan=5,suv=3}; a type without a weight gets 1. */
+    static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            int id = CarTypes.global().id(kv[0]);
+            if (id < 0) {
+                throw new IllegalArgumentException("Invalid car type " + kv[0] + ". Valid: " + CarTypes.global().describe());
+            }
+            int weight = kv.length > 1 ? Integer.parseInt(kv[1]) : 1;
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights cannot be negative: " + part);
+            }
+            if (weight > 0) {
+                mix.merge(CarTypes.global().label(id), weight, Integer::sum);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no car type with a positive weight");
+        }
+        return mix;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String mode = "open";
+        double rate = 1000;
+        int threads = 4;
+        Duration duration = Duration.ofSeconds(10);
+        long requests = 0;
+        Duration warmup = Duration.ofSeconds(2);
+        String mix = String.join(",", CarTypes.global().names());
+        Distribution lead = Distribution.parse("uniform:0:90");
+        Distribution length = Distribution.parse("exp:3");
+        int cars = 50;
+        boolean viaCommands = false;
+        String store = "h2";
+        String url = "jdbc:h2:mem:loadgen;DB_CLOSE_DELAY=-1";
+        Path data = null;
+        Long writeBehindMillis = null;
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--mode" -> mode = value;
+                case "--rate" -> rate = Double.parseDouble(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--duration" -> duration = Duration.ofMillis((long) (Double.parseDouble(value) * 1000));
+                case "--requests" -> requests = Long.parseLong(value);
+                case "--warmup" -> warmup = Duration.ofMillis((long) (Double.parseDouble(value) * 1000));
+                case "--mix" -> mix = value;
+                case "--lead" -> lead = Distribution.parse(value);
+                case "--length" -> length = Distribution.parse(value);
+                case "--cars" -> cars = Integer.parseInt(value);
+                case "--via" -> viaCommands = value.equals("command");
+                case "--store" -> store = value;
+                case "--url" -> url = value;
+                case "--data" -> data = Path.of(value);
+                case "--write-behind" -> writeBehindMillis = Long.parseLong(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (!mode.equals("open") && !mode.equals("closed")) {
+            throw new IllegalArgumentException("--mode is open or closed");
+        }
+
+        Map<String, Integer> weights = parseMix(mix);
+        Config config = new Config(mode.equals("open"), rate, threads, duration, requests, warmup,
+                new ArrayList<>(weights.keySet()), weights.values().stream().mapToInt(Integer::intValue).toArray(),
+                lead, length, viaCommands, seed);
+
+        Database backend = store.equals("memory")
+                ? new InMemoryDatabase(data != null ? data : Files.createTempDirectory("loadgen"))
+                : new DB(url);
+        try (Database db = writeBehindMillis != null
+                ? new WriteBehindDatabase(backend, 10_000, 500, writeBehindMillis) : backend) {
+            for (String type : config.types()) {
+                db.setCarAmounts(type, cars);
+            }
+            System.out.printf(Locale.ROOT, "%s loop, %d threads, %s, %d %s cars per type%n", mode, threads,
+                    rate > 0 ? rate + " req/s" : "unpaced", cars, store);
+            print(new LoadGenerator(config, db).run(), System.out);
+        }
+    }
+}
@@ -1,23 +1,76 @@
 package org.example;
 
-import java.sql.SQLException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.function.Function;
 
 public class Main {
-    public static void main(String[] args) throws SQLException {
-        Scanner scanner = new Scanner(System.in);
-        CarRental carRental = new CarRental(new DB());
+    public static void main(String[] args) throws IOException {
+        String store = "h2";
+        Path dataDir = Path.of("carrental-data");
+        Integer port = null;
+        Long writeBehindMillis = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--serve" -> port = Integer.parseInt(args[i + 1]);
+                case "--store" -> store = args[i + 1];
+                case "--data" -> dataDir = Path.of(args[i + 1]);
+                case "--write-behind" -> writeBehindMillis = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Metrics metrics = Metrics.global();
+        metrics.registerMBean();
+        boolean memory = store.equals("memory");
+        Path data = dataDir;
+        Long delay = writeBehindMillis;
+
+        // every location gets its own store, decorated the same way
+        Function<String, Database> open = location -> {
+            String name = location.toLowerCase(Locale.ROOT);
+            Database backend;
+            if (location.equals(Fleet.DEFAULT_LOCATION)) {
+                backend = memory ? new InMemoryDatabase(data) : new DB();
+            } else {
+                backend = memory ? new InMemoryDatabase(data.resolve("locations").resolve(name))
+                        : new DB("jdbc:h2:./testdb-" + name);
+            }
+            if (delay != null) {
+                backend = new WriteBehindDatabase(backend, location, 10_000, 500, delay);
+            }
+            return new InstrumentedDatabase(new CachingDatabase(backend), metrics);
+        };
+        Path registry = memory ? dataDir.resolve("locations.txt") : Path.of("locations.txt");
+        Fleet fleet = new Fleet(open.apply(Fleet.DEFAULT_LOCATION), open, registry);
+
+        try (fleet) {
+            if (port != null) {
+                CommandServer server = new CommandServer(fleet, port, null, metrics);
+                System.out.println("Listening on port " + server.getPort());
+                server.serve();
+                return;
+            }
+
+            Scanner scanner = new Scanner(System.in);
+            CarRental carRental = new CarRental(fleet, System.out, metrics);
 
-        System.out.println("Type 'help' for commands.");
+            System.out.println("Type 'help' for commands.");
 
-        while (true) {
-            System.out.print("> ");
-            String commandLine = scanner.nextLine().trim();
+            while (true) {
+                System.out.print("> ");
+                String commandLine = scanner.nextLine().trim();
 
-            if (commandLine.equalsIgnoreCase("stop")) break;
-            if (commandLine.isEmpty()) continue;
+                if (commandLine.equalsIgnoreCase("stop")) break;
+                if (commandLine.isEmpty()) continue;
 
-            carRental.handleCommand(commandLine);
+                carRental.handleCommand(commandLine);
+            }
         }
     }
 }
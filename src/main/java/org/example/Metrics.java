@@ -0,0 +1,149 @@
+package org.example;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counters and latency histograms for commands, {@link Database} calls, JDBC work and
+ * rejected requests. Recording is lock-free; reports are built on demand by the {@code stats}
+ * command and the JMX bean.
+ * <p>
+ * The process-wide instance is {@link #global()}; tests can use their own.
+ */
+public class Metrics implements MetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.example:type=Metrics";
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final Map<String, LatencyHistogram> commands = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> databaseCalls = new ConcurrentHashMap<>();
+    private final LatencyHistogram jdbc = new LatencyHistogram();
+    private final Map<String, LongAdder> rejections = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+    private final Map<String, Supplier<?>> gauges = new ConcurrentHashMap<>();
+
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    public void recordCommand(String command, long nanos) {
+        commands.computeIfAbsent(command, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void recordDatabaseCall(String method, long nanos) {
+        databaseCalls.computeIfAbsent(method, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    /** Time a database connection was held, i.e. spent in JDBC rather than in-process. */
+    public void recordJdbc(long nanos) {
+        jdbc.record(nanos);
+    }
+
+    public void reject(String reason) {
+        rejections.computeIfAbsent(reason, k -> new LongAdder()).increment();
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    /** Adds a value that is read whenever a report is built, e.g. connection pool stats. */
+    public void registerGauge(String name, Supplier<?> gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /** Removes a gauge unless another one has been registered under its name since. */
+    public void unregisterGauge(String name, Supplier<?> gauge) {
+        gauges.remove(name, gauge);
+    }
+
+    /** Registers this instance with the platform MBean server. */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCommandCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        commands.forEach((k, h) -> result.put(k, h.count()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getCommandP99Micros() {
+        Map<String, Long> result = new TreeMap<>();
+        commands.forEach((k, h) -> result.put(k, h.percentile(99) / 1_000));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getDatabaseCallCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        databaseCalls.forEach((k, h) -> result.put(k, h.count()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getRejections() {
+        Map<String, Long> result = new TreeMap<>();
+        rejections.forEach((k, v) -> result.put(k, v.sum()));
+        return result;
+    }
+
+    @Override
+    public long getJdbcMillis() {
+        return jdbc.sum() / 1_000_000;
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Commands:\n");
+        appendHistograms(sb, commands);
+        sb.append("Database calls:\n");
+        appendHistograms(sb, databaseCalls);
+
+        long commandNanos = 0;
+        for (LatencyHistogram h : commands.values()) {
+            commandNanos += h.sum();
+        }
+        long jdbcNanos = jdbc.sum();
+        sb.append(String.format(Locale.ROOT, "Time: commands=%dms jdbc=%dms in-process=%dms%n",
+                commandNanos / 1_000_000, jdbcNanos / 1_000_000, Math.max(0, commandNanos - jdbcNanos) / 1_000_000));
+
+        sb.append("Rejections:\n");
+        getRejections().forEach((reason, n) -> sb.append(String.format(Locale.ROOT, "  %-22s %d%n", reason, n)));
+        sb.append("Errors: ").append(getErrors()).append('\n');
+        new TreeMap<>(gauges).forEach((name, gauge) -> sb.append(name).append(": ").append(gauge.get()).append('\n'));
+        return sb.toString();
+    }
+
+    private static void appendHistograms(StringBuilder sb, Map<String, LatencyHistogram> histograms) {
+        new TreeMap<>(histograms).forEach((name, h) -> sb.append(String.format(Locale.ROOT,
+                "  %-22s count=%d mean=%dus p50=%dus p99=%dus max=%dus%n",
+                name, h.count(), h.mean() / 1_000, h.percentile(50) / 1_000,
+                h.percentile(99) / 1_000, h.max() / 1_000)));
+    }
+}
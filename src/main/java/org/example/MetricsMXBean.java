@@ -0,0 +1,23 @@
+package org.example;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link Metrics}, registered as {@value Metrics#OBJECT_NAME}.
+ */
+public interface MetricsMXBean {
+
+    Map<String, Long> getCommandCounts();
+
+    Map<String, Long> getCommandP99Micros();
+
+    Map<String, Long> getDatabaseCallCounts();
+
+    Map<String, Long> getRejections();
+
+    long getJdbcMillis();
+
+    long getErrors();
+
+    String getReport();
+}
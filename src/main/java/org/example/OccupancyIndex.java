@@ -0,0 +1,242 @@
+package org.example;
+
+import java.sql.Date;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * In-process count of booked cars per day for every car type.
+ * <p>
+ * Each car type has a segment tree over epoch days supporting "add to every day in a range"
+ * and "maximum over a range" in O(log n), so the peak number of cars in simultaneous use
+ * during {@code [from, to]} is answered without touching the database. Both ends of a
+ * reservation are inclusive, matching how reservations overlap in {@link DB}.
+ * <p>
+ * Trees sit in an array indexed by {@link CarTypes} id; the methods taking a type name look
+ * the id up once and are meant for callers that have no id at hand.
+ */
+public class OccupancyIndex {
+
+    private final CarTypes carTypes;
+    private volatile DayTree[] trees = new DayTree[0];
+
+    public OccupancyIndex() {
+        this(CarTypes.global());
+    }
+
+    public OccupancyIndex(CarTypes carTypes) {
+        this.carTypes = carTypes;
+    }
+
+    public void add(String carType, Date from, Date to) {
+        add(carTypes.register(carType), epochDay(from), epochDay(to), 1);
+    }
+
+    public void remove(String carType, Date from, Date to) {
+        add(carTypes.register(carType), epochDay(from), epochDay(to), -1);
+    }
+
+    public void add(int type, int fromDay, int toDay, int delta) {
+        if (fromDay > toDay) {
+            throw new IllegalArgumentException("Range start " + fromDay + " is after end " + toDay);
+        }
+        DayTree tree = tree(type);
+        if (tree == null) {
+            tree = createTree(type, fromDay);
+        }
+        tree.add(fromDay, toDay, delta);
+    }
+
+    private DayTree tree(int type) {
+        DayTree[] t = trees;
+        return type >= 0 && type < t.length ? t[type] : null;
+    }
+
+    private synchronized DayTree createTree(int type, int firstDay) {
+        DayTree[] t = trees;
+        if (type >= t.length) {
+            t = Arrays.copyOf(t, Math.max(type + 1, carTypes.size()));
+        } else if (t[type] != null) {
+            return t[type];
+        } else {
+            t = t.clone();
+        }
+        DayTree tree = new DayTree(firstDay);
+        t[type] = tree;
+        trees = t;
+        return tree;
+    }
+
+    /** Highest number of cars of this type booked on any single day in {@code [from, to]}. */
+    public int peak(String carType, Date from, Date to) {
+        return peak(carTypes.id(carType), epochDay(from), epochDay(to));
+    }
+
+    public int peak(int type, int fromDay, int toDay) {
+        DayTree tree = tree(type);
+        return tree == null || fromDay > toDay ? 0 : tree.max(fromDay, toDay);
+    }
+
+    /**
+     * Number of cars of this type booked on each day of {@code [fromDay, toDay]}, in one walk
+     * over the tree instead of one {@link #peak} per day.
+     */
+    public int[] booked(int type, int fromDay, int toDay) {
+        int[] days = new int[Math.max(0, toDay - fromDay + 1)];
+        DayTree tree = tree(type);
+        if (tree != null && days.length > 0) {
+            tree.counts(fromDay, toDay, days);
+        }
+        return days;
+    }
+
+    /**
+     * Free cars per {@link CarTypes} id and day of {@code [fromDay, toDay]} given the fleet
+     * sizes, as returned by {@link Database#getAvailabilityCalendar}.
+     */
+    public int[][] calendar(Map<String, Integer> amounts, int fromDay, int toDay) {
+        int[][] calendar = new int[carTypes.size()][];
+        for (int type = 0; type < calendar.length; type++) {
+            int amount = amounts.getOrDefault(carTypes.name(type), 0);
+            int[] days = booked(type, fromDay, toDay);
+            for (int i = 0; i < days.length; i++) {
+                days[i] = amount - days[i];
+            }
+            calendar[type] = days;
+        }
+        return calendar;
+    }
+
+    public synchronized void clear() {
+        trees = new DayTree[0];
+    }
+
+    static int epochDay(Date date) {
+        return (int) date.toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Range-add / range-max segment tree over a window of days starting at {@code base}.
+     * Pending additions are kept on the covering node instead of being pushed down, so
+     * {@code max[node]} is the maximum of its subtree including its own {@code add[node]}.
+     * The window doubles whenever a day outside of it is touched.
+     */
+    private static final class DayTree {
+
+        private static final int INITIAL_SIZE = 1024;
+
+        private int base;
+        private int size;
+        private int[] max;
+        private int[] add;
+
+        DayTree(int firstDay) {
+            this.size = INITIAL_SIZE;
+            this.base = firstDay - size / 4;
+            this.max = new int[2 * size];
+            this.add = new int[2 * size];
+        }
+
+        synchronized void add(int fromDay, int toDay, int delta) {
+            ensureCovers(fromDay, toDay);
+            update(1, 0, size - 1, fromDay - base, toDay - base, delta);
+        }
+
+        synchronized int max(int fromDay, int toDay) {
+            int lo = Math.max(fromDay, base) - base;
+            int hi = Math.min(toDay, base + size - 1) - base;
+            if (lo > hi) {
+                return 0;
+            }
+            return query(1, 0, size - 1, lo, hi);
+        }
+
+        /** Writes the count of each day in {@code [fromDay, toDay]} to {@code out[day - fromDay]}. */
+        synchronized void counts(int fromDay, int toDay, int[] out) {
+            int lo = Math.max(fromDay, base) - base;
+            int hi = Math.min(toDay, base + size - 1) - base;
+            if (lo <= hi) {
+                collect(1, 0, size - 1, lo, hi, 0, out, base - fromDay);
+            }
+        }
+
+        private void update(int node, int lo, int hi, int l, int r, int delta) {
+            if (l <= lo && hi <= r) {
+                max[node] += delta;
+                add[node] += delta;
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (l <= mid) {
+                update(2 * node, lo, mid, l, r, delta);
+            }
+            if (r > mid) {
+                update(2 * node + 1, mid + 1, hi, l, r, delta);
+            }
+            max[node] = add[node] + Math.max(max[2 * node], max[2 * node + 1]);
+        }
+
+        private int query(int node, int lo, int hi, int l, int r) {
+            if (l <= lo && hi <= r) {
+                return max[node];
+            }
+            int mid = (lo + hi) >>> 1;
+            int best = Integer.MIN_VALUE;
+            if (l <= mid) {
+                best = query(2 * node, lo, mid, l, r);
+            }
+            if (r > mid) {
+                best = Math.max(best, query(2 * node + 1, mid + 1, hi, l, r));
+            }
+            return add[node] + best;
+        }
+
+        private void ensureCovers(int fromDay, int toDay) {
+            int end = base + size - 1;
+            if (fromDay >= base && toDay <= end) {
+                return;
+            }
+            int lo = Math.min(fromDay, base);
+            int hi = Math.max(toDay, end);
+            int newSize = size;
+            while (newSize < hi - lo + 1) {
+                newSize <<= 1;
+            }
+            newSize <<= 1;
+            int newBase = fromDay < base ? hi - newSize + 1 : base;
+
+            int[] values = new int[newSize];
+            int offset = base - newBase;
+            collect(1, 0, size - 1, 0, size - 1, 0, values, offset);
+
+            base = newBase;
+            size = newSize;
+            max = new int[2 * newSize];
+            add = new int[2 * newSize];
+            System.arraycopy(values, 0, max, newSize, newSize);
+            System.arraycopy(values, 0, add, newSize, newSize);
+            for (int node = newSize - 1; node >= 1; node--) {
+                max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+            }
+        }
+
+        /**
+         * Writes the per-day counts of window positions {@code [l, r]} into {@code out},
+         * shifted by offset.
+         */
+        private void collect(int node, int lo, int hi, int l, int r, int carried, int[] out, int offset) {
+            int total = carried + add[node];
+            if (lo == hi) {
+                out[lo + offset] = total;
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (l <= mid) {
+                collect(2 * node, lo, mid, l, r, total, out, offset);
+            }
+            if (r > mid) {
+                collect(2 * node + 1, mid + 1, hi, l, r, total, out, offset);
+            }
+        }
+    }
+}
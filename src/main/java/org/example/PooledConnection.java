@@ -0,0 +1,131 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A connection borrowed from {@link ConnectionPool}. Closing it hands it back to the pool.
+ * <p>
+ * Prepared statements obtained through {@link #prepare(String)} are cached per connection
+ * and must not be closed by the caller (their result sets still should be).
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final ConnectionPool pool;
+    private final Connection conn;
+    private final Map<String, PreparedStatement> statements =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > STATEMENT_CACHE_SIZE) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    private long epoch;
+    long lastUsed = System.nanoTime();
+    long borrowedAt;
+
+    PooledConnection(ConnectionPool pool, Connection conn) {
+        this.pool = pool;
+        this.conn = conn;
+        this.epoch = pool.statementEpoch();
+    }
+
+    /** The underlying JDBC connection, for statements that should not be cached. */
+    public Connection connection() {
+        return conn;
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, false);
+    }
+
+    /** Like {@link #prepare(String)}, but generated keys can be read after execution. */
+    public PreparedStatement prepareReturningKeys(String sql) throws SQLException {
+        return prepare(sql, true);
+    }
+
+    private PreparedStatement prepare(String sql, boolean returnKeys) throws SQLException {
+        long current = pool.statementEpoch();
+        if (epoch != current) {
+            clearStatements();
+            epoch = current;
+        }
+        String key = returnKeys ? "keys:" + sql : sql;
+        PreparedStatement ps = statements.get(key);
+        if (ps == null) {
+            ps = returnKeys
+                    ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : conn.prepareStatement(sql);
+            statements.put(key, ps);
+        } else {
+            ps.clearParameters();
+            ps.clearBatch();
+        }
+        return ps;
+    }
+
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return conn.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Rolls back anything a caller left open. Returns false if the connection is unusable.
+     */
+    boolean resetForReuse() {
+        try {
+            if (conn.isClosed()) {
+                return false;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void closePhysical() {
+        clearStatements();
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void clearStatements() {
+        for (PreparedStatement ps : statements.values()) {
+            closeQuietly(ps);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+            // statement is being discarded anyway
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+}
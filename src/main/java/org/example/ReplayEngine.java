@@ -0,0 +1,171 @@
+package org.example;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Replays a command script with independent work running in parallel.
+ * <p>
+ * {@code reserve} and {@code setcar} only touch one car type at one location, so consecutive
+ * commands are split into one queue per location and type and the queues run side by side on
+ * a fork-join pool, each in script order. Every other command ({@code setdate}, {@code reset}, {@code info}, ...) is a
+ * barrier: the queued work is finished first and the command runs alone. Per type the
+ * database therefore sees the same calls in the same order as in a sequential run, and ends
+ * in the same state; only the ids of reservations of different types interleave differently.
+ * <p>
+ * Commands that name a reservation id or a waitlist ticket ({@code cancel}, {@code modify},
+ * {@code waitlist remove}) would then hit a different booking than in a sequential run, so
+ * everything up to the last such command runs one by one, and only the rest is partitioned.
+ * <p>
+ * Partitioned commands run quietly; barrier commands print to the given stream.
+ */
+public class ReplayEngine {
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private final Fleet fleet;
+    private final PrintStream out;
+    private final Metrics metrics;
+
+    public ReplayEngine(Database db, PrintStream out, Metrics metrics) {
+        this(new Fleet(db), out, metrics);
+    }
+
+    public ReplayEngine(Fleet fleet, PrintStream out, Metrics metrics) {
+        this.fleet = fleet;
+        this.out = out;
+        this.metrics = metrics;
+    }
+
+    /** Number of commands, parallel segments and elapsed time of one replay. */
+    public record Result(long commands, int segments, long nanos) {
+        public double commandsPerSecond() {
+            return nanos > 0 ? commands * 1e9 / nanos : 0;
+        }
+    }
+
+    /**
+     * Runs every line of the script. Blank lines and lines starting with '#' are skipped.
+     */
+    public Result replay(List<String> lines) throws InterruptedException {
+        Map<String, List<String>> queues = new LinkedHashMap<>();
+        CarRental sequential = new CarRental(fleet, out, metrics);
+        CommandTokenizer tokens = new CommandTokenizer();
+
+        int lastIdCommand = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            tokens.reset(lines.get(i));
+            if (referencesIds(tokens)) {
+                lastIdCommand = i;
+            }
+        }
+
+        long start = System.nanoTime();
+        long commands = 0;
+        int segments = 0;
+        try (ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors())) {
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                tokens.reset(line);
+                if (tokens.count() == 0 || line.charAt(tokens.start(0)) == '#') {
+                    continue;
+                }
+                commands++;
+                String partition = i < lastIdCommand ? null : partitionOf(tokens);
+                if (partition != null) {
+                    queues.computeIfAbsent(partition, k -> new ArrayList<>()).add(line);
+                    continue;
+                }
+                if (runQueued(pool, queues)) {
+                    segments++;
+                }
+                sequential.handleCommand(line);
+            }
+            if (runQueued(pool, queues)) {
+                segments++;
+            }
+        }
+        return new Result(commands, segments, System.nanoTime() - start);
+    }
+
+    /**
+     * @return "LOCATION/TYPE" for the only car type and location the command touches, or null
+     *         if it must run alone
+     */
+    private static String partitionOf(CommandTokenizer tokens) {
+        boolean reserve = tokens.is(0, "reserve");
+        if (!reserve && !tokens.is(0, "setcar")) {
+            return null;
+        }
+        // the location form has one more argument: reserve L car from to, setcar L car n
+        boolean located = tokens.count() >= (reserve ? 5 : 4);
+        int typeToken = located ? 2 : 1;
+        if (tokens.count() <= typeToken) {
+            return null;
+        }
+        CarTypes carTypes = CarTypes.global();
+        int type = carTypes.id(tokens.line(), tokens.start(typeToken), tokens.end(typeToken));
+        if (type < 0) {
+            return null;
+        }
+        String location = located
+                ? tokens.line().substring(tokens.start(1), tokens.end(1)).toUpperCase(Locale.ROOT)
+                : Fleet.DEFAULT_LOCATION;
+        return location + "/" + carTypes.name(type);
+    }
+
+    /** @return whether the command names a reservation id or a waitlist ticket */
+    private static boolean referencesIds(CommandTokenizer tokens) {
+        if (tokens.count() == 0) {
+            return false;
+        }
+        if (tokens.is(0, "cancel") || tokens.is(0, "modify")) {
+            return true;
+        }
+        return tokens.is(0, "waitlist") && tokens.count() >= 3 && tokens.is(tokens.count() - 2, "remove");
+    }
+
+    /**
+     * Runs and empties the queues, one task per non-empty queue.
+     *
+     * @return whether anything was queued
+     */
+    private boolean runQueued(ForkJoinPool pool, Map<String, List<String>> queues) throws InterruptedException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (List<String> queue : queues.values()) {
+            if (queue.isEmpty()) {
+                continue;
+            }
+            List<String> commands = List.copyOf(queue);
+            queue.clear();
+            tasks.add(() -> {
+                // CarRental keeps parsing state, so every task gets its own
+                CarRental rental = new CarRental(fleet, DISCARD, metrics);
+                for (String command : commands) {
+                    rental.handleCommand(command);
+                }
+                return null;
+            });
+        }
+        if (tasks.isEmpty()) {
+            return false;
+        }
+        for (Future<Void> done : pool.invokeAll(tasks)) {
+            try {
+                done.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Replay failed", e.getCause());
+            }
+        }
+        return true;
+    }
+}
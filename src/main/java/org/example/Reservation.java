@@ -0,0 +1,18 @@
+package org.example;
+
+import java.sql.Date;
+
+/**
+ * A stored reservation, or a request for one when {@code id} is 0.
+ */
+public record Reservation(int id, String car, Date from, Date to) {
+
+    public Reservation(String car, Date from, Date to) {
+        this(0, car, from, to);
+    }
+
+    /** The line shown for this reservation by {@code info}. */
+    public String describe() {
+        return id + ": " + car + " " + from + " → " + to;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Reservations stored column by column in plain {@code int} arrays, for scans over many
+ * rows: the car type as a {@link CarTypes} id and every date as an epoch day. A million rows
+ * take 20 MB and no objects per row, so they can be aggregated in parallel without
+ * allocation. Filled by {@link Snapshot#columns}; rows are appended in no particular order.
+ */
+public final class ReservationColumns {
+
+    private int size;
+    private int[] ids;
+    private int[] types;
+    private int[] fromDays;
+    private int[] toDays;
+    private int[] bookedDays;
+
+    public ReservationColumns() {
+        this(1024);
+    }
+
+    public ReservationColumns(int capacity) {
+        int length = Math.max(capacity, 16);
+        ids = new int[length];
+        types = new int[length];
+        fromDays = new int[length];
+        toDays = new int[length];
+        bookedDays = new int[length];
+    }
+
+    /**
+     * @param id        reservation id, unique within the store
+     * @param type      {@link CarTypes} id
+     * @param bookedDay simulation date the reservation was made on, or {@link EpochDays#INVALID}
+     *                  if it was not recorded
+     */
+    public void add(int id, int type, int fromDay, int toDay, int bookedDay) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            types = Arrays.copyOf(types, capacity);
+            fromDays = Arrays.copyOf(fromDays, capacity);
+            toDays = Arrays.copyOf(toDays, capacity);
+            bookedDays = Arrays.copyOf(bookedDays, capacity);
+        }
+        ids[size] = id;
+        types[size] = type;
+        fromDays[size] = fromDay;
+        toDays[size] = toDay;
+        bookedDays[size] = bookedDay;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int id(int row) {
+        return ids[row];
+    }
+
+    public int type(int row) {
+        return types[row];
+    }
+
+    public int fromDay(int row) {
+        return fromDays[row];
+    }
+
+    public int toDay(int row) {
+        return toDays[row];
+    }
+
+    /** @return the booking day, or {@link EpochDays#INVALID} if it was not recorded */
+    public int bookedDay(int row) {
+        return bookedDays[row];
+    }
+}
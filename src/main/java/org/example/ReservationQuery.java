@@ -0,0 +1,36 @@
+package org.example;
+
+import java.sql.Date;
+
+/**
+ * Which reservations {@link Database#forEachReservation} returns, in from-date order.
+ *
+ * @param car  only this car type, or {@code null} for all types
+ * @param from only reservations still running on or after this day; {@code null} means the
+ *             current simulation date (or everything if it is not set)
+ * @param to   only reservations starting on or before this day, or {@code null} for no limit
+ * @param page 1-based page number, used when {@code size > 0}
+ * @param size page size, or 0 to return every match
+ */
+public record ReservationQuery(String car, Date from, Date to, int page, int size) {
+
+    /** Every reservation that has not ended before the current date. */
+    public static final ReservationQuery UPCOMING = new ReservationQuery(null, null, null, 0, 0);
+
+    public ReservationQuery {
+        if (size < 0 || (size > 0 && page < 1)) {
+            throw new IllegalArgumentException("Page must be at least 1 and size must not be negative");
+        }
+        if (from != null && to != null && from.after(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+    }
+
+    public boolean isPaged() {
+        return size > 0;
+    }
+
+    public long offset() {
+        return isPaged() ? (long) (page - 1) * size : 0;
+    }
+}
@@ -0,0 +1,36 @@
+package org.example;
+
+/**
+ * Outcome of {@link Database#tryReserve} and {@link Database#modifyReservation}: the
+ * reservation id when accepted, and how many cars of the requested type are still free for
+ * the requested dates.
+ */
+public record ReservationResult(Status status, int id, int available) {
+
+    public enum Status {
+        ACCEPTED,
+        UNAVAILABLE,
+        FAILED,
+        NOT_FOUND
+    }
+
+    public static ReservationResult accepted(int id, int available) {
+        return new ReservationResult(Status.ACCEPTED, id, available);
+    }
+
+    public static ReservationResult unavailable(int available) {
+        return new ReservationResult(Status.UNAVAILABLE, -1, Math.max(available, 0));
+    }
+
+    public static ReservationResult failed() {
+        return new ReservationResult(Status.FAILED, -1, 0);
+    }
+
+    public static ReservationResult notFound() {
+        return new ReservationResult(Status.NOT_FOUND, -1, 0);
+    }
+
+    public boolean isAccepted() {
+        return status == Status.ACCEPTED;
+    }
+}
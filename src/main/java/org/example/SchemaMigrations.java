@@ -0,0 +1,129 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Versioned schema changes for {@link DB}, applied in order at startup and after a reset.
+ * The last applied version is stored in {@code schema_version}; a migration runs once.
+ * New changes are appended to {@link #MIGRATIONS}, existing entries are never edited.
+ */
+final class SchemaMigrations {
+
+    private static final String[][] MIGRATIONS = {
+            // 1: original tables
+            {
+                    """
+                    CREATE TABLE IF NOT EXISTS settings (
+                        setting_key VARCHAR(50) PRIMARY KEY,
+                        setting_value VARCHAR(255)
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS cars (
+                        car_type VARCHAR(50) PRIMARY KEY,
+                        amount INT
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS reservations (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        car VARCHAR(50),
+                        from_date DATE,
+                        to_date DATE
+                    )
+                    """
+            },
+            // 2: car type as a foreign key to cars, range indexes for availability and listing
+            {
+                    "UPDATE reservations SET car = UPPER(car) WHERE car <> UPPER(car)",
+                    """
+                    INSERT INTO cars (car_type, amount)
+                    SELECT DISTINCT r.car, 0 FROM reservations r
+                    WHERE NOT EXISTS (SELECT 1 FROM cars c WHERE c.car_type = r.car)
+                    """,
+                    "ALTER TABLE cars ALTER COLUMN car_type SET DATA TYPE VARCHAR(50)",
+                    "ALTER TABLE reservations ALTER COLUMN car SET DATA TYPE VARCHAR(50)",
+                    "ALTER TABLE reservations ALTER COLUMN car SET NOT NULL",
+                    "ALTER TABLE reservations ALTER COLUMN from_date SET NOT NULL",
+                    "ALTER TABLE reservations ALTER COLUMN to_date SET NOT NULL",
+                    "CREATE INDEX IF NOT EXISTS idx_reservations_car_dates ON reservations (car, from_date, to_date)",
+                    "CREATE INDEX IF NOT EXISTS idx_reservations_to_date ON reservations (to_date)",
+                    """
+                    ALTER TABLE reservations ADD CONSTRAINT IF NOT EXISTS fk_reservations_car
+                    FOREIGN KEY (car) REFERENCES cars (car_type)
+                    """
+            },
+            // 3: archive for reservations that ended before the current date; the month of the
+            //    last day leads the primary key, so rows are stored and pruned by month
+            {
+                    """
+                    CREATE TABLE IF NOT EXISTS reservations_archive (
+                        archive_month INT NOT NULL,
+                        id INT NOT NULL,
+                        car VARCHAR(50) NOT NULL,
+                        from_date DATE NOT NULL,
+                        to_date DATE NOT NULL,
+                        PRIMARY KEY (archive_month, id)
+                    )
+                    """
+            },
+            // 4: the simulation date each reservation was made on, for lead times; unknown for
+            //    rows booked before this version
+            {
+                    "ALTER TABLE reservations ADD COLUMN IF NOT EXISTS booked_on DATE",
+                    "ALTER TABLE reservations_archive ADD COLUMN IF NOT EXISTS booked_on DATE"
+            }
+    };
+
+    static final int LATEST_VERSION = MIGRATIONS.length;
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Reads the schema version without creating or changing anything.
+     *
+     * @return the last applied version, or 0 for a database without {@code schema_version}
+     */
+    static int currentVersion(Connection conn) throws SQLException {
+        try (ResultSet tables = conn.getMetaData().getTables(null, null, "SCHEMA_VERSION", null)) {
+            if (!tables.next()) {
+                return 0;
+            }
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Brings the schema up to {@link #LATEST_VERSION}.
+     *
+     * @return the version the schema was at before migrating
+     */
+    static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL)");
+
+            int current = 0;
+            try (ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+                if (rs.next()) {
+                    current = rs.getInt(1);
+                }
+            }
+
+            for (int version = current + 1; version <= LATEST_VERSION; version++) {
+                for (String sql : MIGRATIONS[version - 1]) {
+                    stmt.execute(sql);
+                }
+                stmt.execute("DELETE FROM schema_version");
+                stmt.execute("INSERT INTO schema_version (version) VALUES (" + version + ")");
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.example;
+
+import java.sql.Date;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A read-only view of one store at a single point in time, for reports. Everything read
+ * through a snapshot describes the same moment, whatever is booked meanwhile, so a report
+ * never mixes states; reading it does not hold up bookings. The methods behave like their
+ * {@link Database} counterparts.
+ * <p>
+ * Close a snapshot when the report is done: the H2 store keeps a connection for it.
+ */
+public interface Snapshot extends AutoCloseable {
+
+    String getCurrentDate();
+
+    Map<String, Integer> getCarAmounts();
+
+    /** As {@link Database#getAvailabilityCalendar}. */
+    int[][] getAvailabilityCalendar(Date from, Date to);
+
+    /** As {@link Database#forEachReservation}; the current date is the snapshot's. */
+    void forEachReservation(ReservationQuery query, Consumer<Reservation> action);
+
+    /** Every reservation, live or archived, that overlaps {@code [from, to]}, as columns. */
+    ReservationColumns columns(Date from, Date to);
+
+    @Override
+    void close();
+
+    /** Free cars per type and day of {@code [fromDay, toDay]} for the given reservations. */
+    static int[][] calendar(Map<String, Integer> amounts, Iterable<Reservation> reservations, int fromDay, int toDay) {
+        OccupancyIndex index = new OccupancyIndex();
+        CarTypes carTypes = CarTypes.global();
+        for (Reservation r : reservations) {
+            int type = carTypes.id(r.car());
+            int from = Math.max(OccupancyIndex.epochDay(r.from()), fromDay);
+            int to = Math.min(OccupancyIndex.epochDay(r.to()), toDay);
+            if (type >= 0 && from <= to) {
+                index.add(type, from, to, 1);
+            }
+        }
+        return index.calendar(amounts, fromDay, toDay);
+    }
+}
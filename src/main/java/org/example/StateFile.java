@@ -0,0 +1,260 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The file written by {@code export} and read by {@code import}: a store's current date, its
+ * fleet and every reservation, live and archived, with ids and booking days.
+ * <pre>
+ * [int magic][byte version]
+ * [varint date]                     epoch day, zigzag-coded plus one; 0 if not set
+ * [varint types] per type:          [varint length][UTF-8 name][varint amount]
+ * [varint rows]  per row, id order: [varint id - previous id - 1][varint type index]
+ *                                   [zigzag start - previous start][varint end - start]
+ *                                   [varint booking day]  zigzag(start - booked) plus one; 0 if unknown
+ * [int crc32 of everything before]
+ * </pre>
+ * Car types are written once and referred to by index. Ids are dense and start days of
+ * consecutive bookings are close, so a row takes about six bytes instead of the ~100 of an
+ * SQL {@code INSERT}. Writing goes through one direct buffer into a {@link FileChannel};
+ * reading maps the file and decodes it in place.
+ */
+final class StateFile {
+
+    private static final int MAGIC = 0x43525358; // "CRSX"
+    private static final byte VERSION = 1;
+    /** Room for the longest row; names are checked separately. */
+    private static final int MAX_ROW_BYTES = 5 * 5;
+
+    /** What a file holds; {@code reservations} are in id order. */
+    record Contents(String currentDate, Map<String, Integer> cars, ReservationColumns reservations) {
+    }
+
+    private StateFile() {
+    }
+
+    /** @return the number of bytes written */
+    static long write(Path file, String currentDate, Map<String, Integer> cars, ReservationColumns reservations)
+            throws IOException {
+        CarTypes carTypes = CarTypes.global();
+        // dictionary: the fleet's types plus any that only reservations still use
+        Map<Integer, Integer> indexByType = new HashMap<>();
+        Map<String, Integer> types = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> car : cars.entrySet()) {
+            types.put(car.getKey().toUpperCase(Locale.ROOT), car.getValue());
+        }
+        for (int row = 0; row < reservations.size(); row++) {
+            types.putIfAbsent(carTypes.name(reservations.type(row)), 0);
+        }
+        int index = 0;
+        for (String type : types.keySet()) {
+            indexByType.put(carTypes.register(type), index++);
+        }
+
+        // ids are unique per store; a row seen twice (live and archived) is written once
+        long[] order = new long[reservations.size()];
+        for (int row = 0; row < order.length; row++) {
+            order[row] = ((long) reservations.id(row) << 32) | row;
+        }
+        Arrays.sort(order);
+
+        try (Writer out = new Writer(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            out.ensure(5);
+            out.buffer.putInt(MAGIC);
+            out.buffer.put(VERSION);
+            int date = EpochDays.parse(currentDate);
+            out.varint(date == EpochDays.INVALID ? 0 : zigzag(date) + 1);
+
+            out.varint(types.size());
+            for (Map.Entry<String, Integer> type : types.entrySet()) {
+                byte[] name = type.getKey().getBytes(StandardCharsets.UTF_8);
+                out.varint(name.length);
+                out.ensure(name.length);
+                out.buffer.put(name);
+                out.varint(type.getValue());
+            }
+
+            int rows = 0;
+            for (int k = 0; k < order.length; k++) {
+                if (k == 0 || (order[k] >>> 32) != (order[k - 1] >>> 32)) {
+                    rows++;
+                }
+            }
+            out.varint(rows);
+            int previousId = 0;
+            int previousFrom = 0;
+            for (long key : order) {
+                int row = (int) key;
+                int id = reservations.id(row);
+                if (id == previousId && previousId != 0) {
+                    continue;
+                }
+                int from = reservations.fromDay(row);
+                int booked = reservations.bookedDay(row);
+                out.ensure(MAX_ROW_BYTES);
+                out.varint(id - previousId - 1);
+                out.varint(indexByType.get(reservations.type(row)));
+                out.varint(zigzag(from - previousFrom));
+                out.varint(reservations.toDay(row) - from);
+                out.varint(booked == EpochDays.INVALID ? 0 : zigzag(from - booked) + 1);
+                previousId = id;
+                previousFrom = from;
+            }
+            return out.finish();
+        }
+    }
+
+    static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 9 || size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not an export file");
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(in.slice(0, (int) size - 4));
+            if (in.getInt() != MAGIC || in.get() != VERSION) {
+                throw new IOException(file + " is not an export file");
+            }
+            if ((int) crc.getValue() != in.getInt((int) size - 4)) {
+                throw new IOException(file + " is damaged");
+            }
+            in.limit((int) size - 4);
+            return decode(in);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException(file + " is damaged", e);
+        }
+    }
+
+    private static Contents decode(ByteBuffer in) throws IOException {
+        CarTypes carTypes = CarTypes.global();
+        int date = readVarint(in);
+        String currentDate = date == 0 ? null : EpochDays.toDate(unzigzag(date - 1)).toString();
+
+        int typeCount = readVarint(in);
+        int[] typeIds = new int[typeCount];
+        Map<String, Integer> cars = new LinkedHashMap<>();
+        for (int i = 0; i < typeCount; i++) {
+            byte[] name = new byte[readVarint(in)];
+            in.get(name);
+            String type = new String(name, StandardCharsets.UTF_8);
+            typeIds[i] = carTypes.register(type);
+            cars.put(carTypes.name(typeIds[i]), readVarint(in));
+        }
+
+        int rows = readVarint(in);
+        ReservationColumns reservations = new ReservationColumns(Math.min(rows, in.remaining() / 5 + 1));
+        int id = 0;
+        int from = 0;
+        for (int row = 0; row < rows; row++) {
+            id += readVarint(in) + 1;
+            int type = readVarint(in);
+            from += unzigzag(readVarint(in));
+            int to = from + readVarint(in);
+            int booked = readVarint(in);
+            if (type >= typeCount || to < from) {
+                throw new IOException("Invalid reservation " + id);
+            }
+            reservations.add(id, typeIds[type], from, to,
+                    booked == 0 ? EpochDays.INVALID : from - unzigzag(booked - 1));
+        }
+        if (in.hasRemaining()) {
+            throw new IOException("Unexpected data after " + rows + " reservations");
+        }
+        return new Contents(currentDate, cars, reservations);
+    }
+
+    // ===== varints =====
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /** Unsigned LEB128: seven bits per byte, high bit set on all but the last. */
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number");
+    }
+
+    /** Buffers output and keeps a running CRC of everything written. */
+    private static final class Writer implements AutoCloseable {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        private final FileChannel channel;
+        private final CRC32 crc = new CRC32();
+        private long written;
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void varint(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                buffer.put((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /** Makes room for {@code bytes} more bytes, draining the buffer if needed. */
+        void ensure(int bytes) throws IOException {
+            if (bytes > buffer.capacity()) {
+                throw new IOException("Value of " + bytes + " bytes is too long");
+            }
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /** Appends the checksum and writes everything out; @return the file size */
+        long finish() throws IOException {
+            drain();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+            return written;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Fleet utilisation over a range of days: booked car-days and occupancy per car type, the
+ * busiest day of each type, average lead time and a histogram of rental lengths.
+ * <p>
+ * The rows come as a {@link ReservationColumns} projection and are aggregated by a parallel
+ * stream. Every task adds its share of the rows into its own {@link Totals}, counting
+ * booked cars per day with a difference array (+1 on the first day, -1 after the last), and
+ * the totals are merged pairwise at the end, so the scan shares nothing and takes no locks.
+ * Occupancy covers the days of each rental that fall inside the range; lead times and rental
+ * lengths count the rentals that start inside it. Occupancy is measured against today's fleet,
+ * since past fleet sizes are not kept.
+ */
+public final class Utilisation {
+
+    /** Longest range accepted, about twenty years. */
+    public static final int MAX_DAYS = 20 * 366;
+
+    /** Upper bounds, in days, of the rental length buckets; a last bucket takes everything longer. */
+    static final int[] LENGTH_BUCKETS = {1, 2, 3, 7, 14, 30};
+
+    /**
+     * @param cars            fleet size today
+     * @param carDays         booked car-days inside the range
+     * @param peakDay         first day on which {@code peakCars} were booked, null if none were
+     * @param bookings        rentals starting inside the range
+     * @param leadTimeSamples how many of those have a known booking day
+     * @param averageLeadTime mean days from booking to the first rental day, NaN without samples
+     */
+    public record TypeStats(String car, int cars, long carDays, double occupancy, int peakCars,
+                            LocalDate peakDay, long bookings, long leadTimeSamples, double averageLeadTime) {
+    }
+
+    private final int fromDay;
+    private final int toDay;
+    private final List<TypeStats> types;
+    private final long[] lengths;
+
+    private Utilisation(int fromDay, int toDay, List<TypeStats> types, long[] lengths) {
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+        this.types = types;
+        this.lengths = lengths;
+    }
+
+    /**
+     * @param amounts fleet size per car type, which also decides which types are listed
+     *                besides those with bookings
+     */
+    public static Utilisation compute(ReservationColumns rows, Map<String, Integer> amounts, int fromDay, int toDay) {
+        if (fromDay > toDay || toDay - fromDay >= MAX_DAYS) {
+            throw new IllegalArgumentException("Range must span 1 to " + MAX_DAYS + " days");
+        }
+        CarTypes carTypes = CarTypes.global();
+        int typeCount = carTypes.size();
+        int days = toDay - fromDay + 1;
+        Totals totals = IntStream.range(0, rows.size()).parallel().collect(
+                () -> new Totals(typeCount, days),
+                (t, row) -> t.add(rows, row, fromDay, toDay),
+                Totals::merge);
+
+        List<TypeStats> stats = new ArrayList<>();
+        for (int type = 0; type < typeCount; type++) {
+            String car = carTypes.name(type);
+            int cars = amounts.getOrDefault(car, 0);
+            long carDays = 0;
+            int booked = 0;
+            int peakCars = 0;
+            int peakDay = -1;
+            int[] diff = totals.perDay[type];
+            for (int day = 0; day < days; day++) {
+                booked += diff[day];
+                carDays += booked;
+                if (booked > peakCars) {
+                    peakCars = booked;
+                    peakDay = day;
+                }
+            }
+            if (cars == 0 && carDays == 0 && totals.bookings[type] == 0) {
+                continue;
+            }
+            stats.add(new TypeStats(car, cars, carDays,
+                    cars > 0 ? (double) carDays / ((long) cars * days) : Double.NaN,
+                    peakCars, peakDay >= 0 ? LocalDate.ofEpochDay(fromDay + peakDay) : null,
+                    totals.bookings[type], totals.leadCount[type],
+                    totals.leadCount[type] > 0 ? (double) totals.leadSum[type] / totals.leadCount[type] : Double.NaN));
+        }
+        return new Utilisation(fromDay, toDay, stats, totals.lengths);
+    }
+
+    /** One entry per listed car type, in {@link CarTypes} id order. */
+    public List<TypeStats> types() {
+        return types;
+    }
+
+    /** Rentals starting inside the range per length bucket, see {@link #LENGTH_BUCKETS}. */
+    public long[] lengthHistogram() {
+        return lengths.clone();
+    }
+
+    public void print(PrintStream out) {
+        out.printf(Locale.ROOT, "Utilisation %s to %s (%d days)%n",
+                LocalDate.ofEpochDay(fromDay), LocalDate.ofEpochDay(toDay), toDay - fromDay + 1);
+        out.printf(Locale.ROOT, "%-10s %5s %9s %5s %-10s %9s %10s%n",
+                "Type", "Cars", "Occupancy", "Peak", "Peak day", "Bookings", "Lead time");
+        long bookings = 0;
+        long samples = 0;
+        for (TypeStats t : types) {
+            out.printf(Locale.ROOT, "%-10s %5d %9s %5d %-10s %9d %10s%n", t.car(), t.cars(),
+                    Double.isNaN(t.occupancy()) ? "-" : String.format(Locale.ROOT, "%.1f%%", 100 * t.occupancy()),
+                    t.peakCars(), t.peakDay() != null ? t.peakDay() : "-", t.bookings(),
+                    Double.isNaN(t.averageLeadTime()) ? "-" : String.format(Locale.ROOT, "%.1f d", t.averageLeadTime()));
+            bookings += t.bookings();
+            samples += t.leadTimeSamples();
+        }
+        if (samples < bookings) {
+            out.println("Lead time known for " + samples + " of " + bookings
+                    + " bookings; the others were made before booking dates were recorded.");
+        }
+
+        out.printf(Locale.ROOT, "%nRental length %9s%n", "Bookings");
+        for (int bucket = 0; bucket < lengths.length; bucket++) {
+            out.printf(Locale.ROOT, "%-13s %9d %6.1f%%%n", bucketLabel(bucket), lengths[bucket],
+                    bookings > 0 ? 100.0 * lengths[bucket] / bookings : 0.0);
+        }
+    }
+
+    private static String bucketLabel(int bucket) {
+        if (bucket == LENGTH_BUCKETS.length) {
+            return (LENGTH_BUCKETS[bucket - 1] + 1) + "+ days";
+        }
+        int low = bucket == 0 ? 1 : LENGTH_BUCKETS[bucket - 1] + 1;
+        int high = LENGTH_BUCKETS[bucket];
+        return (low == high ? String.valueOf(low) : low + "-" + high) + (high == 1 ? " day" : " days");
+    }
+
+    /** Index of the length bucket for a rental of {@code days} days. */
+    static int bucketOf(int days) {
+        for (int bucket = 0; bucket < LENGTH_BUCKETS.length; bucket++) {
+            if (days <= LENGTH_BUCKETS[bucket]) {
+                return bucket;
+            }
+        }
+        return LENGTH_BUCKETS.length;
+    }
+
+    /** Sums over the part of the rows one stream task handles. */
+    private static final class Totals {
+        /** Per type and day, the change in booked cars from the day before. */
+        final int[][] perDay;
+        final long[] bookings;
+        final long[] leadSum;
+        final long[] leadCount;
+        final long[] lengths = new long[LENGTH_BUCKETS.length + 1];
+
+        Totals(int typeCount, int days) {
+            perDay = new int[typeCount][days + 1];
+            bookings = new long[typeCount];
+            leadSum = new long[typeCount];
+            leadCount = new long[typeCount];
+        }
+
+        void add(ReservationColumns rows, int row, int fromDay, int toDay) {
+            int type = rows.type(row);
+            if (type >= perDay.length) {
+                // registered after the report started
+                return;
+            }
+            int start = rows.fromDay(row);
+            int end = rows.toDay(row);
+            int first = Math.max(start, fromDay);
+            int last = Math.min(end, toDay);
+            if (first <= last) {
+                perDay[type][first - fromDay]++;
+                perDay[type][last - fromDay + 1]--;
+            }
+            if (start >= fromDay && start <= toDay) {
+                bookings[type]++;
+                lengths[bucketOf(end - start + 1)]++;
+                int booked = rows.bookedDay(row);
+                if (booked != EpochDays.INVALID) {
+                    leadSum[type] += start - booked;
+                    leadCount[type]++;
+                }
+            }
+        }
+
+        void merge(Totals other) {
+            for (int type = 0; type < perDay.length; type++) {
+                int[] mine = perDay[type];
+                int[] theirs = other.perDay[type];
+                for (int day = 0; day < mine.length; day++) {
+                    mine[day] += theirs[day];
+                }
+                bookings[type] += other.bookings[type];
+                leadSum[type] += other.leadSum[type];
+                leadCount[type] += other.leadCount[type];
+            }
+            for (int bucket = 0; bucket < lengths.length; bucket++) {
+                lengths[bucket] += other.lengths[bucket];
+            }
+        }
+    }
+}
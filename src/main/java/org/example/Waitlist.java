@@ -0,0 +1,335 @@
+package org.example;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Requests that found no free car, kept per car type until a cancellation, a moved
+ * reservation or a larger fleet frees cars for their dates.
+ * <p>
+ * Each type's requests sit in an interval tree: a treap ordered by start day in which every
+ * node also holds the latest end day below it. Finding the requests that overlap the freed
+ * days skips every subtree that ends before them or starts after them, so a cancellation
+ * looks at the requests it can help rather than the whole queue. Candidates are tried oldest
+ * first through {@link Database#tryReserve}, which checks and books in one step, so a
+ * promotion can never overbook even while other bookings run. They are taken out of the queue
+ * while they are tried, so adds and removes do not wait for the database; requests that still
+ * do not fit are put back with their tickets. Requests whose start day has passed are dropped when they are next looked at.
+ * <p>
+ * The waitlist lives in memory only and is emptied by {@link #clear()}.
+ */
+public class Waitlist {
+
+    /** Most requests kept per store; later ones are turned away. */
+    public static final int MAX_SIZE = 10_000;
+
+    /** A waiting request; tickets number them in arrival order. */
+    public record Entry(int ticket, String car, Date from, Date to) {
+
+        /** The line shown for this entry by {@code waitlist}. */
+        public String describe() {
+            return "W" + ticket + ": " + car + " " + from + " → " + to;
+        }
+    }
+
+    /** A waiting request that has been booked as reservation {@code reservationId}. */
+    public record Promotion(Entry entry, int reservationId) {
+    }
+
+    private static final class Node {
+        final Entry entry;
+        final int from;
+        final int to;
+        final int priority;
+        int maxTo;
+        Node left;
+        Node right;
+
+        Node(Entry entry) {
+            this.entry = entry;
+            this.from = OccupancyIndex.epochDay(entry.from());
+            this.to = OccupancyIndex.epochDay(entry.to());
+            this.priority = mix(entry.ticket());
+            this.maxTo = to;
+        }
+    }
+
+    private final CarTypes carTypes = CarTypes.global();
+    /** Tree root per {@link CarTypes} id. */
+    private Node[] roots = new Node[0];
+    private final Map<Integer, Entry> byTicket = new HashMap<>();
+    private int nextTicket = 1;
+    /** Bumped by {@link #clear()}. */
+    private long generation;
+    private long promoted;
+    private long expired;
+
+    /**
+     * Queues a request that could not be booked.
+     *
+     * @return the entry, or null if the waitlist is full or the car type is unknown
+     */
+    public synchronized Entry add(String car, Date from, Date to) {
+        int type = carTypes.id(car);
+        if (type < 0 || byTicket.size() >= MAX_SIZE) {
+            return null;
+        }
+        Entry entry = new Entry(nextTicket++, carTypes.name(type), from, to);
+        if (type >= roots.length) {
+            roots = Arrays.copyOf(roots, carTypes.size());
+        }
+        roots[type] = insert(roots[type], new Node(entry));
+        byTicket.put(entry.ticket(), entry);
+        return entry;
+    }
+
+    /** @return false if there is no waiting request with this ticket */
+    public synchronized boolean remove(int ticket) {
+        Entry entry = byTicket.remove(ticket);
+        if (entry == null) {
+            return false;
+        }
+        int type = carTypes.id(entry.car());
+        roots[type] = delete(roots[type], OccupancyIndex.epochDay(entry.from()), ticket);
+        return true;
+    }
+
+    /**
+     * Books the waiting requests for this type that overlap {@code [from, to]}, the days that
+     * just had cars freed, as far as they now fit.
+     *
+     * @return the requests that were booked, oldest first
+     */
+    public List<Promotion> promote(Database store, String car, Date from, Date to) {
+        List<Entry> candidates = new ArrayList<>();
+        long generation = take(car, OccupancyIndex.epochDay(from), OccupancyIndex.epochDay(to), candidates);
+        return tryBook(store, generation, candidates);
+    }
+
+    /** Books the waiting requests for this type as far as they fit, e.g. after the fleet grew. */
+    public List<Promotion> promoteAll(Database store, String car) {
+        List<Entry> candidates = new ArrayList<>();
+        long generation = take(car, Integer.MIN_VALUE, Integer.MAX_VALUE, candidates);
+        return tryBook(store, generation, candidates);
+    }
+
+    /**
+     * Moves the requests for this type that overlap {@code [fromDay, toDay]} out of the queue
+     * into {@code candidates}, so they can be booked without holding the monitor.
+     *
+     * @return the generation of the queue, to tell whether it was cleared in the meantime
+     */
+    private synchronized long take(String car, int fromDay, int toDay, List<Entry> candidates) {
+        int type = carTypes.id(car);
+        if (type >= 0 && type < roots.length && roots[type] != null) {
+            overlapping(roots[type], fromDay, toDay, candidates);
+            for (Entry entry : candidates) {
+                remove(entry.ticket());
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * Tries the candidates oldest first. Booking does database I/O, so it runs outside the
+     * monitor; requests that still do not fit are put back with their tickets afterwards.
+     */
+    private List<Promotion> tryBook(Database store, long generation, List<Entry> candidates) {
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        String date = store.getCurrentDate();
+        int today = date != null ? EpochDays.parse(date) : Integer.MIN_VALUE;
+        candidates.sort(Comparator.comparingInt(Entry::ticket));
+
+        List<Promotion> booked = new ArrayList<>();
+        List<Entry> waiting = new ArrayList<>();
+        int dropped = 0;
+        for (Entry entry : candidates) {
+            if (OccupancyIndex.epochDay(entry.from()) < today) {
+                dropped++;
+                continue;
+            }
+            ReservationResult result = store.tryReserve(entry.car(), entry.from(), entry.to());
+            if (result.isAccepted()) {
+                booked.add(new Promotion(entry, result.id()));
+            } else {
+                waiting.add(entry);
+            }
+        }
+        requeue(generation, waiting, booked.size(), dropped);
+        return booked;
+    }
+
+    private synchronized void requeue(long generation, List<Entry> waiting, int booked, int dropped) {
+        promoted += booked;
+        expired += dropped;
+        if (generation != this.generation) {
+            // cleared while they were being tried
+            return;
+        }
+        for (Entry entry : waiting) {
+            int type = carTypes.id(entry.car());
+            if (type >= roots.length) {
+                roots = Arrays.copyOf(roots, carTypes.size());
+            }
+            roots[type] = insert(roots[type], new Node(entry));
+            byTicket.put(entry.ticket(), entry);
+        }
+    }
+
+    /** Waiting requests, oldest first. */
+    public synchronized List<Entry> entries() {
+        List<Entry> all = new ArrayList<>(byTicket.values());
+        all.sort(Comparator.comparingInt(Entry::ticket));
+        return all;
+    }
+
+    /** Number of waiting requests. */
+    public synchronized int size() {
+        return byTicket.size();
+    }
+
+    /** Number of waiting requests per car type, for the types that have any. */
+    public synchronized Map<String, Integer> depthByType() {
+        Map<String, Integer> depth = new TreeMap<>();
+        for (Entry entry : byTicket.values()) {
+            depth.merge(entry.car(), 1, Integer::sum);
+        }
+        return depth;
+    }
+
+    public synchronized long getPromoted() {
+        return promoted;
+    }
+
+    public synchronized long getExpired() {
+        return expired;
+    }
+
+    public synchronized void clear() {
+        roots = new Node[0];
+        byTicket.clear();
+        generation++;
+    }
+
+    // ===== treap =====
+
+    private static boolean before(int from, int ticket, Node node) {
+        return from < node.from || (from == node.from && ticket < node.entry.ticket());
+    }
+
+    private static Node insert(Node root, Node node) {
+        if (root == null) {
+            return node;
+        }
+        if (before(node.from, node.entry.ticket(), root)) {
+            root.left = insert(root.left, node);
+            if (root.left.priority > root.priority) {
+                root = rotateRight(root);
+            }
+        } else {
+            root.right = insert(root.right, node);
+            if (root.right.priority > root.priority) {
+                root = rotateLeft(root);
+            }
+        }
+        update(root);
+        return root;
+    }
+
+    private static Node delete(Node root, int from, int ticket) {
+        if (root == null) {
+            return null;
+        }
+        if (root.entry.ticket() == ticket) {
+            return merge(root.left, root.right);
+        }
+        if (before(from, ticket, root)) {
+            root.left = delete(root.left, from, ticket);
+        } else {
+            root.right = delete(root.right, from, ticket);
+        }
+        update(root);
+        return root;
+    }
+
+    /** Joins two treaps where every key of {@code a} comes before every key of {@code b}. */
+    private static Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        int max = node.to;
+        if (node.left != null) {
+            max = Math.max(max, node.left.maxTo);
+        }
+        if (node.right != null) {
+            max = Math.max(max, node.right.maxTo);
+        }
+        node.maxTo = max;
+    }
+
+    /** Adds the entries of this subtree whose days overlap {@code [from, to]}. */
+    private static void overlapping(Node node, int from, int to, List<Entry> found) {
+        if (node == null || node.maxTo < from) {
+            return;
+        }
+        overlapping(node.left, from, to, found);
+        if (node.from > to) {
+            // everything to the right starts later still
+            return;
+        }
+        if (node.to >= from) {
+            found.add(node.entry);
+        }
+        overlapping(node.right, from, to, found);
+    }
+
+    /** Spreads ticket numbers into well-mixed heap priorities. */
+    private static int mix(int x) {
+        x ^= x >>> 16;
+        x *= 0x7feb352d;
+        x ^= x >>> 15;
+        x *= 0x846ca68b;
+        x ^= x >>> 16;
+        return x;
+    }
+}
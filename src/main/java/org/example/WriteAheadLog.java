@@ -0,0 +1,163 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of state changes for {@link InMemoryDatabase}.
+ * <p>
+ * Each record is {@code [int length][long sequence][payload][int crc32]}, where the CRC covers
+ * sequence and payload. Replay maps the file and stops at the first incomplete or corrupt
+ * record (a write torn by a crash), cutting the file back to the last good record.
+ * Records are flushed to the operating system on {@link #flush()}; with {@code fsync}
+ * enabled they are also forced to disk.
+ */
+class WriteAheadLog implements AutoCloseable {
+
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int TRAILER_BYTES = Integer.BYTES;
+
+    private final Path file;
+    private final boolean fsync;
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(64);
+    private final DataOutputStream record = new DataOutputStream(scratch);
+    private final CRC32 crc = new CRC32();
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long sequence;
+
+    WriteAheadLog(Path file, boolean fsync) {
+        this.file = file;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Feeds the payload of every intact record with a sequence number above
+     * {@code afterSequence} to {@code handler}, then opens the log for appending.
+     *
+     * @return number of records replayed
+     */
+    long replay(long afterSequence, Consumer<ByteBuffer> handler) throws IOException {
+        sequence = afterSequence;
+        long replayed = 0;
+        if (Files.exists(file)) {
+            long good = 0;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                if (size > 0) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    while (buffer.remaining() >= HEADER_BYTES) {
+                        int start = buffer.position();
+                        int length = buffer.getInt();
+                        if (length < Long.BYTES || buffer.remaining() < length + TRAILER_BYTES) {
+                            break;
+                        }
+                        crc.reset();
+                        crc.update(buffer.slice(start + Integer.BYTES, length));
+                        long seq = buffer.getLong();
+                        ByteBuffer payload = buffer.slice(buffer.position(), length - Long.BYTES);
+                        buffer.position(start + Integer.BYTES + length);
+                        if (buffer.getInt() != (int) crc.getValue()) {
+                            break;
+                        }
+                        if (seq > afterSequence) {
+                            handler.accept(payload);
+                            replayed++;
+                        }
+                        sequence = Math.max(sequence, seq);
+                        good = buffer.position();
+                    }
+                }
+                if (good < size) {
+                    channel.truncate(good);
+                }
+            }
+        }
+        openForAppend();
+        return replayed;
+    }
+
+    private void openForAppend() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        fileOut = new FileOutputStream(file.toFile(), true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+    }
+
+    /** Buffer that the next record's payload is written to before {@link #append()}. */
+    DataOutputStream record() {
+        scratch.reset();
+        return record;
+    }
+
+    /** Appends the payload written to {@link #record()} as one record. */
+    long append() throws IOException {
+        record.flush();
+        long seq = ++sequence;
+        byte[] payload = scratch.toByteArray();
+
+        crc.reset();
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            crc.update((int) (seq >>> (i * 8)));
+        }
+        crc.update(payload);
+
+        out.writeInt(Long.BYTES + payload.length);
+        out.writeLong(seq);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+        return seq;
+    }
+
+    void flush() throws IOException {
+        out.flush();
+        if (fsync) {
+            fileOut.getFD().sync();
+        }
+    }
+
+    /** Sequence number of the last record appended or replayed. */
+    long sequence() {
+        return sequence;
+    }
+
+    /** Empties the log once everything in it is covered by a snapshot. */
+    void truncate() throws IOException {
+        out.flush();
+        fileOut.getChannel().truncate(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            flush();
+            out.close();
+        }
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,278 @@
+package org.example;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Queues new reservations and stores them in groups on a writer thread, so many concurrent
+ * bookings share one transaction and one commit instead of paying for a commit each.
+ * <p>
+ * A group is written once {@code maxGroup} reservations are queued or {@code maxDelayMillis}
+ * after its first one arrived; with a delay of 0 the writer takes whatever queued up while the
+ * previous commit ran. Each group goes through {@link Database#addReservations}, so queued
+ * reservations are checked against the fleet like {@link #tryReserve}. When the queue is full,
+ * callers block until the writer catches up.
+ * <p>
+ * Every other call that reads or changes reservations first waits for the queued ones to be
+ * committed, so callers always see their own writes.
+ */
+public class WriteBehindDatabase extends ForwardingDatabase {
+
+    private record Pending(Reservation reservation, CompletableFuture<ReservationResult> result) {
+    }
+
+    private static final long IDLE_POLL_MILLIS = 50;
+
+    private final BlockingQueue<Pending> queue;
+    private final int maxGroup;
+    private final long maxDelayNanos;
+    private final Thread writer;
+    private final ReentrantLock enqueueLock = new ReentrantLock();
+    private volatile boolean closed;
+    /** Result of the newest queued reservation; groups commit in order, so it completes last. */
+    private volatile CompletableFuture<ReservationResult> last = CompletableFuture.completedFuture(null);
+
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    private final String gaugeName;
+    private final Supplier<?> gauge;
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    public WriteBehindDatabase(Database delegate, int capacity, int maxGroup, long maxDelayMillis) {
+        this(delegate, "#" + INSTANCES.incrementAndGet(), capacity, maxGroup, maxDelayMillis);
+    }
+
+    /** @param name tells this store's queue apart in the metrics, e.g. its location */
+    public WriteBehindDatabase(Database delegate, String name, int capacity, int maxGroup, long maxDelayMillis) {
+        super(delegate);
+        if (capacity < 1 || maxGroup < 1 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("capacity and maxGroup must be positive, maxDelayMillis not negative");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxGroup = maxGroup;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.writer = new Thread(this::run, "reservation-writer");
+        writer.setDaemon(true);
+        writer.start();
+        gaugeName = "Write-behind " + name;
+        gauge = this::getStats;
+        Metrics.global().registerGauge(gaugeName, gauge);
+    }
+
+    /**
+     * Queues a reservation, waiting for room if the queue is full. The future completes once
+     * the group holding the reservation is committed, with the same result as
+     * {@link #tryReserve}.
+     */
+    public CompletableFuture<ReservationResult> addReservationAsync(String car, Date from, Date to) {
+        Pending pending = new Pending(new Reservation(0, car, from, to), new CompletableFuture<>());
+        enqueueLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Database is closed");
+            }
+            queue.put(pending);
+            last = pending.result();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.result().complete(ReservationResult.failed());
+        } finally {
+            enqueueLock.unlock();
+        }
+        return pending.result();
+    }
+
+    /** Waits until every reservation queued so far is committed. */
+    public void flush() {
+        last.join();
+    }
+
+    /**
+     * Stores the reservation without checking the fleet, as every {@link Database} does, after
+     * the queued ones; only checked bookings go through the queue.
+     */
+    @Override
+    public void addReservation(String car, Date from, Date to) {
+        flush();
+        delegate.addReservation(car, from, to);
+    }
+
+    @Override
+    public ReservationResult tryReserve(String car, Date from, Date to) {
+        return addReservationAsync(car, from, to).join();
+    }
+
+    private void run() {
+        List<Pending> group = new ArrayList<>(maxGroup);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                queue.drainTo(group, maxGroup - group.size());
+                while (group.size() < maxGroup) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    queue.drainTo(group, maxGroup - group.size());
+                }
+            } catch (InterruptedException e) {
+                // only close() stops the writer; keep draining
+            }
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> group) {
+        List<Reservation> reservations = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            reservations.add(pending.reservation());
+        }
+        try {
+            List<ReservationResult> results = delegate.addReservations(reservations);
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).result().complete(results.get(i));
+            }
+            groups.incrementAndGet();
+            written.addAndGet(group.size());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            Metrics.global().error();
+            for (Pending pending : group) {
+                pending.result().complete(ReservationResult.failed());
+            }
+        }
+    }
+
+    /** Queue depth and how many reservations were committed in how many groups. */
+    public String getStats() {
+        long g = groups.get();
+        return String.format(Locale.ROOT, "queued=%d, groups=%d, reservations=%d, avg group=%.1f",
+                queue.size(), g, written.get(), g == 0 ? 0.0 : (double) written.get() / g);
+    }
+
+    // ===== calls that must see queued reservations =====
+
+    @Override
+    public int getAvailableCars(String carType, Date from, Date to) {
+        flush();
+        return delegate.getAvailableCars(carType, from, to);
+    }
+
+    @Override
+    public int getBookedCars(String carType, Date from, Date to) {
+        flush();
+        return delegate.getBookedCars(carType, from, to);
+    }
+
+    @Override
+    public int[][] getAvailabilityCalendar(Date from, Date to) {
+        flush();
+        return delegate.getAvailabilityCalendar(from, to);
+    }
+
+    @Override
+    public List<ReservationResult> addReservations(List<Reservation> reservations) {
+        flush();
+        return delegate.addReservations(reservations);
+    }
+
+    @Override
+    public Reservation getReservation(int id) {
+        flush();
+        return delegate.getReservation(id);
+    }
+
+    @Override
+    public boolean cancelReservation(int id) {
+        flush();
+        return delegate.cancelReservation(id);
+    }
+
+    @Override
+    public ReservationResult modifyReservation(int id, Date from, Date to) {
+        flush();
+        return delegate.modifyReservation(id, from, to);
+    }
+
+    @Override
+    public void setCurrentDate(String date) {
+        flush();
+        delegate.setCurrentDate(date);
+    }
+
+    @Override
+    public void setCarAmounts(String type, int amount) {
+        flush();
+        delegate.setCarAmounts(type, amount);
+    }
+
+    @Override
+    public List<String> listReservations() {
+        flush();
+        return delegate.listReservations();
+    }
+
+    @Override
+    public void forEachReservation(ReservationQuery query, Consumer<Reservation> action) {
+        flush();
+        delegate.forEachReservation(query, action);
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        flush();
+        return delegate.snapshot();
+    }
+
+    @Override
+    public void resetDatabase() {
+        flush();
+        delegate.resetDatabase();
+    }
+
+    @Override
+    public void replaceState(String currentDate, Map<String, Integer> cars, ReservationColumns reservations) {
+        flush();
+        delegate.replaceState(currentDate, cars, reservations);
+    }
+
+    /** Commits everything still queued, stops the writer and closes the wrapped database. */
+    @Override
+    public void close() {
+        enqueueLock.lock();
+        try {
+            closed = true;
+        } finally {
+            enqueueLock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Metrics.global().unregisterGauge(gaugeName, gauge);
+        delegate.close();
+    }
+}
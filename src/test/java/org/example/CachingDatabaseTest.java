@@ -0,0 +1,98 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CachingDatabaseTest {
+
+    private Database delegate;
+    private CachingDatabase db;
+
+    @BeforeEach
+    void setup() {
+        delegate = mock(Database.class);
+        db = new CachingDatabase(delegate);
+
+        when(delegate.getCurrentDate()).thenReturn("2025-01-01");
+        when(delegate.getCarAmounts()).thenReturn(Map.of("SEDAN", 5, "SUV", 3));
+    }
+
+    @Test
+    @DisplayName("Repeated reads hit the delegate once")
+    void testReadsAreCached() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("2025-01-01", db.getCurrentDate());
+            assertEquals(5, db.getCarAmounts().get("SEDAN"));
+        }
+
+        verify(delegate, times(1)).getCurrentDate();
+        verify(delegate, times(1)).getCarAmounts();
+    }
+
+    @Test
+    @DisplayName("Missing current date is cached too")
+    void testNullDateCached() {
+        when(delegate.getCurrentDate()).thenReturn(null);
+
+        assertNull(db.getCurrentDate());
+        assertNull(db.getCurrentDate());
+        verify(delegate, times(1)).getCurrentDate();
+    }
+
+    @Test
+    @DisplayName("Writes go to the delegate and invalidate the cached value")
+    void testWritesInvalidate() {
+        db.getCurrentDate();
+        db.getCarAmounts();
+
+        db.setCurrentDate("2025-02-01");
+        when(delegate.getCurrentDate()).thenReturn("2025-02-01");
+        assertEquals("2025-02-01", db.getCurrentDate());
+
+        db.setCarAmounts("SUV", 7);
+        when(delegate.getCarAmounts()).thenReturn(Map.of("SEDAN", 5, "SUV", 7));
+        assertEquals(7, db.getCarAmounts().get("SUV"));
+
+        verify(delegate).setCurrentDate("2025-02-01");
+        verify(delegate).setCarAmounts("SUV", 7);
+        verify(delegate, times(2)).getCurrentDate();
+        verify(delegate, times(2)).getCarAmounts();
+    }
+
+    @Test
+    @DisplayName("Reset drops all cached values")
+    void testResetInvalidates() {
+        db.getCurrentDate();
+        db.getCarAmounts();
+
+        db.resetDatabase();
+        db.getCurrentDate();
+        db.getCarAmounts();
+
+        verify(delegate).resetDatabase();
+        verify(delegate, times(2)).getCurrentDate();
+        verify(delegate, times(2)).getCarAmounts();
+    }
+
+    @Test
+    @DisplayName("Availability uses the cached fleet size and only asks the delegate for bookings")
+    void testAvailabilityUsesCachedAmounts() {
+        Date from = Date.valueOf("2025-01-01");
+        Date to = Date.valueOf("2025-01-05");
+        when(delegate.getBookedCars("SUV", from, to)).thenReturn(2);
+
+        assertEquals(1, db.getAvailableCars("SUV", from, to));
+        assertEquals(1, db.getAvailableCars("SUV", from, to));
+        assertEquals(0, db.getAvailableCars("VAN", from, to));
+
+        verify(delegate, never()).getAvailableCars(anyString(), any(Date.class), any(Date.class));
+        verify(delegate, times(1)).getCarAmounts();
+    }
+}
@@ -3,8 +3,13 @@ package org.example;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,6 +32,45 @@ public class CarRentalTest {
             "VAN", 5
         ));
         when(db.listReservations()).thenReturn(java.util.List.of());
+        when(db.tryReserve(anyString(), any(Date.class), any(Date.class)))
+                .thenReturn(ReservationResult.unavailable(0));
+        when(db.getAvailabilityCalendar(any(Date.class), any(Date.class)))
+                .thenReturn(new int[][]{{5}, {5}, {5}});
+        when(db.snapshot()).thenAnswer(invocation -> liveView(db));
+    }
+
+    /** A snapshot that reads straight through to the mock, so reads can still be verified on it. */
+    private static Snapshot liveView(Database store) {
+        return new Snapshot() {
+            @Override
+            public String getCurrentDate() {
+                return store.getCurrentDate();
+            }
+
+            @Override
+            public java.util.Map<String, Integer> getCarAmounts() {
+                return store.getCarAmounts();
+            }
+
+            @Override
+            public int[][] getAvailabilityCalendar(Date from, Date to) {
+                return store.getAvailabilityCalendar(from, to);
+            }
+
+            @Override
+            public void forEachReservation(ReservationQuery query, java.util.function.Consumer<Reservation> action) {
+                store.forEachReservation(query, action);
+            }
+
+            @Override
+            public ReservationColumns columns(Date from, Date to) {
+                return new ReservationColumns();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
     }
 
     // ===== Basic Command Tests =====
@@ -34,12 +78,12 @@ public class CarRentalTest {
     @Test
     @DisplayName("Reserve command calls DB with correct parameters")
     void testReserveCommandCallsDb() {
-        when(db.getAvailableCars(anyString(), any(Date.class), any(Date.class))).thenReturn(5);
+        when(db.tryReserve(anyString(), any(Date.class), any(Date.class)))
+                .thenReturn(ReservationResult.accepted(1, 4));
 
         rental.handleCommand("reserve sedan 2025-01-01 2025-01-05");
 
-        verify(db, times(1)).getAvailableCars("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05"));
-        verify(db, times(1)).addReservation("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05"));
+        verify(db, times(1)).tryReserve("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05"));
     }
 
     @Test
@@ -65,9 +109,118 @@ public class CarRentalTest {
 
         rental.handleCommand("info");
 
+        verify(db).snapshot();
         verify(db).getCurrentDate();
         verify(db).getCarAmounts();
-        verify(db).listReservations();
+        verify(db).forEachReservation(eq(ReservationQuery.UPCOMING), any());
+        verify(db, never()).listReservations();
+    }
+
+    @Test
+    @DisplayName("Availability prints one row per day from a single calendar query")
+    void testAvailabilityCommand() {
+        java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream();
+        rental = new CarRental(db, new java.io.PrintStream(buffer, true));
+        when(db.getAvailabilityCalendar(Date.valueOf("2025-03-01"), Date.valueOf("2025-03-02")))
+                .thenReturn(new int[][]{{5, 4}, {3, 2}, {1, 0}});
+
+        rental.handleCommand("availability 2025-03-01 2025-03-02");
+        rental.handleCommand("availability 2025-03-02 2025-03-01");
+        rental.handleCommand("availability 2025-01-01 2026-01-02");
+
+        verify(db, times(1)).getAvailabilityCalendar(any(Date.class), any(Date.class));
+        verify(db, never()).getAvailableCars(anyString(), any(Date.class), any(Date.class));
+        String output = buffer.toString();
+        assertTrue(output.contains("2025-03-02      4      2      0"), output);
+        assertTrue(output.contains("Start date must not be after end date"), output);
+        assertTrue(output.contains("Range must not exceed"), output);
+    }
+
+    @Test
+    @DisplayName("Commands with a location go to that location's store")
+    void testLocationCommands(@TempDir Path tempDir) {
+        DB north = mock(DB.class);
+        when(north.getCurrentDate()).thenReturn("2025-01-01");
+        when(north.tryReserve(anyString(), any(Date.class), any(Date.class)))
+                .thenReturn(ReservationResult.accepted(1, 2));
+        java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream();
+        Fleet fleet = new Fleet(db, name -> north, tempDir.resolve("locations.txt"));
+        rental = new CarRental(fleet, new java.io.PrintStream(buffer, true), new Metrics());
+
+        rental.handleCommand("location north 52.5 13.4");
+        rental.handleCommand("setcar north van 3");
+        rental.handleCommand("reserve north sedan 2025-01-02 2025-01-03");
+        rental.handleCommand("cancel north 1");
+        rental.handleCommand("reserve south sedan 2025-01-02 2025-01-03");
+        rental.handleCommand("reserve sedan 2025-01-02 2025-01-03");
+        int listed = buffer.size();
+        rental.handleCommand("location");
+
+        assertEquals(String.format("MAIN%nNORTH at 52.5000, 13.4000%n"), buffer.toString().substring(listed));
+        verify(north).setCarAmounts("VAN", 3);
+        verify(north).tryReserve("SEDAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-03"));
+        verify(north).cancelReservation(1);
+        verify(db, never()).setCarAmounts(anyString(), anyInt());
+        verify(db, times(1)).tryReserve(anyString(), any(Date.class), any(Date.class));
+        assertTrue(buffer.toString().contains("Unknown location south"), buffer.toString());
+    }
+
+    @Test
+    @DisplayName("Archive stats prints runs and rows per month")
+    void testArchiveStatsCommand() {
+        java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream();
+        rental = new CarRental(db, new java.io.PrintStream(buffer, true));
+        when(db.getArchiveStats()).thenReturn(new ArchiveStats(3, 120, 4, 9, false,
+                new java.util.TreeMap<>(java.util.Map.of("2025-01", 100L, "2025-02", 20L))));
+
+        rental.handleCommand("archive stats");
+        rental.handleCommand("archive");
+
+        verify(db, times(1)).getArchiveStats();
+        String output = buffer.toString();
+        assertTrue(output.contains("Rows moved: 120"), output);
+        assertTrue(output.contains("2025-01: 100"), output);
+        assertTrue(output.contains("Usage: archive stats"), output);
+    }
+
+    @Test
+    @DisplayName("Cancel and modify call the DB only for valid ids and dates")
+    void testCancelAndModify() {
+        when(db.cancelReservation(7)).thenReturn(true);
+        when(db.modifyReservation(anyInt(), any(Date.class), any(Date.class)))
+                .thenReturn(ReservationResult.accepted(7, 2));
+
+        rental.handleCommand("cancel 7");
+        rental.handleCommand("cancel x");
+        rental.handleCommand("modify 7 2025-02-01 2025-02-03");
+        rental.handleCommand("modify 7 2025-02-03 2025-02-01");
+        rental.handleCommand("modify 7 2024-12-01 2024-12-02");
+        rental.handleCommand("modify 7 2025-02-01");
+
+        verify(db).cancelReservation(7);
+        verify(db, times(1)).cancelReservation(anyInt());
+        verify(db).modifyReservation(7, Date.valueOf("2025-02-01"), Date.valueOf("2025-02-03"));
+        verify(db, times(1)).modifyReservation(anyInt(), any(Date.class), any(Date.class));
+    }
+
+    @Test
+    @DisplayName("Info passes paging and filter options to the DB")
+    void testInfoPagedAndFiltered() {
+        rental.handleCommand("info --page 3 --size 10 --car SUV --from 2025-02-01 --to 2025-02-28");
+
+        verify(db).forEachReservation(eq(new ReservationQuery("SUV",
+                Date.valueOf("2025-02-01"), Date.valueOf("2025-02-28"), 3, 10)), any());
+    }
+
+    @Test
+    @DisplayName("Info with invalid options does not query reservations")
+    void testInfoInvalidOptions() {
+        rental.handleCommand("info --page x");
+        rental.handleCommand("info --car truck");
+        rental.handleCommand("info --from 2025-02-01 --to 2025-01-01");
+        rental.handleCommand("info --size");
+
+        verify(db, never()).forEachReservation(any(), any());
     }
 
     @Test
@@ -100,8 +253,8 @@ public class CarRentalTest {
     @Test
     @DisplayName("Cannot book when no cars available")
     void testNoAvailableCars() {
-        when(db.getAvailableCars("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05")))
-                .thenReturn(0);
+        when(db.tryReserve("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05")))
+                .thenReturn(ReservationResult.unavailable(0));
 
         boolean result = rental.reserve(new String[]{"reserve", "sedan", "2025-01-01", "2025-01-05"});
 
@@ -112,13 +265,13 @@ public class CarRentalTest {
     @Test
     @DisplayName("Can book when cars available")
     void testCarsAvailable() {
-        when(db.getAvailableCars("SUV", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05")))
-                .thenReturn(3);
+        when(db.tryReserve("SUV", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05")))
+                .thenReturn(ReservationResult.accepted(7, 2));
 
         boolean result = rental.reserve(new String[]{"reserve", "suv", "2025-01-01", "2025-01-05"});
 
         assertTrue(result, "Reservation should succeed when cars available");
-        verify(db).addReservation("SUV", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05"));
+        verify(db).tryReserve("SUV", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05"));
     }
 
     @Test
@@ -127,8 +280,7 @@ public class CarRentalTest {
         boolean result = rental.reserve(new String[]{"reserve", "truck", "2025-01-01", "2025-01-05"});
 
         assertFalse(result, "Should reject invalid car type");
-        verify(db, never()).getAvailableCars(anyString(), any(Date.class), any(Date.class));
-        verify(db, never()).addReservation(anyString(), any(Date.class), any(Date.class));
+        verify(db, never()).tryReserve(anyString(), any(Date.class), any(Date.class));
     }
 
     @Test
@@ -137,7 +289,7 @@ public class CarRentalTest {
         boolean result = rental.reserve(new String[]{"reserve", "sedan", "2025-01-10", "2025-01-05"});
 
         assertFalse(result, "Should reject booking where end date is before start date");
-        verify(db, never()).getAvailableCars(anyString(), any(Date.class), any(Date.class));
+        verify(db, never()).tryReserve(anyString(), any(Date.class), any(Date.class));
     }
 
     @Test
@@ -146,7 +298,7 @@ public class CarRentalTest {
         boolean result = rental.reserve(new String[]{"reserve", "sedan", "2025/01/01", "2025/01/05"});
 
         assertFalse(result, "Should reject invalid date format");
-        verify(db, never()).getAvailableCars(anyString(), any(Date.class), any(Date.class));
+        verify(db, never()).tryReserve(anyString(), any(Date.class), any(Date.class));
     }
 
     @Test
@@ -155,7 +307,7 @@ public class CarRentalTest {
         boolean result = rental.reserve(new String[]{"reserve", "sedan"});
 
         assertFalse(result, "Should reject command with missing arguments");
-        verify(db, never()).getAvailableCars(anyString(), any(Date.class), any(Date.class));
+        verify(db, never()).tryReserve(anyString(), any(Date.class), any(Date.class));
     }
 
     // ===== Case Sensitivity Tests =====
@@ -163,13 +315,12 @@ public class CarRentalTest {
     @Test
     @DisplayName("Car types are case-insensitive")
     void testCaseInsensitiveCarTypes() {
-        when(db.getAvailableCars("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05")))
-                .thenReturn(5);
+        when(db.tryReserve("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05")))
+                .thenReturn(ReservationResult.accepted(1, 4));
 
         rental.reserve(new String[]{"reserve", "SeDaN", "2025-01-01", "2025-01-05"});
 
-        verify(db).getAvailableCars("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05"));
-        verify(db).addReservation("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05"));
+        verify(db).tryReserve("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05"));
     }
 
     // ===== SetCar Validation Tests =====
@@ -201,4 +352,57 @@ public class CarRentalTest {
         rental.handleCommand("setcar bicycle 10");
         verify(db, never()).setCarAmounts(anyString(), anyInt());
     }
-}
\ No newline at end of file
+
+    // ===== Metrics Tests =====
+
+    @Test
+    @DisplayName("Commands and rejections are counted")
+    void testMetricsRecorded() {
+        Metrics metrics = new Metrics();
+        rental = new CarRental(db, System.out, metrics);
+
+        rental.handleCommand("reserve sedan 2025-01-01 2025-01-05");
+        rental.handleCommand("reserve truck 2025-01-01 2025-01-05");
+        rental.handleCommand("reserve sedan 2024-12-01 2024-12-05");
+        rental.handleCommand("foobar");
+        rental.handleCommand("stats");
+
+        assertEquals(3, metrics.getCommandCounts().get("reserve"));
+        assertEquals(1, metrics.getCommandCounts().get("unknown"));
+        assertEquals(1, metrics.getCommandCounts().get("stats"));
+        assertEquals(1, metrics.getRejections().get("unavailable"));
+        assertEquals(1, metrics.getRejections().get("invalid_car_type"));
+        assertEquals(1, metrics.getRejections().get("start_in_past"));
+    }
+
+    // ===== Batch Import Tests =====
+
+    @Test
+    @DisplayName("Batch import sends only valid lines to the DB in one call")
+    void testReserveBatch(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("Feed.txt");
+        Files.write(file, List.of(
+                "# partner feed",
+                "sedan 2025-01-01 2025-01-05",
+                "reserve SUV 2025-01-02 2025-01-03",
+                "truck 2025-01-01 2025-01-05",
+                "",
+                "van 2024-12-01 2024-12-02"));
+        when(db.addReservations(anyList())).thenReturn(List.of(
+                ReservationResult.accepted(1, 4),
+                ReservationResult.unavailable(0)));
+
+        rental.handleCommand("reserve-batch " + file);
+
+        verify(db).addReservations(List.of(
+                new Reservation("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05")),
+                new Reservation("SUV", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-03"))));
+    }
+
+    @Test
+    @DisplayName("Batch import of a missing file does not call the DB")
+    void testReserveBatchMissingFile(@TempDir Path dir) {
+        rental.handleCommand("reserve-batch " + dir.resolve("missing.txt"));
+        verify(db, never()).addReservations(anyList());
+    }
+}
@@ -0,0 +1,56 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CarTypesTest {
+
+    @Test
+    @DisplayName("Types get dense ids in registration order and are found ignoring case")
+    void testDenseIds() {
+        CarTypes carTypes = new CarTypes("sedan", "suv", "van");
+        assertEquals(3, carTypes.register("Minibus"));
+        assertEquals(3, carTypes.register("MINIBUS"));
+
+        assertEquals(4, carTypes.size());
+        assertEquals("MINIBUS", carTypes.name(3));
+        assertEquals("minibus", carTypes.label(3));
+        assertEquals(3, carTypes.id("say minibus", 4, 11));
+        assertEquals("sedan, suv, van, minibus", carTypes.describe());
+        assertThrows(IllegalArgumentException.class, () -> carTypes.register("two words"));
+    }
+
+    @Test
+    @DisplayName("Lookups stay correct with hundreds of types")
+    void testManyTypes() {
+        CarTypes carTypes = new CarTypes();
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, carTypes.register("type-" + i));
+        }
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, carTypes.id(("TYPE-" + i).toLowerCase(Locale.ROOT)));
+        }
+        assertEquals(-1, carTypes.id("type-500"));
+    }
+
+    @Test
+    @DisplayName("Occupancy is tracked per type id")
+    void testOccupancyByTypeId() {
+        CarTypes carTypes = new CarTypes("sedan");
+        OccupancyIndex index = new OccupancyIndex(carTypes);
+        int limo = carTypes.register("limo");
+
+        index.add(limo, 10, 12, 2);
+        index.add(0, 11, 11, 1);
+
+        assertEquals(2, index.peak(limo, 0, 100));
+        assertEquals(1, index.peak(0, 0, 100));
+        int[][] calendar = index.calendar(java.util.Map.of("LIMO", 3, "SEDAN", 1), 10, 11);
+        assertArrayEquals(new int[]{1, 0}, calendar[0]);
+        assertArrayEquals(new int[]{1, 1}, calendar[limo]);
+    }
+}
@@ -0,0 +1,104 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandServerTest {
+
+    private DB db;
+    private CommandServer server;
+
+    @BeforeEach
+    void setup() throws IOException {
+        db = new DB("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", 4);
+        server = new CommandServer(db, 0, InetAddress.getLoopbackAddress(), new Metrics());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        db.close();
+    }
+
+    /** Reads the output of one command, up to the end-of-response line. */
+    private static List<String> readResponse(BufferedReader in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(CommandServer.END_OF_RESPONSE)) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    @Test
+    @DisplayName("Pipelined commands get one response each, in order")
+    void testPipelinedCommands() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), false, StandardCharsets.UTF_8);
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+
+            // everything is sent before any response is read
+            out.print("setcar van 1\nreserve van 2025-01-02 2025-01-03\n\nreserve van 2025-01-03 2025-01-04\nstats\n");
+            out.flush();
+
+            assertEquals(List.of("Set VAN amount to 1"), readResponse(in));
+            assertEquals(List.of("Reservation saved! (0 van(s) still available)"), readResponse(in));
+            assertEquals(List.of(), readResponse(in));
+            assertEquals(List.of("No van available for the selected dates; waitlisted as W1"), readResponse(in));
+
+            List<String> stats = readResponse(in);
+            assertTrue(stats.stream().anyMatch(l -> l.trim().startsWith("reserve ") && l.contains("count=2")), stats.toString());
+            assertTrue(stats.stream().anyMatch(l -> l.trim().startsWith("setcar ") && l.contains("count=1")), stats.toString());
+            assertTrue(stats.stream().anyMatch(l -> l.trim().startsWith("unavailable") && l.endsWith(" 1")), stats.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Several clients are served at the same time against one database")
+    void testConcurrentClients() throws Exception {
+        db.setCarAmounts("SEDAN", 3);
+        int clients = 6;
+        List<Thread> threads = new ArrayList<>();
+        List<String> replies = Collections.synchronizedList(new ArrayList<>());
+
+        for (int i = 0; i < clients; i++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                     PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+                     BufferedReader in = new BufferedReader(
+                             new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                    out.println("reserve sedan 2025-03-01 2025-03-02");
+                    replies.addAll(readResponse(in));
+                    out.println("stop");
+                } catch (IOException e) {
+                    replies.add("IO error: " + e.getMessage());
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(clients, replies.size(), replies.toString());
+        assertEquals(3, replies.stream().filter(r -> r.startsWith("Reservation saved!")).count());
+        assertEquals(3, replies.stream().filter(r -> r.startsWith("No sedan available")).count());
+    }
+}
@@ -0,0 +1,42 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandTokenizerTest {
+
+    @Test
+    @DisplayName("Tokens are split on runs of whitespace")
+    void testTokens() {
+        CommandTokenizer tokens = new CommandTokenizer().reset("  Reserve\tSUV   2025-01-01 2025-01-02 ");
+
+        assertEquals(4, tokens.count());
+        assertTrue(tokens.is(0, "reserve"));
+        assertFalse(tokens.is(0, "reserve-batch"));
+        assertEquals("SUV", tokens.token(1));
+        assertArrayEquals(new String[]{"reserve", "suv", "2025-01-01", "2025-01-02"}, tokens.toArray(true));
+    }
+
+    @Test
+    @DisplayName("Reusing the tokenizer forgets the previous line and grows for long lines")
+    void testReuse() {
+        CommandTokenizer tokens = new CommandTokenizer();
+        assertEquals(12, tokens.reset("a b c d e f g h i j k l").count());
+        assertEquals("l", tokens.token(11));
+        assertEquals(0, tokens.reset("   ").count());
+        assertEquals(1, tokens.reset("help").count());
+    }
+
+    @Test
+    @DisplayName("Car types are matched in place ignoring case")
+    void testCarTypeParse() {
+        CarTypes carTypes = new CarTypes("sedan", "suv", "van");
+        String line = "reserve SeDaN x";
+        assertEquals(0, carTypes.id(line, 8, 13));
+        assertEquals(1, carTypes.id("suv"));
+        assertEquals(-1, carTypes.id("truck"));
+        assertEquals(-1, carTypes.id("suvs"));
+    }
+}
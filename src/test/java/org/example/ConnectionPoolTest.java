@@ -0,0 +1,88 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setup() {
+        pool = new ConnectionPool("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1", "sa", "", 2,
+                Duration.ofMinutes(1), Duration.ofMillis(100));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("Released connection is reused instead of opening a new one")
+    void testConnectionReused() throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            assertNotNull(conn.connection());
+        }
+        try (PooledConnection conn = pool.borrow()) {
+            assertNotNull(conn.connection());
+        }
+
+        ConnectionPool.Stats stats = pool.getStats();
+        assertEquals(1, stats.created());
+        assertEquals(2, stats.borrows());
+        assertEquals(0, stats.active());
+        assertEquals(1, stats.idle());
+    }
+
+    @Test
+    @DisplayName("Borrow times out when the pool is exhausted")
+    void testWaitTimeout() throws SQLException {
+        try (PooledConnection a = pool.borrow(); PooledConnection b = pool.borrow()) {
+            assertEquals(2, pool.getStats().active());
+            assertThrows(SQLTransientConnectionException.class, pool::borrow);
+        }
+
+        ConnectionPool.Stats stats = pool.getStats();
+        assertEquals(1, stats.waits());
+        assertEquals(1, stats.timeouts());
+        assertEquals(2, stats.idle());
+    }
+
+    @Test
+    @DisplayName("Prepared statements are cached per connection until invalidated")
+    void testStatementCache() throws SQLException {
+        PreparedStatement first;
+        try (PooledConnection conn = pool.borrow()) {
+            first = conn.prepare("SELECT 1");
+            assertSame(first, conn.prepare("SELECT 1"));
+        }
+
+        pool.invalidateStatements();
+
+        try (PooledConnection conn = pool.borrow()) {
+            assertNotSame(first, conn.prepare("SELECT 1"));
+            assertTrue(first.isClosed());
+        }
+    }
+
+    @Test
+    @DisplayName("Open transactions are rolled back when a connection is returned")
+    void testTransactionResetOnRelease() throws SQLException {
+        try (PooledConnection conn = pool.borrow()) {
+            conn.connection().setAutoCommit(false);
+        }
+        try (PooledConnection conn = pool.borrow()) {
+            assertTrue(conn.connection().getAutoCommit());
+        }
+    }
+}
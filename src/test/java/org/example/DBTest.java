@@ -0,0 +1,198 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DBTest extends DatabaseContractTest {
+
+    private String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    @Override
+    protected Database open() {
+        return new DB(url, 8);
+    }
+
+    @Override
+    protected void awaitArchival() {
+        ((DB) db).awaitArchival();
+    }
+
+    // ===== Schema Tests =====
+
+    private String queryPlan(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN " + sql)) {
+            rs.next();
+            return rs.getString(1).toUpperCase();
+        }
+    }
+
+    @Test
+    @DisplayName("Listing future reservations uses the to_date index")
+    void testListingUsesDateIndex() throws SQLException {
+        String plan = queryPlan("SELECT id, car, from_date, to_date FROM reservations "
+                + "WHERE to_date >= DATE '2025-01-01' ORDER BY from_date");
+        assertTrue(plan.contains("IDX_RESERVATIONS_TO_DATE"), plan);
+    }
+
+    @Test
+    @DisplayName("Filtering by car type uses the composite car/date index")
+    void testCarFilterUsesCompositeIndex() throws SQLException {
+        String plan = queryPlan("SELECT id, car, from_date, to_date FROM reservations "
+                + "WHERE to_date >= DATE '2025-01-01' AND car = 'SUV' AND from_date <= DATE '2025-01-31' "
+                + "ORDER BY from_date, id");
+        assertTrue(plan.contains("IDX_RESERVATIONS_CAR_DATES"), plan);
+    }
+
+    @Test
+    @DisplayName("Reservations for unknown car types are rejected by the foreign key")
+    void testCarForeignKey() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            assertThrows(SQLException.class, () -> stmt.execute(
+                    "INSERT INTO reservations (car, from_date, to_date) VALUES ('TRUCK', DATE '2025-01-01', DATE '2025-01-02')"));
+        }
+    }
+
+    @Test
+    @DisplayName("An unversioned database is migrated to the latest schema on startup")
+    void testLegacySchemaMigrated() throws SQLException {
+        db.close();
+        String legacyUrl = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (Connection conn = DriverManager.getConnection(legacyUrl, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE settings (setting_key VARCHAR(50) PRIMARY KEY, setting_value VARCHAR(255))");
+            stmt.execute("CREATE TABLE cars (car_type VARCHAR(255) PRIMARY KEY, amount INT)");
+            stmt.execute("CREATE TABLE reservations (id INT PRIMARY KEY AUTO_INCREMENT, car VARCHAR(255), from_date DATE, to_date DATE)");
+            stmt.execute("INSERT INTO settings VALUES ('current_date', '2025-01-01')");
+            stmt.execute("INSERT INTO cars VALUES ('SEDAN', 2)");
+            stmt.execute("INSERT INTO reservations (car, from_date, to_date) VALUES ('SEDAN', DATE '2025-01-02', DATE '2025-01-03')");
+        }
+
+        url = legacyUrl;
+        db = open();
+
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            assertTrue(rs.next());
+            assertEquals(SchemaMigrations.LATEST_VERSION, rs.getInt(1));
+        }
+        assertEquals(1, db.getAvailableCars("SEDAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-02")));
+        assertTrue(queryPlan("SELECT car FROM reservations WHERE car = 'SEDAN' AND from_date <= DATE '2025-01-05'")
+                .contains("IDX_RESERVATIONS_CAR_DATES"));
+    }
+
+    @Test
+    @DisplayName("A database whose schema is current is opened without migrating or seeding")
+    void testCurrentSchemaSkipsBootstrap() throws SQLException {
+        db.close();
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM reservations");
+            stmt.execute("DELETE FROM cars");
+        }
+
+        db = open();
+
+        assertTrue(db.getCarAmounts().isEmpty());
+        assertEquals("2025-01-01", db.getCurrentDate());
+    }
+
+    @Test
+    @DisplayName("With background warm-up, calls wait for existing reservations to be loaded")
+    void testBackgroundWarmUp() {
+        db.setCarAmounts("SEDAN", 2);
+        Date day = Date.valueOf("2025-06-01");
+        for (int i = 0; i < 200; i++) {
+            db.addReservation("SEDAN", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-02"));
+        }
+        db.addReservation("SEDAN", day, day);
+        db.close();
+
+        db = new DB(url, 4, Duration.ofMinutes(5), Duration.ofSeconds(5), true);
+
+        assertTrue(db.tryReserve("SEDAN", day, day).isAccepted());
+        assertFalse(db.tryReserve("SEDAN", day, day).isAccepted());
+        assertEquals(200, db.getBookedCars("SEDAN", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-02")));
+    }
+
+    @Test
+    @DisplayName("Every open database reports its own connection pool until it is closed")
+    void testPoolGaugePerDatabase() {
+        String otherUrl = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        DB other = new DB(otherUrl, 2);
+        String report = Metrics.global().getReport();
+        assertTrue(report.contains("Connection pool " + url + ": "), report);
+        assertTrue(report.contains("Connection pool " + otherUrl + ": "), report);
+
+        other.close();
+        assertFalse(Metrics.global().getReport().contains(otherUrl));
+    }
+
+    @Test
+    @DisplayName("Reservations without a booking day keep it unknown in analytics and exports")
+    void testMissingBookingDay(@TempDir Path dir) throws SQLException {
+        db.setCurrentDate("2025-01-01");
+        db.setCarAmounts("SEDAN", 2);
+        db.addReservation("SEDAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-03"));
+        db.addReservation("SEDAN", Date.valueOf("2025-01-05"), Date.valueOf("2025-01-06"));
+        // as left behind by schemas before booking days were recorded
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE reservations SET booked_on = NULL WHERE id = 1");
+        }
+        db.close();
+        db = open();
+
+        Date from = Date.valueOf("2025-01-01");
+        Date to = Date.valueOf("2025-01-31");
+        assertEquals(List.of(EpochDays.INVALID, (int) LocalDate.parse("2025-01-01").toEpochDay()), bookedDays(db, from, to));
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        CarRental rental = new CarRental(new Fleet(db), new PrintStream(buffer, true), new Metrics());
+        rental.handleCommand("analytics 2025-01-01 2025-01-31");
+        String file = dir.resolve("state.bin").toString();
+        rental.handleCommand("export " + file);
+        String output = buffer.toString();
+        assertTrue(output.contains("Lead time known for 1 of 2 bookings"), output);
+        assertTrue(output.contains(" 4.0 d"), output);
+
+        try (DB target = new DB("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", 4)) {
+            new CarRental(new Fleet(target), new PrintStream(buffer, true), new Metrics()).handleCommand("import " + file);
+            assertEquals(bookedDays(db, from, to), bookedDays(target, from, to));
+        }
+    }
+
+    private static List<Integer> bookedDays(Database store, Date from, Date to) {
+        List<Integer> days = new ArrayList<>();
+        try (Snapshot view = store.snapshot()) {
+            ReservationColumns rows = view.columns(from, to);
+            for (int row = 0; row < rows.size(); row++) {
+                days.add(rows.bookedDay(row));
+            }
+        }
+        days.sort(null);
+        return days;
+    }
+}
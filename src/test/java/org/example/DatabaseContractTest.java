@@ -0,0 +1,499 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behaviour every {@link Database} store has to share. Subclasses supply the store and add
+ * their storage-specific tests.
+ */
+abstract class DatabaseContractTest {
+
+    protected Database db;
+
+    /** Opens the store on the test's storage, which persists across calls within one test. */
+    protected abstract Database open();
+
+    @BeforeEach
+    void setup() {
+        db = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    /** Waits until archival triggered by earlier date changes on {@code db} has finished. */
+    protected abstract void awaitArchival();
+
+    /** Closes the current instance and opens a new one on the same storage. */
+    protected Database reopen() {
+        db.close();
+        return open();
+    }
+
+    @Test
+    @DisplayName("Fresh database is seeded with defaults")
+    void testDefaults() {
+        assertEquals("2025-01-01", db.getCurrentDate());
+        assertEquals(5, db.getCarAmounts().get("SEDAN"));
+        assertEquals(5, db.getAvailableCars("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05")));
+    }
+
+    @Test
+    @DisplayName("Availability is reduced by peak simultaneous use")
+    void testAvailabilityUsesPeak() {
+        db.addReservation("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-03"));
+        db.addReservation("SEDAN", Date.valueOf("2025-01-05"), Date.valueOf("2025-01-07"));
+        db.addReservation("SEDAN", Date.valueOf("2025-01-06"), Date.valueOf("2025-01-06"));
+
+        assertEquals(3, db.getAvailableCars("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-10")));
+        assertEquals(5, db.getAvailableCars("SEDAN", Date.valueOf("2025-01-04"), Date.valueOf("2025-01-04")));
+        assertEquals(5, db.getAvailableCars("SUV", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-10")));
+    }
+
+    @Test
+    @DisplayName("Availability calendar gives free cars per type and day")
+    void testAvailabilityCalendar() {
+        db.setCarAmounts("VAN", 2);
+        db.addReservation("VAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-04"));
+        db.addReservation("VAN", Date.valueOf("2025-01-04"), Date.valueOf("2025-01-05"));
+        db.addReservation("SEDAN", Date.valueOf("2024-12-30"), Date.valueOf("2025-01-01"));
+
+        int[][] calendar = db.getAvailabilityCalendar(Date.valueOf("2025-01-01"), Date.valueOf("2025-01-06"));
+
+        assertArrayEquals(new int[]{2, 1, 1, 0, 1, 2}, calendar[CarTypes.global().id("VAN")]);
+        assertArrayEquals(new int[]{4, 5, 5, 5, 5, 5}, calendar[CarTypes.global().id("SEDAN")]);
+        assertArrayEquals(new int[]{5, 5, 5, 5, 5, 5}, calendar[CarTypes.global().id("SUV")]);
+        for (int day = 0; day < 6; day++) {
+            Date date = Date.valueOf(LocalDate.of(2025, 1, 1).plusDays(day));
+            assertEquals(db.getAvailableCars("VAN", date, date), calendar[CarTypes.global().id("VAN")][day]);
+        }
+    }
+
+    @Test
+    @DisplayName("Cancelling frees the reservation's days and survives a restart")
+    void testCancelReservation() {
+        db.setCarAmounts("SUV", 1);
+        ReservationResult first = db.tryReserve("SUV", Date.valueOf("2025-03-01"), Date.valueOf("2025-03-05"));
+        assertFalse(db.tryReserve("SUV", Date.valueOf("2025-03-03"), Date.valueOf("2025-03-03")).isAccepted());
+
+        assertTrue(db.cancelReservation(first.id()));
+        assertFalse(db.cancelReservation(first.id()));
+        assertFalse(db.cancelReservation(9_999));
+
+        assertEquals(1, db.getAvailableCars("SUV", Date.valueOf("2025-03-01"), Date.valueOf("2025-03-05")));
+        ReservationResult second = db.tryReserve("SUV", Date.valueOf("2025-03-03"), Date.valueOf("2025-03-03"));
+        assertTrue(second.isAccepted());
+
+        db = reopen();
+        assertEquals(List.of(second.id()), ids(db));
+        assertEquals(1, db.getAvailableCars("SUV", Date.valueOf("2025-03-01"), Date.valueOf("2025-03-02")));
+        assertEquals(0, db.getAvailableCars("SUV", Date.valueOf("2025-03-03"), Date.valueOf("2025-03-03")));
+    }
+
+    @Test
+    @DisplayName("Modifying checks the new dates without counting the reservation itself")
+    void testModifyReservation() {
+        db.setCarAmounts("VAN", 1);
+        int id = db.tryReserve("VAN", Date.valueOf("2025-03-01"), Date.valueOf("2025-03-05")).id();
+        int other = db.tryReserve("VAN", Date.valueOf("2025-03-10"), Date.valueOf("2025-03-12")).id();
+
+        // overlaps only its own old days
+        ReservationResult moved = db.modifyReservation(id, Date.valueOf("2025-03-03"), Date.valueOf("2025-03-08"));
+        assertTrue(moved.isAccepted());
+        assertEquals(id, moved.id());
+        assertEquals(0, moved.available());
+        assertEquals(1, db.getAvailableCars("VAN", Date.valueOf("2025-03-01"), Date.valueOf("2025-03-02")));
+        assertEquals(0, db.getAvailableCars("VAN", Date.valueOf("2025-03-08"), Date.valueOf("2025-03-08")));
+
+        ReservationResult clash = db.modifyReservation(id, Date.valueOf("2025-03-07"), Date.valueOf("2025-03-10"));
+        assertEquals(ReservationResult.Status.UNAVAILABLE, clash.status());
+        assertEquals(0, db.getAvailableCars("VAN", Date.valueOf("2025-03-03"), Date.valueOf("2025-03-03")));
+        assertEquals(ReservationResult.Status.NOT_FOUND,
+                db.modifyReservation(9_999, Date.valueOf("2025-03-07"), Date.valueOf("2025-03-10")).status());
+        assertEquals(ReservationResult.Status.FAILED,
+                db.modifyReservation(id, Date.valueOf("2025-03-09"), Date.valueOf("2025-03-04")).status());
+        assertEquals(0, db.getAvailableCars("VAN", Date.valueOf("2025-03-03"), Date.valueOf("2025-03-03")));
+
+        db = reopen();
+        List<Reservation> stored = new ArrayList<>();
+        db.forEachReservation(ReservationQuery.UPCOMING, stored::add);
+        assertEquals(List.of(new Reservation(id, "VAN", Date.valueOf("2025-03-03"), Date.valueOf("2025-03-08")),
+                new Reservation(other, "VAN", Date.valueOf("2025-03-10"), Date.valueOf("2025-03-12"))), stored);
+        assertEquals(1, db.getAvailableCars("VAN", Date.valueOf("2025-03-09"), Date.valueOf("2025-03-09")));
+    }
+
+    @Test
+    @DisplayName("Concurrent modifications and reservations never overbook")
+    void testConcurrentModifyDoesNotOverbook() throws Exception {
+        db.setCarAmounts("SEDAN", 3);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(db.tryReserve("SEDAN", Date.valueOf("2025-06-01"), Date.valueOf("2025-06-02")).id());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> done = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int n = i;
+            done.add(executor.submit(() -> {
+                start.await();
+                if (n < 3) {
+                    db.modifyReservation(ids.get(n), Date.valueOf("2025-06-10"), Date.valueOf("2025-06-11"));
+                } else {
+                    db.tryReserve("SEDAN", Date.valueOf("2025-06-10"), Date.valueOf("2025-06-11"));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : done) {
+            f.get();
+        }
+        executor.shutdown();
+
+        int[] onNewDates = {0};
+        db.forEachReservation(ReservationQuery.UPCOMING, r -> {
+            if (r.from().equals(Date.valueOf("2025-06-10"))) {
+                onNewDates[0]++;
+            }
+        });
+        assertEquals(3, onNewDates[0]);
+        assertEquals(0, db.getAvailableCars("SEDAN", Date.valueOf("2025-06-10"), Date.valueOf("2025-06-11")));
+    }
+
+    private static List<Integer> ids(Database db) {
+        List<Integer> ids = new ArrayList<>();
+        db.forEachReservation(ReservationQuery.UPCOMING, r -> ids.add(r.id()));
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Occupancy is rebuilt from stored reservations on startup")
+    void testOccupancyRebuiltOnStartup() {
+        db.addReservation("VAN", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-10"));
+        db.addReservation("VAN", Date.valueOf("2025-02-05"), Date.valueOf("2025-02-06"));
+        db = reopen();
+        assertEquals(3, db.getAvailableCars("VAN", Date.valueOf("2025-02-05"), Date.valueOf("2025-02-05")));
+    }
+
+    @Test
+    @DisplayName("Reset clears reservations and occupancy")
+    void testResetClearsOccupancy() {
+        db.addReservation("SUV", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-03"));
+        db.resetDatabase();
+
+        assertEquals(5, db.getAvailableCars("SUV", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-03")));
+        assertTrue(db.listReservations().isEmpty());
+    }
+
+    @Test
+    @DisplayName("tryReserve returns the new id and rejects once the fleet is used up")
+    void testTryReserve() {
+        db.setCarAmounts("VAN", 1);
+
+        ReservationResult first = db.tryReserve("VAN", Date.valueOf("2025-03-01"), Date.valueOf("2025-03-05"));
+        ReservationResult second = db.tryReserve("VAN", Date.valueOf("2025-03-05"), Date.valueOf("2025-03-06"));
+        ReservationResult third = db.tryReserve("VAN", Date.valueOf("2025-03-06"), Date.valueOf("2025-03-07"));
+
+        assertTrue(first.isAccepted());
+        assertTrue(first.id() > 0);
+        assertEquals(0, first.available());
+        assertEquals(ReservationResult.Status.UNAVAILABLE, second.status());
+        assertTrue(third.isAccepted());
+        assertEquals(2, db.listReservations().size());
+    }
+
+    @Test
+    @DisplayName("Concurrent tryReserve calls never overbook")
+    void testConcurrentTryReserveDoesNotOverbook() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ReservationResult>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String car = i % 2 == 0 ? "SEDAN" : "SUV";
+            results.add(executor.submit(() -> {
+                start.await();
+                return db.tryReserve(car, Date.valueOf("2025-04-01"), Date.valueOf("2025-04-03"));
+            }));
+        }
+        start.countDown();
+
+        int accepted = 0;
+        for (Future<ReservationResult> result : results) {
+            if (result.get().isAccepted()) {
+                accepted++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(10, accepted);
+        assertEquals(0, db.getAvailableCars("SEDAN", Date.valueOf("2025-04-02"), Date.valueOf("2025-04-02")));
+        assertEquals(0, db.getAvailableCars("SUV", Date.valueOf("2025-04-02"), Date.valueOf("2025-04-02")));
+    }
+
+    @Test
+    @DisplayName("Batch insert validates against the fleet including earlier batch entries")
+    void testAddReservationsBatch() {
+        db.setCarAmounts("SUV", 2);
+        db.addReservation("SUV", Date.valueOf("2025-05-01"), Date.valueOf("2025-05-02"));
+
+        List<ReservationResult> results = db.addReservations(List.of(
+                new Reservation("SUV", Date.valueOf("2025-05-01"), Date.valueOf("2025-05-03")),
+                new Reservation("SUV", Date.valueOf("2025-05-02"), Date.valueOf("2025-05-02")),
+                new Reservation("SUV", Date.valueOf("2025-05-03"), Date.valueOf("2025-05-04")),
+                new Reservation("VAN", Date.valueOf("2025-05-01"), Date.valueOf("2025-05-01"))));
+
+        assertTrue(results.get(0).isAccepted());
+        assertEquals(ReservationResult.Status.UNAVAILABLE, results.get(1).status());
+        assertTrue(results.get(2).isAccepted());
+        assertTrue(results.get(3).isAccepted());
+        assertTrue(results.get(0).id() < results.get(2).id());
+        assertTrue(results.get(2).id() < results.get(3).id());
+        assertEquals(4, db.listReservations().size());
+        assertEquals(0, db.getAvailableCars("SUV", Date.valueOf("2025-05-03"), Date.valueOf("2025-05-03")));
+    }
+
+    @Test
+    @DisplayName("Batch insert accepts car types in any case and stores the canonical name")
+    void testAddReservationsNormalisesCarTypes() {
+        db.setCarAmounts("VAN", 1);
+
+        List<ReservationResult> results = db.addReservations(List.of(
+                new Reservation("van", Date.valueOf("2025-05-01"), Date.valueOf("2025-05-02")),
+                new Reservation("Van", Date.valueOf("2025-05-02"), Date.valueOf("2025-05-02")),
+                new Reservation("truck", Date.valueOf("2025-05-01"), Date.valueOf("2025-05-01"))));
+
+        assertTrue(results.get(0).isAccepted());
+        assertEquals(ReservationResult.Status.UNAVAILABLE, results.get(1).status());
+        assertEquals(ReservationResult.Status.UNAVAILABLE, results.get(2).status());
+        List<Reservation> stored = new ArrayList<>();
+        db.forEachReservation(ReservationQuery.UPCOMING, stored::add);
+        assertEquals(List.of(new Reservation(results.get(0).id(), "VAN", Date.valueOf("2025-05-01"), Date.valueOf("2025-05-02"))),
+                stored);
+        assertEquals(0, db.getAvailableCars("VAN", Date.valueOf("2025-05-02"), Date.valueOf("2025-05-02")));
+    }
+
+    @Test
+    @DisplayName("Reservations are streamed in date order with filters and paging")
+    void testForEachReservationFiltersAndPages() {
+        db.setCurrentDate("2025-01-10");
+        db.addReservation("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-05"));
+        db.addReservation("SUV", Date.valueOf("2025-01-20"), Date.valueOf("2025-01-21"));
+        db.addReservation("SEDAN", Date.valueOf("2025-01-15"), Date.valueOf("2025-01-16"));
+        db.addReservation("SEDAN", Date.valueOf("2025-02-15"), Date.valueOf("2025-02-16"));
+
+        List<Reservation> upcoming = new ArrayList<>();
+        db.forEachReservation(ReservationQuery.UPCOMING, upcoming::add);
+        assertEquals(List.of("2025-01-15", "2025-01-20", "2025-02-15"),
+                upcoming.stream().map(r -> r.from().toString()).toList());
+
+        List<Reservation> sedansInJanuary = new ArrayList<>();
+        db.forEachReservation(new ReservationQuery("sedan", Date.valueOf("2025-01-01"),
+                Date.valueOf("2025-01-31"), 0, 0), sedansInJanuary::add);
+        assertEquals(2, sedansInJanuary.size());
+        assertTrue(sedansInJanuary.stream().allMatch(r -> r.car().equals("SEDAN")));
+
+        List<Reservation> secondPage = new ArrayList<>();
+        db.forEachReservation(new ReservationQuery(null, null, null, 2, 2), secondPage::add);
+        assertEquals(1, secondPage.size());
+        assertEquals(Date.valueOf("2025-02-15"), secondPage.get(0).from());
+
+        assertEquals(upcoming.stream().map(Reservation::describe).toList(), db.listReservations());
+    }
+
+    @Test
+    @DisplayName("Moving the date archives ended reservations but keeps them in history")
+    void testArchiveExpiredReservations() {
+        int january = db.tryReserve("SEDAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-05")).id();
+        db.addReservation("SUV", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-03"));
+        db.addReservation("SEDAN", Date.valueOf("2025-03-01"), Date.valueOf("2025-03-02"));
+
+        db.setCurrentDate("2025-02-10");
+        awaitArchival();
+
+        ArchiveStats stats = db.getArchiveStats();
+        assertEquals(2, stats.rowsMoved());
+        assertEquals(Map.of("2025-01", 1L, "2025-02", 1L), stats.rowsByMonth());
+        assertEquals(List.of("2025-03-01"), upcomingStarts());
+        assertFalse(db.cancelReservation(january));
+
+        db = reopen();
+        List<Reservation> history = new ArrayList<>();
+        db.forEachReservation(new ReservationQuery(null, Date.valueOf("2025-01-01"), null, 0, 0), history::add);
+        assertEquals(List.of("2025-01-02", "2025-02-01", "2025-03-01"),
+                history.stream().map(r -> r.from().toString()).toList());
+        assertEquals(january, history.get(0).id());
+
+        List<Reservation> suvs = new ArrayList<>();
+        db.forEachReservation(new ReservationQuery("suv", Date.valueOf("2025-01-01"), null, 0, 0), suvs::add);
+        assertEquals(1, suvs.size());
+        assertEquals(List.of("2025-03-01"), upcomingStarts());
+        assertEquals(2, db.getArchiveStats().rowsByMonth().size());
+
+        db.resetDatabase();
+        assertTrue(db.getArchiveStats().rowsByMonth().isEmpty());
+    }
+
+    @Test
+    @DisplayName("A snapshot keeps showing the moment it was taken")
+    void testSnapshotIsPointInTime() {
+        db.setCarAmounts("VAN", 2);
+        int first = db.tryReserve("VAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-04")).id();
+        db.addReservation("SEDAN", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-02"));
+        Date from = Date.valueOf("2025-01-01");
+        Date to = Date.valueOf("2025-01-05");
+        int[][] calendar = db.getAvailabilityCalendar(from, to);
+
+        try (Snapshot view = db.snapshot()) {
+            db.addReservation("VAN", Date.valueOf("2025-01-03"), Date.valueOf("2025-01-03"));
+            db.cancelReservation(first);
+            db.setCarAmounts("VAN", 4);
+            db.setCurrentDate("2025-01-20");
+            awaitArchival();
+
+            assertEquals("2025-01-01", view.getCurrentDate());
+            assertEquals(2, view.getCarAmounts().get("VAN"));
+            assertArrayEquals(calendar[CarTypes.global().id("VAN")], view.getAvailabilityCalendar(from, to)[CarTypes.global().id("VAN")]);
+            List<Reservation> listed = new ArrayList<>();
+            view.forEachReservation(ReservationQuery.UPCOMING, listed::add);
+            assertEquals(List.of("2025-01-02", "2025-02-01"), listed.stream().map(r -> r.from().toString()).toList());
+            assertEquals(first, listed.get(0).id());
+        }
+        assertEquals("2025-01-20", db.getCurrentDate());
+        assertEquals(List.of("2025-02-01"), upcomingStarts());
+    }
+
+    @Test
+    @DisplayName("Bookings go ahead while a snapshot is open")
+    void testSnapshotDoesNotBlockBookings() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try (Snapshot view = db.snapshot()) {
+            List<String> seen = new ArrayList<>();
+            view.forEachReservation(ReservationQuery.UPCOMING, r -> seen.add(r.describe()));
+
+            Future<ReservationResult> booking = pool.submit(
+                    () -> db.tryReserve("SUV", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-03")));
+            assertTrue(booking.get(10, java.util.concurrent.TimeUnit.SECONDS).isAccepted());
+
+            List<String> again = new ArrayList<>();
+            view.forEachReservation(ReservationQuery.UPCOMING, r -> again.add(r.describe()));
+            assertEquals(seen, again);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, db.listReservations().size());
+    }
+
+    @Test
+    @DisplayName("Snapshot columns hold live and archived reservations with booking days")
+    void testSnapshotColumns() {
+        db.setCurrentDate("2025-01-03");
+        db.addReservation("SEDAN", Date.valueOf("2025-01-05"), Date.valueOf("2025-01-07"));
+        db.setCurrentDate("2025-01-04");
+        int suv = db.tryReserve("SUV", Date.valueOf("2025-01-10"), Date.valueOf("2025-01-11")).id();
+        db.cancelReservation(db.tryReserve("VAN", Date.valueOf("2025-01-10"), Date.valueOf("2025-01-11")).id());
+        db.addReservation("VAN", Date.valueOf("2025-03-01"), Date.valueOf("2025-03-02"));
+        db.setCurrentDate("2025-01-09");
+        awaitArchival();
+        assertTrue(suv > 0);
+
+        ReservationColumns columns;
+        List<String> history = new ArrayList<>();
+        try (Snapshot view = db.snapshot()) {
+            columns = view.columns(Date.valueOf("2025-01-01"), Date.valueOf("2025-01-31"));
+            view.forEachReservation(new ReservationQuery(null, Date.valueOf("2025-01-01"), null, 0, 0),
+                    r -> history.add(r.car()));
+        }
+        assertEquals(List.of("SEDAN", "SUV", "VAN"), history);
+        assertEquals(2, columns.size());
+        int sedan = -1;
+        int live = -1;
+        for (int row = 0; row < columns.size(); row++) {
+            if (columns.type(row) == CarTypes.global().id("SEDAN")) {
+                sedan = row;
+            } else {
+                live = row;
+            }
+        }
+        assertEquals(LocalDate.parse("2025-01-05").toEpochDay(), columns.fromDay(sedan));
+        assertEquals(LocalDate.parse("2025-01-07").toEpochDay(), columns.toDay(sedan));
+        // archived since, with its booking day
+        assertEquals(LocalDate.parse("2025-01-03").toEpochDay(), columns.bookedDay(sedan));
+        assertEquals(CarTypes.global().id("SUV"), columns.type(live));
+        assertEquals(LocalDate.parse("2025-01-04").toEpochDay(), columns.bookedDay(live));
+
+        db = reopen();
+        try (Snapshot view = db.snapshot()) {
+            columns = view.columns(Date.valueOf("2025-01-10"), Date.valueOf("2025-01-10"));
+        }
+        assertEquals(1, columns.size());
+        assertEquals(LocalDate.parse("2025-01-04").toEpochDay(), columns.bookedDay(0));
+    }
+
+    @Test
+    @DisplayName("Replacing the state keeps ids and booking days and continues after the highest id")
+    void testReplaceState() {
+        db.addReservation("SUV", Date.valueOf("2025-01-05"), Date.valueOf("2025-01-07"));
+        int sedan = CarTypes.global().id("SEDAN");
+        int van = CarTypes.global().id("VAN");
+        ReservationColumns rows = new ReservationColumns();
+        rows.add(7, sedan, day("2025-02-01"), day("2025-02-03"), day("2025-01-20"));
+        // ended before the imported date, so it is archived again
+        rows.add(3, van, day("2025-01-02"), day("2025-01-04"), EpochDays.INVALID);
+        rows.add(12, van, day("2025-02-10"), day("2025-02-12"), day("2025-01-25"));
+
+        db.replaceState("2025-02-01", Map.of("SEDAN", 1, "VAN", 2), rows);
+        awaitArchival();
+
+        assertEquals("2025-02-01", db.getCurrentDate());
+        assertEquals(Map.of("SEDAN", 1, "VAN", 2), db.getCarAmounts());
+        assertEquals(List.of(3, 7, 12), historyIds());
+        assertEquals(0, db.getAvailableCars("SEDAN", Date.valueOf("2025-02-02"), Date.valueOf("2025-02-02")));
+        assertEquals(13, db.tryReserve("VAN", Date.valueOf("2025-02-11"), Date.valueOf("2025-02-11")).id());
+        try (Snapshot view = db.snapshot()) {
+            ReservationColumns columns = view.columns(Date.valueOf("2025-02-01"), Date.valueOf("2025-02-01"));
+            assertEquals(1, columns.size());
+            assertEquals(7, columns.id(0));
+            assertEquals(day("2025-01-20"), columns.bookedDay(0));
+        }
+
+        db = reopen();
+        assertEquals(List.of(3, 7, 12, 13), historyIds());
+        assertEquals(14, db.tryReserve("SEDAN", Date.valueOf("2025-02-05"), Date.valueOf("2025-02-05")).id());
+    }
+
+    private static int day(String date) {
+        return (int) LocalDate.parse(date).toEpochDay();
+    }
+
+    private List<Integer> historyIds() {
+        List<Integer> ids = new ArrayList<>();
+        db.forEachReservation(new ReservationQuery(null, Date.valueOf("2025-01-01"), null, 0, 0), r -> ids.add(r.id()));
+        return ids;
+    }
+
+    private List<String> upcomingStarts() {
+        List<String> starts = new ArrayList<>();
+        db.forEachReservation(ReservationQuery.UPCOMING, r -> starts.add(r.from().toString()));
+        return starts;
+    }
+}
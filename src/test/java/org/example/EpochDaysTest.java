@@ -0,0 +1,58 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EpochDaysTest {
+
+    @Test
+    @DisplayName("Parsing matches LocalDate for every day over several leap cycles")
+    void testMatchesLocalDate() {
+        for (LocalDate d = LocalDate.of(1896, 1, 1); d.getYear() < 2104; d = d.plusDays(1)) {
+            assertEquals(d.toEpochDay(), EpochDays.parse(d.toString()), d.toString());
+        }
+        assertEquals(LocalDate.of(2025, 1, 5).toEpochDay(), EpochDays.parse("2025-1-5"));
+    }
+
+    @Test
+    @DisplayName("Malformed text and days that do not exist are invalid")
+    void testInvalid() {
+        for (String s : new String[]{"", "2025/01/01", "25-01-01", "2025-13-01", "2025-00-10", "2025-02-29",
+                "2025-04-31", "2025-01-001", "2025-0a-01", "invalid-date", "2025--1-01"}) {
+            assertEquals(EpochDays.INVALID, EpochDays.parse(s), s);
+        }
+        assertEquals(EpochDays.INVALID, EpochDays.parse(null));
+        assertNotEquals(EpochDays.INVALID, EpochDays.parse("2024-02-29"));
+    }
+
+    @Test
+    @DisplayName("Dates can be parsed from inside a longer line")
+    void testParseRange() {
+        String line = "reserve suv 2025-03-01 2025-03-04";
+        assertEquals(LocalDate.of(2025, 3, 4).toEpochDay(), EpochDays.parse(line, 23, 33));
+        assertEquals("2025-03-01", EpochDays.toDate(EpochDays.parse(line, 12, 22)).toString());
+    }
+
+    @Test
+    @DisplayName("Dates match Date.valueOf around daylight saving and zone changes")
+    void testToDateMatchesDateValueOf() {
+        TimeZone original = TimeZone.getDefault();
+        try {
+            for (String id : new String[]{"UTC", "Europe/Warsaw", "America/Sao_Paulo", "America/Havana", "Pacific/Apia"}) {
+                TimeZone zone = TimeZone.getTimeZone(id);
+                TimeZone.setDefault(zone);
+                for (LocalDate d = LocalDate.of(1900, 1, 1); d.getYear() < 2040; d = d.plusDays(1)) {
+                    assertEquals(Date.valueOf(d), EpochDays.toDate((int) d.toEpochDay(), zone), id + " " + d);
+                }
+            }
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+}
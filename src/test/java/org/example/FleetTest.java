@@ -0,0 +1,81 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetTest {
+
+    @TempDir
+    Path dataDir;
+
+    private Fleet open() {
+        return new Fleet(new InMemoryDatabase(dataDir.resolve("main")),
+                name -> new InMemoryDatabase(dataDir.resolve(name)), dataDir.resolve("locations.txt"));
+    }
+
+    @Test
+    @DisplayName("Locations keep separate fleets and reservations")
+    void testLocationsAreIndependent() {
+        try (Fleet fleet = open()) {
+            fleet.setCurrentDate("2025-03-01");
+            fleet.setLocation("north", 52.52, 13.40);
+            Database north = fleet.at("NORTH");
+            assertEquals("2025-03-01", north.getCurrentDate());
+
+            north.setCarAmounts("SEDAN", 1);
+            Date day = Date.valueOf("2025-03-05");
+            assertTrue(north.tryReserve("SEDAN", day, day).isAccepted());
+            assertFalse(north.tryReserve("SEDAN", day, day).isAccepted());
+            assertEquals(5, fleet.main().getAvailableCars("SEDAN", day, day));
+            assertNull(fleet.at("south"));
+            assertEquals(List.of("MAIN", "NORTH"), fleet.getLocationNames());
+        }
+    }
+
+    @Test
+    @DisplayName("Nearest search skips locations without a free car and orders by distance")
+    void testFindNearest() {
+        Date from = Date.valueOf("2025-02-01");
+        Date to = Date.valueOf("2025-02-03");
+        try (Fleet fleet = open()) {
+            fleet.setLocation("berlin", 52.52, 13.40);
+            fleet.setLocation("potsdam", 52.39, 13.06);
+            fleet.setLocation("munich", 48.14, 11.58);
+            fleet.setLocation("hamburg", 53.55, 9.99);
+            fleet.at("berlin").setCarAmounts("VAN", 0);
+            fleet.at("potsdam").setCarAmounts("VAN", 0);
+
+            List<Fleet.Nearby> nearby = fleet.findNearest("berlin", "VAN", from, to, 2);
+            assertEquals(List.of("HAMBURG", "MUNICH"), nearby.stream().map(Fleet.Nearby::location).toList());
+            assertEquals(5, nearby.get(0).available());
+            assertEquals(255, nearby.get(0).distanceKm(), 10);
+
+            assertEquals("BERLIN", fleet.findNearest("berlin", "SUV", from, to, 1).get(0).location());
+            assertThrows(IllegalArgumentException.class, () -> fleet.findNearest("main", "SUV", from, to, 1));
+        }
+
+        try (Fleet fleet = open()) {
+            assertEquals(4, fleet.getLocations().size());
+            assertEquals(0, fleet.at("potsdam").getCarAmounts().get("VAN"));
+        }
+    }
+
+    @Test
+    @DisplayName("Invalid names and coordinates are rejected")
+    void testValidation() {
+        try (Fleet fleet = open()) {
+            assertThrows(IllegalArgumentException.class, () -> fleet.setLocation("../etc", 0, 0));
+            assertThrows(IllegalArgumentException.class, () -> fleet.setLocation("north", 91, 0));
+        }
+        try (Fleet single = new Fleet(new InMemoryDatabase(dataDir.resolve("single")))) {
+            assertThrows(IllegalStateException.class, () -> single.setLocation("north", 0, 0));
+        }
+    }
+}
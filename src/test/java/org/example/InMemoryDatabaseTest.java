@@ -0,0 +1,182 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryDatabaseTest extends DatabaseContractTest {
+
+    private static final int SNAPSHOT_INTERVAL = 5;
+
+    @TempDir
+    Path dataDir;
+
+    @Override
+    protected Database open() {
+        return new InMemoryDatabase(dataDir, SNAPSHOT_INTERVAL, false);
+    }
+
+    @Override
+    protected void awaitArchival() {
+        ((InMemoryDatabase) db).awaitArchival();
+    }
+
+    @Test
+    @DisplayName("State survives a restart through snapshot and log replay")
+    void testSnapshotAndLogReplay() {
+        db.setCarAmounts("SUV", 12);
+        for (int day = 1; day <= 12; day++) {
+            db.addReservation("SUV", Date.valueOf("2025-06-01"), Date.valueOf("2025-06-" + String.format("%02d", day)));
+        }
+        db.setCurrentDate("2025-05-20");
+        assertTrue(Files.exists(dataDir.resolve("snapshot.bin")));
+
+        db = reopen();
+
+        assertEquals("2025-05-20", db.getCurrentDate());
+        assertEquals(12, db.getCarAmounts().get("SUV"));
+        assertEquals(12, db.listReservations().size());
+        assertEquals(0, db.getAvailableCars("SUV", Date.valueOf("2025-06-01"), Date.valueOf("2025-06-01")));
+        assertEquals(11, db.getAvailableCars("SUV", Date.valueOf("2025-06-12"), Date.valueOf("2025-06-12")));
+
+        ReservationResult next = db.tryReserve("SUV", Date.valueOf("2025-06-12"), Date.valueOf("2025-06-12"));
+        assertEquals(13, next.id());
+    }
+
+    @Test
+    @DisplayName("Cancelled rows are dropped from snapshots and stay cancelled after replay")
+    void testCancelCompactedBySnapshot() {
+        int first = db.tryReserve("SEDAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-03")).id();
+        int second = db.tryReserve("SEDAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-03")).id();
+        db.cancelReservation(first);
+        // enough records to take a snapshot after the cancellation
+        for (int i = 0; i < SNAPSHOT_INTERVAL; i++) {
+            db.setCurrentDate("2025-01-01");
+        }
+        db.modifyReservation(second, Date.valueOf("2025-01-04"), Date.valueOf("2025-01-04"));
+
+        db = reopen();
+
+        List<String> reservations = db.listReservations();
+        assertEquals(1, reservations.size());
+        assertTrue(reservations.get(0).startsWith(second + ": SEDAN 2025-01-04"), reservations.get(0));
+        assertEquals(5, db.getAvailableCars("SEDAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-03")));
+        assertFalse(db.cancelReservation(first));
+    }
+
+    @Test
+    @DisplayName("A torn record at the end of the log is dropped on replay")
+    void testTornTailIsDiscarded() throws IOException {
+        db.addReservation("VAN", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-02"));
+        db.close();
+
+        Path log = dataDir.resolve("wal.log");
+        long intactSize = Files.size(log);
+        Files.write(log, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        db = open();
+
+        assertEquals(1, db.listReservations().size());
+        assertEquals(intactSize, Files.size(log));
+        db.addReservation("VAN", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-02"));
+        db = reopen();
+        assertEquals(3, db.getAvailableCars("VAN", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-01")));
+    }
+
+    @Test
+    @DisplayName("Rows cancelled while archival writes its files are not archived")
+    void testCancelDuringArchival() throws Exception {
+        db.setCurrentDate("2025-01-01");
+        db.setCarAmounts("SEDAN", 3_000);
+        for (int i = 0; i < 3_000; i++) {
+            db.addReservation("SEDAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-0" + (2 + i % 8)));
+        }
+
+        Set<Integer> cancelled = ConcurrentHashMap.newKeySet();
+        Thread canceller = new Thread(() -> {
+            for (int id = 1; id <= 3_000; id += 3) {
+                if (db.cancelReservation(id)) {
+                    cancelled.add(id);
+                }
+            }
+        });
+        db.setCurrentDate("2025-02-01");
+        canceller.start();
+        canceller.join();
+        awaitArchival();
+
+        Set<Integer> expected = new TreeSet<>();
+        for (int id = 1; id <= 3_000; id++) {
+            if (!cancelled.contains(id)) {
+                expected.add(id);
+            }
+        }
+        for (int round = 0; round < 2; round++) {
+            List<Integer> history = new ArrayList<>();
+            db.forEachReservation(new ReservationQuery(null, Date.valueOf("2025-01-01"), null, 0, 0),
+                    r -> history.add(r.id()));
+            history.sort(null);
+            assertEquals(List.copyOf(expected), history);
+            db = reopen();
+        }
+    }
+
+    @Test
+    @DisplayName("Archive files without a header are read and upgraded when rows are added")
+    void testLegacyArchiveFile() throws IOException {
+        db.setCurrentDate("2025-01-01");
+        // reservation 1 stands in for one archived by an older version
+        db.cancelReservation(db.tryReserve("SEDAN", Date.valueOf("2025-01-02"), Date.valueOf("2025-01-03")).id());
+        Path archive = Files.createDirectories(dataDir.resolve("archive"));
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(archive.resolve("2025-01.bin")))) {
+            out.writeInt(1);
+            WriteAheadLog.writeString(out, "SEDAN");
+            out.writeInt((int) LocalDate.parse("2025-01-02").toEpochDay());
+            out.writeInt((int) LocalDate.parse("2025-01-03").toEpochDay());
+        }
+        int id = db.tryReserve("SUV", Date.valueOf("2025-01-05"), Date.valueOf("2025-01-06")).id();
+        db.setCurrentDate("2025-01-20");
+        awaitArchival();
+        assertEquals(0x43525341, ByteBuffer.wrap(Files.readAllBytes(archive.resolve("2025-01.bin"))).getInt());
+
+        for (int round = 0; round < 2; round++) {
+            Map<Integer, Integer> bookedDays = new TreeMap<>();
+            try (Snapshot view = db.snapshot()) {
+                ReservationColumns columns = view.columns(Date.valueOf("2025-01-01"), Date.valueOf("2025-01-31"));
+                for (int row = 0; row < columns.size(); row++) {
+                    bookedDays.put(columns.id(row), columns.bookedDay(row));
+                }
+            }
+            assertEquals(Map.of(1, EpochDays.INVALID, id, (int) LocalDate.parse("2025-01-01").toEpochDay()), bookedDays);
+            db = reopen();
+        }
+    }
+
+    @Test
+    @DisplayName("Reservations for unknown car types are not stored")
+    void testUnknownCarTypeRejected() {
+        db.addReservation("TRUCK", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-02"));
+
+        assertTrue(db.listReservations().isEmpty());
+        assertEquals(ReservationResult.Status.UNAVAILABLE,
+                db.tryReserve("TRUCK", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-02")).status());
+    }
+}
@@ -0,0 +1,49 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Percentiles are within the bucket precision of the exact values")
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1_000);
+        }
+
+        assertEquals(100_000, histogram.count());
+        assertEquals(100_000_000, histogram.max());
+        assertEquals(50_000_500, histogram.mean());
+        assertEquals(50_000_000, histogram.percentile(50), 50_000_000 * 0.04);
+        assertEquals(99_000_000, histogram.percentile(99), 99_000_000 * 0.04);
+        assertEquals(100_000_000, histogram.percentile(100));
+    }
+
+    @Test
+    @DisplayName("Small values are recorded exactly and empty histograms report zero")
+    void testSmallValuesAndEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99));
+
+        histogram.record(3);
+        histogram.record(7);
+        assertEquals(3, histogram.percentile(50));
+        assertEquals(7, histogram.percentile(99));
+    }
+
+    @Test
+    @DisplayName("Bucket index grows monotonically with the value")
+    void testIndexMonotonic() {
+        int previous = -1;
+        for (long v = 0; v < 1L << 40; v = v * 3 / 2 + 1) {
+            int index = LatencyHistogram.index(v);
+            assertTrue(index >= previous);
+            previous = index;
+        }
+        assertTrue(LatencyHistogram.index(Long.MAX_VALUE) > previous);
+    }
+}
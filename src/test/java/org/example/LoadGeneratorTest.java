@@ -0,0 +1,102 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class LoadGeneratorTest {
+
+    @TempDir
+    Path dataDir;
+
+    private static LoadGenerator.Config config(boolean openLoop, double rate, long requests, boolean viaCommands) {
+        return new LoadGenerator.Config(openLoop, rate, 1, Duration.ZERO, requests, Duration.ZERO,
+                List.of("sedan", "suv"), new int[]{3, 1}, LoadGenerator.Distribution.parse("uniform:0:30"),
+                LoadGenerator.Distribution.parse("fixed:2"), viaCommands, 7);
+    }
+
+    @Test
+    @DisplayName("Mixes and distributions are parsed and validated")
+    void testParsing() {
+        assertEquals(Map.of("sedan", 5, "suv", 1), LoadGenerator.parseMix("SEDAN=5,suv"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.parseMix("truck=1"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.parseMix("sedan=0"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Distribution.parse("uniform:1"));
+        assertThrows(IllegalArgumentException.class, () -> config(true, 0, 10, false));
+
+        java.util.SplittableRandom random = new java.util.SplittableRandom(1);
+        LoadGenerator.Distribution uniform = LoadGenerator.Distribution.parse("uniform:2:4");
+        for (int i = 0; i < 100; i++) {
+            int days = uniform.sample(random);
+            assertTrue(days >= 2 && days <= 4, "sampled " + days);
+        }
+        assertEquals(3, LoadGenerator.Distribution.parse("fixed:3").sample(random));
+    }
+
+    @Test
+    @DisplayName("A slow response in a paced closed loop is backfilled with the requests it held up")
+    void testExpectedIntervalBackfill() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LoadGenerator.recordWithExpectedInterval(histogram, 1_000_000, 100_000);
+        assertEquals(10, histogram.count());
+        assertEquals(1_000_000, histogram.max());
+
+        LatencyHistogram unpaced = new LatencyHistogram();
+        LoadGenerator.recordWithExpectedInterval(unpaced, 1_000_000, 0);
+        assertEquals(1, unpaced.count());
+    }
+
+    @Test
+    @DisplayName("In the open loop a stall delays the requests scheduled behind it")
+    void testOpenLoopCorrectsForCoordinatedOmission() throws Exception {
+        Database db = mock(Database.class);
+        when(db.getCurrentDate()).thenReturn("2025-01-01");
+        AtomicInteger calls = new AtomicInteger();
+        when(db.tryReserve(anyString(), any(Date.class), any(Date.class))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 5) {
+                Thread.sleep(200);
+            }
+            return calls.get() % 4 == 0 ? ReservationResult.unavailable(0) : ReservationResult.accepted(calls.get(), 1);
+        });
+
+        // 40 requests at 200/s: the 200 ms stall holds up about 40 requests' worth of schedule
+        LoadGenerator.Report report = new LoadGenerator(config(true, 200, 40, false), db).run();
+
+        assertEquals(40, report.sent());
+        assertEquals(10, report.unavailable());
+        assertEquals(0.25, report.rejectionRate(), 1e-9);
+        assertTrue(report.service().percentile(90) < 50_000_000, "p90 service " + report.service().percentile(90));
+        assertTrue(report.corrected().percentile(90) > 50_000_000, "p90 corrected " + report.corrected().percentile(90));
+        verify(db, times(40)).tryReserve(anyString(), any(Date.class), any(Date.class));
+    }
+
+    @Test
+    @DisplayName("Commands sent through CarRental are counted as accepted or unavailable")
+    void testCommandsAgainstStore() throws Exception {
+        try (InMemoryDatabase db = new InMemoryDatabase(dataDir)) {
+            db.setCurrentDate("2025-01-01");
+            db.setCarAmounts("SEDAN", 2);
+            db.setCarAmounts("SUV", 2);
+
+            LoadGenerator.Report report = new LoadGenerator(config(false, 0, 200, true), db).run();
+
+            assertEquals(200, report.sent());
+            assertEquals(0, report.failed());
+            assertEquals(report.accepted(), db.listReservations().size());
+            assertTrue(report.unavailable() > 0);
+            assertEquals(200, report.service().count());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OccupancyIndexTest {
+
+    @Test
+    @DisplayName("Peak counts simultaneous bookings, not overlapping ones")
+    void testPeakNotOverlapCount() {
+        OccupancyIndex index = new OccupancyIndex();
+        index.add("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-03"));
+        index.add("SEDAN", Date.valueOf("2025-01-05"), Date.valueOf("2025-01-07"));
+
+        // both overlap the range, but never on the same day
+        assertEquals(1, index.peak("SEDAN", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-10")));
+        assertEquals(0, index.peak("SEDAN", Date.valueOf("2025-01-04"), Date.valueOf("2025-01-04")));
+        assertEquals(0, index.peak("SUV", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-10")));
+    }
+
+    @Test
+    @DisplayName("Range ends are inclusive and car types are case-insensitive")
+    void testInclusiveEnds() {
+        OccupancyIndex index = new OccupancyIndex();
+        index.add("van", Date.valueOf("2025-01-01"), Date.valueOf("2025-01-03"));
+        index.add("VAN", Date.valueOf("2025-01-03"), Date.valueOf("2025-01-04"));
+
+        assertEquals(2, index.peak("VAN", Date.valueOf("2025-01-03"), Date.valueOf("2025-01-03")));
+        assertEquals(1, index.peak("Van", Date.valueOf("2025-01-04"), Date.valueOf("2025-01-09")));
+
+        index.remove("VAN", Date.valueOf("2025-01-03"), Date.valueOf("2025-01-04"));
+        assertEquals(1, index.peak("VAN", Date.valueOf("2025-01-03"), Date.valueOf("2025-01-03")));
+    }
+
+    @Test
+    @DisplayName("Index matches a naive per-day count across window growth")
+    void testMatchesNaiveCount() {
+        OccupancyIndex index = new OccupancyIndex();
+        int suv = CarTypes.global().id("SUV");
+        int origin = 20_000;
+        int[] naive = new int[20_000];
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2_000; i++) {
+            // start in the middle so the window has to grow in both directions
+            int from = (i < 10 ? 9_000 : random.nextInt(19_000)) + random.nextInt(100);
+            int to = from + random.nextInt(300);
+            index.add(suv, origin + from, origin + to, 1);
+            for (int d = from; d <= to; d++) {
+                naive[d]++;
+            }
+
+            int qFrom = random.nextInt(19_500);
+            int qTo = qFrom + random.nextInt(400);
+            int expected = 0;
+            for (int d = qFrom; d <= qTo; d++) {
+                expected = Math.max(expected, naive[d]);
+            }
+            assertEquals(expected, index.peak(suv, origin + qFrom, origin + qTo));
+        }
+
+        // per-day counts, including days outside the window on both sides
+        int[] booked = index.booked(suv, origin - 50, origin + naive.length + 49);
+        for (int d = 0; d < naive.length; d++) {
+            assertEquals(naive[d], booked[d + 50], "day " + d);
+        }
+        assertEquals(0, booked[0]);
+        assertEquals(0, booked[booked.length - 1]);
+        assertEquals(0, index.booked(CarTypes.global().id("VAN"), origin, origin + 9)[5]);
+    }
+}
@@ -0,0 +1,167 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplayEngineTest {
+
+    private final List<DB> opened = new ArrayList<>();
+
+    private DB newDb() {
+        DB db = new DB("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", 4);
+        opened.add(db);
+        return db;
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(DB::close);
+    }
+
+    /** Reservations, setcar and setdate barriers for all types, with some rejections. */
+    private static List<String> script() {
+        Random random = new Random(7);
+        String[] cars = {"sedan", "suv", "van"};
+        LocalDate today = LocalDate.of(2025, 1, 1);
+        List<String> lines = new ArrayList<>();
+        lines.add("# generated");
+        lines.add("setdate " + today);
+        for (int i = 0; i < 1_500; i++) {
+            String car = cars[random.nextInt(cars.length)];
+            if (i % 400 == 399) {
+                today = today.plusDays(5);
+                lines.add("setdate " + today);
+            } else if (i % 97 == 0) {
+                lines.add("setcar " + car + " " + (3 + random.nextInt(5)));
+            } else if (i == 700) {
+                lines.add("reserve truck 2025-02-01 2025-02-02");
+            } else {
+                LocalDate from = LocalDate.of(2025, 1, 1).plusDays(random.nextInt(40));
+                lines.add("reserve " + car + " " + from + " " + from.plusDays(random.nextInt(4)));
+            }
+        }
+        lines.add("");
+        return lines;
+    }
+
+    private static void assertSameState(Database expected, Database actual) {
+        assertEquals(expected.getCurrentDate(), actual.getCurrentDate());
+        assertEquals(expected.getCarAmounts(), actual.getCarAmounts());
+        assertEquals(reservationsWithoutIds(expected), reservationsWithoutIds(actual));
+        Date from = Date.valueOf("2025-01-01");
+        Date to = Date.valueOf("2025-03-01");
+        assertArrayEquals(expected.getAvailabilityCalendar(from, to), actual.getAvailabilityCalendar(from, to));
+    }
+
+    private static List<String> reservationsWithoutIds(Database db) {
+        List<String> reservations = new ArrayList<>();
+        db.forEachReservation(new ReservationQuery(null, Date.valueOf("1900-01-01"), null, 0, 0),
+                r -> reservations.add(r.car() + " " + r.from() + " " + r.to()));
+        reservations.sort(null);
+        return reservations;
+    }
+
+    @Test
+    @DisplayName("Parallel replay ends in the same state as running the commands one by one")
+    void testSameStateAsSequential() throws Exception {
+        List<String> script = script();
+
+        DB sequentialDb = newDb();
+        CarRental sequential = new CarRental(sequentialDb, new PrintStream(OutputStream.nullOutputStream()), new Metrics());
+        for (String line : script) {
+            if (!line.isBlank() && !line.startsWith("#")) {
+                sequential.handleCommand(line);
+            }
+        }
+
+        DB parallelDb = newDb();
+        ReplayEngine.Result result = new ReplayEngine(parallelDb, new PrintStream(OutputStream.nullOutputStream()),
+                new Metrics()).replay(script);
+
+        assertEquals(script.size() - 2, result.commands());
+        assertTrue(result.segments() >= 4, "segments: " + result.segments());
+        assertFalse(reservationsWithoutIds(parallelDb).isEmpty());
+        assertSameState(sequentialDb, parallelDb);
+    }
+
+    @Test
+    @DisplayName("Cancel and modify hit the same reservations as in a sequential run")
+    void testIdCommandsSameAsSequential() throws Exception {
+        Random random = new Random(11);
+        String[] cars = {"sedan", "suv", "van"};
+        List<String> script = new ArrayList<>();
+        script.add("setdate 2025-01-01");
+        for (int i = 1; i <= 600; i++) {
+            LocalDate from = LocalDate.of(2025, 1, 2).plusDays(random.nextInt(40));
+            script.add("reserve " + cars[random.nextInt(cars.length)] + " " + from + " " + from.plusDays(random.nextInt(4)));
+            if (i % 50 == 0) {
+                int id = 1 + random.nextInt(i);
+                script.add(random.nextBoolean()
+                        ? "cancel " + id
+                        : "modify " + id + " " + from.plusDays(1) + " " + from.plusDays(2));
+            }
+        }
+        // after the last id command the reserves may run in parallel again
+        for (int i = 0; i < 200; i++) {
+            LocalDate from = LocalDate.of(2025, 3, 1).plusDays(random.nextInt(20));
+            script.add("reserve " + cars[i % cars.length] + " " + from + " " + from);
+        }
+
+        DB sequentialDb = newDb();
+        CarRental sequential = new CarRental(sequentialDb, new PrintStream(OutputStream.nullOutputStream()), new Metrics());
+        script.forEach(sequential::handleCommand);
+
+        DB parallelDb = newDb();
+        new ReplayEngine(parallelDb, new PrintStream(OutputStream.nullOutputStream()), new Metrics()).replay(script);
+
+        assertEquals(reservationsWithIds(sequentialDb, "2025-01-01", "2025-02-28"),
+                reservationsWithIds(parallelDb, "2025-01-01", "2025-02-28"));
+        assertEquals(reservationsWithoutIds(sequentialDb), reservationsWithoutIds(parallelDb));
+    }
+
+    private static List<String> reservationsWithIds(Database db, String from, String to) {
+        List<String> reservations = new ArrayList<>();
+        db.forEachReservation(new ReservationQuery(null, Date.valueOf(from), null, 0, 0), r -> {
+            if (!r.from().after(Date.valueOf(to))) {
+                reservations.add(r.id() + " " + r.car() + " " + r.from() + " " + r.to());
+            }
+        });
+        reservations.sort(null);
+        return reservations;
+    }
+
+    @Test
+    @DisplayName("Replay command prints barrier output and throughput")
+    void testReplayCommand(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("script.txt");
+        Files.write(file, List.of("setdate 2025-01-01", "reserve suv 2025-01-02 2025-01-03",
+                "reserve van 2025-01-02 2025-01-03", "setdate 2025-01-02"));
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DB db = newDb();
+
+        new CarRental(db, new PrintStream(buffer, true), new Metrics()).handleCommand("replay " + file);
+
+        String output = buffer.toString();
+        assertTrue(output.contains("Date set to 2025-01-02"), output);
+        assertFalse(output.contains("Reservation saved"), output);
+        assertTrue(output.contains("Replayed 4 commands in 1 parallel segments"), output);
+        assertEquals(2, db.listReservations().size());
+    }
+}
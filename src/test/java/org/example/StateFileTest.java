@@ -0,0 +1,186 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Reservations, fleet and date survive a round trip in id order")
+    void testRoundTrip() throws IOException {
+        SplittableRandom random = new SplittableRandom(5);
+        int types = CarTypes.global().size();
+        int rows = 100_000;
+        // every third id is missing and the input is out of order
+        int[] ids = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            ids[i] = 1 + i + i / 2;
+        }
+        ReservationColumns written = new ReservationColumns();
+        for (int i = rows - 1; i >= 0; i--) {
+            int from = 20_000 + random.nextInt(800);
+            // booked after the start (a negative lead time) or not recorded at all
+            int booked = random.nextInt(10) == 0 ? EpochDays.INVALID : from - random.nextInt(90) + 5;
+            written.add(ids[i], random.nextInt(types), from, from + random.nextInt(30), booked);
+        }
+        Path file = dir.resolve("state.bin");
+
+        long bytes = StateFile.write(file, "2025-06-01", Map.of("SEDAN", 5, "SUV", 0, "VAN", 12), written);
+        StateFile.Contents read = StateFile.read(file);
+
+        assertEquals(Files.size(file), bytes);
+        assertTrue(bytes < 8L * rows, bytes + " bytes");
+        assertEquals("2025-06-01", read.currentDate());
+        assertEquals(Map.of("SEDAN", 5, "SUV", 0, "VAN", 12), read.cars());
+        ReservationColumns loaded = read.reservations();
+        assertEquals(rows, loaded.size());
+        for (int row = 0; row < rows; row++) {
+            int source = rows - 1 - row;
+            assertEquals(ids[row], loaded.id(row));
+            assertEquals(written.type(source), loaded.type(row));
+            assertEquals(written.fromDay(source), loaded.fromDay(row));
+            assertEquals(written.toDay(source), loaded.toDay(row));
+            assertEquals(written.bookedDay(source), loaded.bookedDay(row));
+        }
+    }
+
+    @Test
+    @DisplayName("A store without a date or reservations round-trips")
+    void testEmpty() throws IOException {
+        Path file = dir.resolve("empty.bin");
+
+        StateFile.write(file, null, Map.of(), new ReservationColumns());
+        StateFile.Contents read = StateFile.read(file);
+
+        assertNull(read.currentDate());
+        assertTrue(read.cars().isEmpty());
+        assertEquals(0, read.reservations().size());
+    }
+
+    @Test
+    @DisplayName("Damaged and foreign files are rejected")
+    void testRejectsDamagedFiles() throws IOException {
+        Path file = dir.resolve("state.bin");
+        ReservationColumns rows = new ReservationColumns();
+        rows.add(1, CarTypes.global().id("SUV"), 20_000, 20_002, 19_990);
+        StateFile.write(file, "2025-01-01", Map.of("SUV", 1), rows);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        Path text = Files.writeString(dir.resolve("state.txt"), "reserve suv 2025-01-01 2025-01-02\n");
+
+        assertThrows(IOException.class, () -> StateFile.read(file));
+        assertThrows(IOException.class, () -> StateFile.read(text));
+    }
+
+    @Test
+    @DisplayName("An export of one store imports into another")
+    void testExportAndImportCommands() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, true);
+        String file = dir.resolve("Export.bin").toString();
+        List<String> exported;
+        try (InMemoryDatabase source = new InMemoryDatabase(dir.resolve("source"))) {
+            CarRental rental = new CarRental(new Fleet(source), out, new Metrics());
+            rental.handleCommand("setcar van 2");
+            rental.handleCommand("reserve van 2025-01-02 2025-01-03");
+            rental.handleCommand("reserve sedan 2025-01-10 2025-01-12");
+            rental.handleCommand("cancel 1");
+            rental.handleCommand("reserve van 2025-01-20 2025-01-21");
+            rental.handleCommand("setdate 2025-01-05");
+            source.awaitArchival();
+            rental.handleCommand("export " + file);
+            exported = history(source);
+        }
+
+        try (DB target = new DB("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", 4)) {
+            CarRental rental = new CarRental(new Fleet(target), out, new Metrics());
+            rental.handleCommand("reserve suv 2025-01-02 2025-01-03");
+            rental.handleCommand("import " + file);
+            rental.handleCommand("import " + dir.resolve("missing.bin"));
+
+            assertEquals(exported, history(target));
+            assertEquals("2025-01-05", target.getCurrentDate());
+            assertEquals(2, target.getCarAmounts().get("VAN"));
+            assertEquals(4, target.tryReserve("VAN", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-01")).id());
+        }
+
+        String output = buffer.toString();
+        assertTrue(output.contains("Exported 2 reservations to " + file), output);
+        assertTrue(output.contains("Imported 2 reservations from " + file), output);
+        assertTrue(output.contains("Cannot read " + dir.resolve("missing.bin")), output);
+    }
+
+    @Test
+    @DisplayName("Archived reservations keep their booking days through export and import on both stores")
+    void testArchivedBookingDaysRoundTrip() throws IOException {
+        Path file = dir.resolve("archived.bin");
+        for (boolean fromMemory : new boolean[]{true, false}) {
+            try (InMemoryDatabase memory = new InMemoryDatabase(dir.resolve("memory-" + fromMemory));
+                 DB h2 = new DB("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", 4)) {
+                Database source = fromMemory ? memory : h2;
+                Database target = fromMemory ? h2 : memory;
+                source.setCurrentDate("2025-01-01");
+                source.setCarAmounts("VAN", 2);
+                source.tryReserve("VAN", Date.valueOf("2025-01-03"), Date.valueOf("2025-01-04"));
+                source.setCurrentDate("2025-01-02");
+                source.tryReserve("VAN", Date.valueOf("2025-01-20"), Date.valueOf("2025-01-21"));
+                source.setCurrentDate("2025-01-10");
+                if (fromMemory) {
+                    memory.awaitArchival();
+                } else {
+                    h2.awaitArchival();
+                }
+
+                List<String> before = rows(source);
+                assertEquals(List.of("1 20091-20092 booked 20089", "2 20108-20109 booked 20090"), before);
+                try (Snapshot view = source.snapshot()) {
+                    StateFile.write(file, view.getCurrentDate(), view.getCarAmounts(),
+                            view.columns(Date.valueOf("1900-01-01"), Date.valueOf("9999-12-31")));
+                }
+                StateFile.Contents contents = StateFile.read(file);
+                target.replaceState(contents.currentDate(), contents.cars(), contents.reservations());
+                assertEquals(before, rows(target), fromMemory ? "memory to h2" : "h2 to memory");
+            }
+        }
+    }
+
+    /** Id, days and booking day of every reservation, archived ones included. */
+    private static List<String> rows(Database store) {
+        List<String> rows = new ArrayList<>();
+        try (Snapshot view = store.snapshot()) {
+            ReservationColumns columns = view.columns(Date.valueOf("1900-01-01"), Date.valueOf("9999-12-31"));
+            for (int row = 0; row < columns.size(); row++) {
+                rows.add(columns.id(row) + " " + columns.fromDay(row) + "-" + columns.toDay(row)
+                        + " booked " + columns.bookedDay(row));
+            }
+        }
+        rows.sort(null);
+        return rows;
+    }
+
+    private static List<String> history(Database store) {
+        List<String> rows = new ArrayList<>();
+        store.forEachReservation(new ReservationQuery(null, Date.valueOf("2025-01-01"), null, 0, 0),
+                r -> rows.add(r.id() + " " + r.car() + " " + r.from() + " " + r.to()));
+        return rows;
+    }
+}
@@ -0,0 +1,123 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UtilisationTest {
+
+    @TempDir
+    Path dataDir;
+
+    private static int day(String date) {
+        return (int) LocalDate.parse(date).toEpochDay();
+    }
+
+    @Test
+    @DisplayName("Occupancy, peak day, lead time and lengths are computed over the range")
+    void testSmallFleet() {
+        int sedan = CarTypes.global().id("SEDAN");
+        int suv = CarTypes.global().id("SUV");
+        ReservationColumns rows = new ReservationColumns();
+        rows.add(1, sedan, day("2025-01-01"), day("2025-01-02"), day("2024-12-22"));
+        rows.add(2, sedan, day("2025-01-02"), day("2025-01-04"), day("2025-01-01"));
+        // started before the range: counts towards occupancy only
+        rows.add(3, sedan, day("2024-12-30"), day("2025-01-01"), day("2024-12-01"));
+        rows.add(4, suv, day("2025-01-10"), day("2025-01-30"), EpochDays.INVALID);
+
+        Utilisation report = Utilisation.compute(rows, Map.of("SEDAN", 2, "SUV", 1), day("2025-01-01"), day("2025-01-10"));
+
+        Utilisation.TypeStats sedans = report.types().stream().filter(t -> t.car().equals("SEDAN")).findFirst().orElseThrow();
+        assertEquals(6, sedans.carDays());
+        assertEquals(0.3, sedans.occupancy(), 1e-9);
+        assertEquals(2, sedans.peakCars());
+        assertEquals(LocalDate.parse("2025-01-01"), sedans.peakDay());
+        assertEquals(2, sedans.bookings());
+        assertEquals(5.5, sedans.averageLeadTime(), 1e-9);
+
+        Utilisation.TypeStats suvs = report.types().stream().filter(t -> t.car().equals("SUV")).findFirst().orElseThrow();
+        assertEquals(1, suvs.carDays());
+        assertEquals(LocalDate.parse("2025-01-10"), suvs.peakDay());
+        assertEquals(0, suvs.leadTimeSamples());
+        assertTrue(Double.isNaN(suvs.averageLeadTime()));
+
+        assertArrayEquals(new long[]{0, 1, 1, 0, 0, 1, 0}, report.lengthHistogram());
+    }
+
+    @Test
+    @DisplayName("The parallel aggregation matches a day-by-day count")
+    void testMatchesBruteForce() {
+        SplittableRandom random = new SplittableRandom(11);
+        int types = CarTypes.global().size();
+        int fromDay = day("2025-01-01");
+        int toDay = day("2025-12-31");
+        ReservationColumns rows = new ReservationColumns();
+        int[][] booked = new int[types][toDay - fromDay + 1];
+        long[] lengths = new long[Utilisation.LENGTH_BUCKETS.length + 1];
+        for (int i = 0; i < 200_000; i++) {
+            int type = random.nextInt(types);
+            int start = fromDay - 40 + random.nextInt(420);
+            int end = start + random.nextInt(45);
+            rows.add(i + 1, type, start, end, start - random.nextInt(60));
+            for (int d = Math.max(start, fromDay); d <= Math.min(end, toDay); d++) {
+                booked[type][d - fromDay]++;
+            }
+            if (start >= fromDay && start <= toDay) {
+                lengths[Utilisation.bucketOf(end - start + 1)]++;
+            }
+        }
+
+        Utilisation report = Utilisation.compute(rows, Map.of(), fromDay, toDay);
+
+        assertEquals(types, report.types().size());
+        for (Utilisation.TypeStats stats : report.types()) {
+            int[] days = booked[CarTypes.global().id(stats.car())];
+            long carDays = 0;
+            int peak = 0;
+            for (int count : days) {
+                carDays += count;
+                peak = Math.max(peak, count);
+            }
+            assertEquals(carDays, stats.carDays(), stats.car());
+            assertEquals(peak, stats.peakCars(), stats.car());
+            assertEquals(peak, days[(int) (stats.peakDay().toEpochDay() - fromDay)], stats.car());
+        }
+        assertArrayEquals(lengths, report.lengthHistogram());
+    }
+
+    @Test
+    @DisplayName("The analytics command reports live and archived reservations")
+    void testAnalyticsCommand() {
+        try (InMemoryDatabase db = new InMemoryDatabase(dataDir)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            CarRental rental = new CarRental(new Fleet(db), new PrintStream(buffer, true), new Metrics());
+            rental.handleCommand("setdate 2025-03-01");
+            rental.handleCommand("setcar van 2");
+            rental.handleCommand("reserve van 2025-03-02 2025-03-03");
+            rental.handleCommand("reserve van 2025-03-11 2025-03-12");
+            rental.handleCommand("setdate 2025-03-10");
+            db.awaitArchival();
+
+            rental.handleCommand("analytics 2025-03-01 2025-03-31");
+            rental.handleCommand("analytics 2025-03-31 2025-03-01");
+
+            String output = buffer.toString();
+            assertTrue(output.contains("Utilisation 2025-03-01 to 2025-03-31 (31 days)"), output);
+            assertTrue(output.contains("VAN            2      6.5%     1 2025-03-02         2"), output);
+            // the archived booking keeps its booking day: lead times 1 and 10 days
+            assertTrue(output.contains("     5.5 d"), output);
+            assertFalse(output.contains("Lead time known for"), output);
+            assertTrue(output.contains("2 days                2  100.0%"), output);
+            assertTrue(output.contains("Start date must not be after end date"), output);
+        }
+    }
+}
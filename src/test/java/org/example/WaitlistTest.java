@@ -0,0 +1,173 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class WaitlistTest {
+
+    @TempDir
+    Path dataDir;
+
+    private static Date day(int offset) {
+        return Date.valueOf(LocalDate.of(2025, 1, 1).plusDays(offset));
+    }
+
+    @Test
+    @DisplayName("Only requests overlapping the freed days are tried, oldest first")
+    void testPromotesOverlappingRequests() {
+        Database store = mock(Database.class);
+        when(store.getCurrentDate()).thenReturn("2025-01-01");
+        when(store.tryReserve(anyString(), any(Date.class), any(Date.class))).thenReturn(ReservationResult.accepted(42, 0));
+        Waitlist waitlist = new Waitlist();
+        waitlist.add("SEDAN", day(9), day(11));
+        Waitlist.Entry second = waitlist.add("sedan", day(10), day(10));
+        waitlist.add("SEDAN", day(0), day(2));
+        waitlist.add("SUV", day(10), day(10));
+
+        List<Waitlist.Promotion> promoted = waitlist.promote(store, "SEDAN", day(10), day(12));
+
+        assertEquals(2, promoted.size());
+        assertEquals(1, promoted.get(0).entry().ticket());
+        assertEquals(second, promoted.get(1).entry());
+        assertEquals(42, promoted.get(1).reservationId());
+        verify(store, times(2)).tryReserve(eq("SEDAN"), any(Date.class), any(Date.class));
+        assertEquals(2, waitlist.size());
+        assertEquals(java.util.Map.of("SEDAN", 1, "SUV", 1), waitlist.depthByType());
+    }
+
+    @Test
+    @DisplayName("The interval tree finds exactly the overlapping requests after adds and removes")
+    void testMatchesBruteForce() {
+        Database store = mock(Database.class);
+        when(store.getCurrentDate()).thenReturn("2025-01-01");
+        List<Integer> tried = new ArrayList<>();
+        when(store.tryReserve(anyString(), any(Date.class), any(Date.class))).thenAnswer(invocation -> {
+            tried.add(OccupancyIndex.epochDay(invocation.getArgument(1)));
+            return ReservationResult.unavailable(0);
+        });
+
+        Random random = new Random(7);
+        Waitlist waitlist = new Waitlist();
+        List<Waitlist.Entry> live = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int from = random.nextInt(365);
+            live.add(waitlist.add("VAN", day(from), day(from + random.nextInt(20))));
+        }
+        for (int i = 0; i < 500; i++) {
+            Waitlist.Entry removed = live.remove(random.nextInt(live.size()));
+            assertTrue(waitlist.remove(removed.ticket()));
+        }
+        assertFalse(waitlist.remove(-1));
+
+        for (int q = 0; q < 50; q++) {
+            int from = random.nextInt(380);
+            int to = from + random.nextInt(10);
+            tried.clear();
+            waitlist.promote(store, "VAN", day(from), day(to));
+
+            List<Integer> expected = new ArrayList<>();
+            for (Waitlist.Entry entry : live) {
+                int start = OccupancyIndex.epochDay(entry.from());
+                int end = OccupancyIndex.epochDay(entry.to());
+                if (start <= OccupancyIndex.epochDay(day(to)) && end >= OccupancyIndex.epochDay(day(from))) {
+                    expected.add(start);
+                }
+            }
+            assertEquals(expected.size(), tried.size(), "query " + from + ".." + to);
+            assertEquals(new HashSet<>(expected), Set.copyOf(tried));
+        }
+        assertEquals(1500, waitlist.size());
+    }
+
+    @Test
+    @DisplayName("Requests can be added while promotions wait for the database, and failures are put back")
+    void testBooksOutsideTheLock() throws Exception {
+        CountDownLatch booking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Database store = mock(Database.class);
+        when(store.getCurrentDate()).thenReturn("2025-01-01");
+        when(store.tryReserve(anyString(), any(Date.class), any(Date.class))).thenAnswer(invocation -> {
+            booking.countDown();
+            release.await();
+            return ReservationResult.unavailable(0);
+        });
+        Waitlist waitlist = new Waitlist();
+        Waitlist.Entry first = waitlist.add("VAN", day(3), day(4));
+        Waitlist.Entry second = waitlist.add("VAN", day(1), day(5));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Waitlist.Promotion>> promotion = executor.submit(() -> waitlist.promoteAll(store, "VAN"));
+            assertTrue(booking.await(5, TimeUnit.SECONDS));
+            Waitlist.Entry third = waitlist.add("VAN", day(2), day(2));
+            assertEquals(3, third.ticket());
+            release.countDown();
+
+            assertEquals(List.of(), promotion.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(first, second, third), waitlist.entries());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("A cancellation or a larger fleet books waiting requests through CarRental")
+    void testPromotionThroughCommands() {
+        try (InMemoryDatabase db = new InMemoryDatabase(dataDir)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            Fleet fleet = new Fleet(db);
+            CarRental rental = new CarRental(fleet, new PrintStream(buffer, true), new Metrics());
+            rental.handleCommand("setdate 2025-03-01");
+            rental.handleCommand("setcar suv 1");
+            rental.handleCommand("reserve suv 2025-03-05 2025-03-08");
+            rental.handleCommand("reserve suv 2025-03-07 2025-03-09");
+            rental.handleCommand("reserve suv 2025-03-08 2025-03-08");
+            rental.handleCommand("reserve suv 2025-03-20 2025-03-21");
+            rental.handleCommand("setdate 2025-03-06");
+            assertEquals(2, db.listReservations().size());
+
+            rental.handleCommand("waitlist");
+            String before = buffer.toString();
+            assertTrue(before.contains("No suv available for the selected dates; waitlisted as W1"), before);
+            assertTrue(before.contains("Waiting: 2, SUV 2"), before);
+            assertTrue(before.contains("W1: SUV 2025-03-07 → 2025-03-09"), before);
+
+            rental.handleCommand("cancel 1");
+            String afterCancel = buffer.toString();
+            assertTrue(afterCancel.contains("Waitlist W1 booked as reservation #3"), afterCancel);
+            assertEquals(1, fleet.waitlist(Fleet.DEFAULT_LOCATION).size());
+
+            rental.handleCommand("setcar suv 2");
+            assertTrue(buffer.toString().contains("Waitlist W2 booked as reservation #4"), buffer.toString());
+            assertEquals(0, db.getAvailableCars("SUV", Date.valueOf("2025-03-08"), Date.valueOf("2025-03-08")));
+
+            rental.handleCommand("waitlist remove W9");
+            rental.handleCommand("waitlist");
+            String output = buffer.toString();
+            assertTrue(output.contains("No waitlist entry W9"), output);
+            assertTrue(output.contains("Promoted: 2, expired: 0"), output);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindDatabaseTest {
+
+    @Test
+    @DisplayName("Concurrent bookings are committed in groups and never overbook")
+    void testGroupCommit() throws Exception {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (WriteBehindDatabase db = new WriteBehindDatabase(new DB(url, 4), 1000, 64, 5)) {
+            db.setCarAmounts("SEDAN", 30);
+
+            List<CompletableFuture<ReservationResult>> results = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                results.add(db.addReservationAsync("SEDAN", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-03")));
+            }
+
+            long accepted = results.stream().map(CompletableFuture::join).filter(ReservationResult::isAccepted).count();
+            assertEquals(30, accepted);
+            assertEquals(0, db.getAvailableCars("SEDAN", Date.valueOf("2025-02-01"), Date.valueOf("2025-02-03")));
+            assertEquals(30, db.listReservations().size());
+            assertTrue(db.getStats().contains("reservations=50"), db.getStats());
+            assertFalse(db.getStats().contains("groups=50,"), db.getStats());
+        }
+    }
+
+    @Test
+    @DisplayName("Writes queued before a read are visible to it")
+    void testReadYourWrites() {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (WriteBehindDatabase db = new WriteBehindDatabase(new DB(url, 4), 100, 10, 0)) {
+            db.addReservation("SUV", Date.valueOf("2025-03-01"), Date.valueOf("2025-03-02"));
+            db.addReservation("SUV", Date.valueOf("2025-03-02"), Date.valueOf("2025-03-04"));
+
+            assertEquals(3, db.getAvailableCars("SUV", Date.valueOf("2025-03-01"), Date.valueOf("2025-03-05")));
+            assertTrue(db.tryReserve("SUV", Date.valueOf("2025-03-02"), Date.valueOf("2025-03-02")).isAccepted());
+            assertEquals(3, db.listReservations().size());
+        }
+    }
+
+    @Test
+    @DisplayName("addReservation stores without checking the fleet, as the wrapped database does")
+    void testAddReservationUnchecked() {
+        String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (WriteBehindDatabase db = new WriteBehindDatabase(new DB(url, 4), 100, 10, 0)) {
+            db.setCarAmounts("VAN", 1);
+            Date day = Date.valueOf("2025-03-01");
+            assertTrue(db.tryReserve("VAN", day, day).isAccepted());
+            db.addReservation("VAN", day, day);
+
+            assertEquals(2, db.listReservations().size());
+            assertFalse(db.tryReserve("VAN", day, day).isAccepted());
+        }
+    }
+
+    @Test
+    @DisplayName("Every store reports its own queue until it is closed")
+    void testGaugePerStore() {
+        WriteBehindDatabase north = new WriteBehindDatabase(mock(Database.class), "NORTH", 10, 1, 0);
+        WriteBehindDatabase south = new WriteBehindDatabase(mock(Database.class), "SOUTH", 10, 1, 0);
+        String report = Metrics.global().getReport();
+        assertTrue(report.contains("Write-behind NORTH: queued="), report);
+        assertTrue(report.contains("Write-behind SOUTH: queued="), report);
+
+        north.close();
+        report = Metrics.global().getReport();
+        assertFalse(report.contains("Write-behind NORTH"), report);
+        assertTrue(report.contains("Write-behind SOUTH"), report);
+        south.close();
+    }
+
+    @Test
+    @DisplayName("Callers block while the queue is full")
+    void testBackpressure() throws Exception {
+        Database delegate = mock(Database.class);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.addReservations(anyList())).thenAnswer(call -> {
+            release.await();
+            List<?> group = call.getArgument(0);
+            List<ReservationResult> results = new ArrayList<>();
+            for (int i = 0; i < group.size(); i++) {
+                results.add(ReservationResult.accepted(i + 1, 0));
+            }
+            return results;
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (WriteBehindDatabase db = new WriteBehindDatabase(delegate, 1, 1, 0)) {
+            Date day = Date.valueOf("2025-01-10");
+            CompletableFuture<ReservationResult> first = db.addReservationAsync("VAN", day, day);
+            // wait until the writer holds the first one, then fill the queue
+            verify(delegate, timeout(5000)).addReservations(anyList());
+            CompletableFuture<ReservationResult> second = db.addReservationAsync("VAN", day, day);
+
+            Future<CompletableFuture<ReservationResult>> third =
+                    executor.submit(() -> db.addReservationAsync("VAN", day, day));
+            Thread.sleep(100);
+            assertFalse(third.isDone());
+            assertFalse(first.isDone());
+
+            release.countDown();
+            assertTrue(third.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS).isAccepted());
+            assertTrue(first.join().isAccepted());
+            assertTrue(second.join().isAccepted());
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(delegate).close();
+    }
+}